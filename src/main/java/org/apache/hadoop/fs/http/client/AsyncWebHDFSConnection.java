@@ -0,0 +1,207 @@
+package org.apache.hadoop.fs.http.client;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.http.client.model.ContentSummary;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileChecksum;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Non-blocking counterpart of {@link WebHDFSConnection}.
+ * <p>
+ * Every operation is submitted to an executor and returns immediately with a
+ * {@link ListenableFuture} holding the same JSON response the blocking call
+ * would have returned. Cancelling a future aborts the request if it is
+ * already running; a future which does not complete within the configured
+ * timeout fails with a {@link java.util.concurrent.TimeoutException} and its
+ * request is aborted likewise.
+ */
+public interface AsyncWebHDFSConnection {
+
+	/**
+	 * Returns a view of this connection whose operations fail once they have
+	 * been running for longer than {@code timeout}
+	 *
+	 * @param timeout
+	 * 			the per-call timeout, 0 to wait indefinitely
+	 * @param unit
+	 * 			the unit of {@code timeout}
+	 * @return the view, sharing this connection's executor
+	 */
+	public AsyncWebHDFSConnection withTimeout(long timeout, TimeUnit unit);
+
+	/**
+	 * @return the blocking connection the operations are delegated to
+	 */
+	public WebHDFSConnection getConnection();
+
+	/**
+	 * @see WebHDFSConnection#getHomeDirectory()
+	 */
+	public ListenableFuture<String> getHomeDirectory();
+
+	/**
+	 * @see WebHDFSConnection#open(String, OutputStream)
+	 */
+	public ListenableFuture<String> open(String path, OutputStream os);
+
+	/**
+	 * @see WebHDFSConnection#getContentSummary(String)
+	 */
+	public ListenableFuture<String> getContentSummary(String path);
+
+	/**
+	 * @see WebHDFSConnection#listStatus(String)
+	 */
+	public ListenableFuture<String> listStatus(String path);
+
+	/**
+	 * @see WebHDFSConnection#getFileStatus(String)
+	 */
+	public ListenableFuture<String> getFileStatus(String path);
+
+	/**
+	 * @see WebHDFSConnection#getFileCheckSum(String)
+	 */
+	public ListenableFuture<String> getFileCheckSum(String path);
+
+	/**
+	 * @see WebHDFSConnection#getStatus(String)
+	 */
+	public ListenableFuture<FileStatus> getStatus(String path);
+
+	/**
+	 * @see WebHDFSConnection#getListing(String)
+	 */
+	public ListenableFuture<DirectoryListing> getListing(String path);
+
+	/**
+	 * @see WebHDFSConnection#getSummary(String)
+	 */
+	public ListenableFuture<ContentSummary> getSummary(String path);
+
+	/**
+	 * @see WebHDFSConnection#getChecksum(String)
+	 */
+	public ListenableFuture<FileChecksum> getChecksum(String path);
+
+	/**
+	 * @see WebHDFSConnection#getDelegationToken(String)
+	 */
+	public ListenableFuture<String> getDelegationToken(String renewer);
+
+	/**
+	 * @see WebHDFSConnection#create(String, InputStream, long)
+	 */
+	public ListenableFuture<String> create(String path, InputStream is, long length);
+
+	/**
+	 * @see WebHDFSConnection#create(String, InputStream, long, CreateOptions)
+	 */
+	public ListenableFuture<String> create(String path, InputStream is, long length, CreateOptions options);
+
+	/**
+	 * @see WebHDFSConnection#create(String, InputStream)
+	 */
+	public ListenableFuture<String> create(String path, InputStream is);
+
+	/**
+	 * @see WebHDFSConnection#mkdirs(String)
+	 */
+	public ListenableFuture<String> mkdirs(String path);
+
+	/**
+	 * @see WebHDFSConnection#mkdirs(String, int)
+	 */
+	public ListenableFuture<String> mkdirs(String path, int permission);
+
+	/**
+	 * @see WebHDFSConnection#createSymLink(String, String)
+	 */
+	public ListenableFuture<String> createSymLink(String srcPath, String destPath);
+
+	/**
+	 * @see WebHDFSConnection#rename(String, String)
+	 */
+	public ListenableFuture<String> rename(String srcPath, String destPath);
+
+	/**
+	 * @see WebHDFSConnection#setPermission(String)
+	 */
+	public ListenableFuture<String> setPermission(String path);
+
+	/**
+	 * @see WebHDFSConnection#setPermission(String, int)
+	 */
+	public ListenableFuture<String> setPermission(String path, int permission);
+
+	/**
+	 * @see WebHDFSConnection#setOwner(String)
+	 */
+	public ListenableFuture<String> setOwner(String path);
+
+	/**
+	 * @see WebHDFSConnection#setOwner(String, String, String)
+	 */
+	public ListenableFuture<String> setOwner(String path, String owner, String group);
+
+	/**
+	 * @see WebHDFSConnection#setReplication(String)
+	 */
+	public ListenableFuture<String> setReplication(String path);
+
+	/**
+	 * @see WebHDFSConnection#setReplication(String, short)
+	 */
+	public ListenableFuture<String> setReplication(String path, short replication);
+
+	/**
+	 * @see WebHDFSConnection#setTimes(String)
+	 */
+	public ListenableFuture<String> setTimes(String path);
+
+	/**
+	 * @see WebHDFSConnection#setTimes(String, long, long)
+	 */
+	public ListenableFuture<String> setTimes(String path, long modificationTime, long accessTime);
+
+	/**
+	 * @see WebHDFSConnection#renewDelegationToken(String)
+	 */
+	public ListenableFuture<Long> renewDelegationToken(String token);
+
+	/**
+	 * @see WebHDFSConnection#cancelDelegationToken(String)
+	 */
+	public ListenableFuture<Void> cancelDelegationToken(String token);
+
+	/**
+	 * @see WebHDFSConnection#append(String, InputStream, long)
+	 */
+	public ListenableFuture<String> append(String path, InputStream is, long length);
+
+	/**
+	 * @see WebHDFSConnection#append(String, InputStream)
+	 */
+	public ListenableFuture<String> append(String path, InputStream is);
+
+	/**
+	 * @see WebHDFSConnection#concat(String, String...)
+	 */
+	public ListenableFuture<String> concat(String path, String... sources);
+
+	/**
+	 * @see WebHDFSConnection#delete(String)
+	 */
+	public ListenableFuture<String> delete(String path);
+
+	/**
+	 * @see WebHDFSConnection#delete(String, boolean)
+	 */
+	public ListenableFuture<String> delete(String path, boolean recursive);
+}
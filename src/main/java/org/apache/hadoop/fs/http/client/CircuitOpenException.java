@@ -0,0 +1,16 @@
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+
+/**
+ * Signals that a request was not sent because its endpoint failed too many
+ * requests in a row, and is left alone until it is probed again.
+ */
+public class CircuitOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+}
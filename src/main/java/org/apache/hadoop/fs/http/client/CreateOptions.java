@@ -0,0 +1,94 @@
+package org.apache.hadoop.fs.http.client;
+
+/**
+ * The optional parameters of <b>CREATE</b>, so that a file gets its final
+ * layout in the request writing it. Those left unset are not sent, the
+ * server then applying its defaults.
+ */
+public class CreateOptions {
+
+	private Boolean overwrite;
+	private long blockSize = 0L;
+	private short replication = 0;
+	private int permission = -1;
+	private int bufferSize = 0;
+
+	/**
+	 * @return whether an existing file is replaced, null if unset
+	 */
+	public Boolean getOverwrite() {
+		return overwrite;
+	}
+
+	/**
+	 * Sets whether an existing file is replaced rather than failing the
+	 * request, the server replacing it by default
+	 *
+	 * @param overwrite
+	 */
+	public void setOverwrite(Boolean overwrite) {
+		this.overwrite = overwrite;
+	}
+
+	/**
+	 * @return the block size in bytes, 0 if unset
+	 */
+	public long getBlockSize() {
+		return blockSize;
+	}
+
+	public void setBlockSize(long blockSize) {
+		if (blockSize < 0) {
+			throw new IllegalArgumentException("Property <blockSize> must not be negative");
+		}
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @return the number of replicas of each block, 0 if unset
+	 */
+	public short getReplication() {
+		return replication;
+	}
+
+	public void setReplication(short replication) {
+		if (replication < 0) {
+			throw new IllegalArgumentException("Property <replication> must not be negative");
+		}
+		this.replication = replication;
+	}
+
+	/**
+	 * @return the permission, e.g. <code>0644</code>, -1 if unset
+	 */
+	public int getPermission() {
+		return permission;
+	}
+
+	/**
+	 * Sets the permission of the file, as an octal number such as
+	 * <code>0644</code>, or -1 to leave it to the server
+	 *
+	 * @param permission
+	 */
+	public void setPermission(int permission) {
+		if (permission < -1 || permission > 01777) {
+			throw new IllegalArgumentException("Property <permission> must be between 0 and 01777");
+		}
+		this.permission = permission;
+	}
+
+	/**
+	 * @return the size of the buffer the datanode writes with, 0 if unset
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		if (bufferSize < 0) {
+			throw new IllegalArgumentException("Property <bufferSize> must not be negative");
+		}
+		this.bufferSize = bufferSize;
+	}
+}
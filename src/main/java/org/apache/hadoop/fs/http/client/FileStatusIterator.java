@@ -0,0 +1,29 @@
+package org.apache.hadoop.fs.http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+
+/**
+ * Lazily yields the children of a directory as they are read off the wire.
+ * <p>
+ * The iterator may hold an open HTTP response; {@link #close()} it when
+ * abandoning the iteration before {@link #hasNext()} returned false.
+ */
+public interface FileStatusIterator extends Closeable {
+
+	/**
+	 * @return true if another child is available
+	 * @throws IOException
+	 */
+	public boolean hasNext() throws IOException;
+
+	/**
+	 * @return the next child
+	 * @throws IOException
+	 * @throws java.util.NoSuchElementException
+	 * 			if no child is left
+	 */
+	public FileStatus next() throws IOException;
+}
@@ -0,0 +1,17 @@
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+
+/**
+ * Signals that a request was not sent because the client already has as
+ * many requests in flight as the server is believed to sustain, and too
+ * many others waiting. Callers should slow down rather than retry at once.
+ */
+public class LimitExceededException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public LimitExceededException(String message) {
+		super(message);
+	}
+}
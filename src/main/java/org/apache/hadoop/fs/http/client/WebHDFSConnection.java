@@ -1,10 +1,16 @@
 package org.apache.hadoop.fs.http.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.channels.WritableByteChannel;
 
+import org.apache.hadoop.fs.http.client.model.ContentSummary;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileChecksum;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
 
 /**
@@ -33,6 +39,7 @@ import org.apache.hadoop.security.authentication.client.AuthenticationException;
 <br/>
 ===== HTTP POST <br/>
 APPEND (see FileSystem.append)
+<li>CONCAT (see FileSystem.concat)
 <br/>
 ===== HTTP DELETE <br/>
 DELETE (see FileSystem.delete)
@@ -72,6 +79,59 @@ public interface WebHDFSConnection {
 	 */
 	public  String open(String path, OutputStream os) throws MalformedURLException, IOException, AuthenticationException ;
 	
+	/**
+	 * <b>OPEN</b> into a channel
+	 * 
+	 * The data is moved with NIO: a {@link java.nio.channels.FileChannel} is
+	 * filled through {@link java.nio.channels.FileChannel#transferFrom}, any
+	 * other channel from a large reused buffer. The channel is left open.
+	 * 
+	 * @param path
+	 * @param channel
+	 * @return the number of bytes read
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public long open(String path, WritableByteChannel channel) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>OPEN</b> into a local file, replacing its contents
+	 * 
+	 * @param path
+	 * @param localFile
+	 * @return the number of bytes read
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 * @see #open(String, WritableByteChannel)
+	 */
+	public long open(String path, File localFile) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>OPEN</b>, ranged
+	 * 
+	 * curl -i -L "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=OPEN&offset=<LONG>[&length=<LONG>]"
+	 * 
+	 * The returned stream reads the response body; closing it before the end
+	 * of the range drops the connection.
+	 * 
+	 * @param path
+	 * @param offset
+	 * 			the offset of the first byte to read
+	 * @param length
+	 * 			the number of bytes to read, -1 to read to the end of the file
+	 * @return the {@link InputStream} over the range
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 * @see WebHDFSInputStream
+	 */
+	public InputStream open(String path, long offset, long length) throws MalformedURLException, IOException, AuthenticationException;
+	
 	/**
 	 * <b>GETCONTENTSUMMARY</b>
 	 * 
@@ -124,6 +184,86 @@ public interface WebHDFSConnection {
 	 */
 	public  String getFileCheckSum(String path) throws MalformedURLException, IOException, AuthenticationException ;
 	
+	/**
+	 * <b>GETFILESTATUS</b>, parsed
+	 * 
+	 * @param path
+	 * @return the {@link FileStatus}
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public FileStatus getStatus(String path) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>LISTSTATUS</b>, parsed
+	 * 
+	 * @param path
+	 * @return the {@link DirectoryListing}
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public DirectoryListing getListing(String path) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>LISTSTATUS</b>, yielding the children lazily
+	 * 
+	 * Pages through LISTSTATUS_BATCH (startAfter) when the server supports it,
+	 * otherwise parses the LISTSTATUS response incrementally while reading it,
+	 * so memory use does not depend on the size of the directory.
+	 * 
+	 * @param path
+	 * @return the {@link FileStatusIterator}, to be closed if not exhausted
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public FileStatusIterator listStatusIterator(String path) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>GETCONTENTSUMMARY</b>, parsed
+	 * 
+	 * @param path
+	 * @return the {@link ContentSummary}
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public ContentSummary getSummary(String path) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>GETFILECHECKSUM</b>, parsed
+	 * 
+	 * @param path
+	 * @return the {@link FileChecksum}
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public FileChecksum getChecksum(String path) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>GETDELEGATIONTOKEN</b>
+	 * 
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/?op=GETDELEGATIONTOKEN[&renewer=<USER>]"
+	 * 
+	 * @param renewer
+	 * 			the user allowed to renew the token, or null
+	 * @return the token, as the <code>urlString</code> to send along with
+	 * 			the <code>delegation</code> parameter
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public String getDelegationToken(String renewer) throws MalformedURLException, IOException, AuthenticationException;
+	
 /*
  * ========================================================================
  * PUT
@@ -135,6 +275,10 @@ public interface WebHDFSConnection {
 	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=CREATE
                     [&overwrite=<true|false>][&blocksize=<LONG>][&replication=<SHORT>]
                     [&permission=<OCTAL>][&buffersize=<INT>]"
+	 * 
+	 * Once the first upload has shown the server to be HttpFS, the data is
+	 * sent along with the operation in a single request.
+	 * 
 	 * @param path
 	 * @param is
 	 * @return
@@ -144,6 +288,44 @@ public interface WebHDFSConnection {
 	 */
 	public String create(String path, InputStream is) throws MalformedURLException, IOException, AuthenticationException;
 	
+	/**
+	 * <b>CREATE</b>, of known length
+	 * 
+	 * Sends {@code length} as the Content-Length of the data; the no-length
+	 * variant uses chunked transfer encoding instead. Either way the data is
+	 * streamed and never held in memory.
+	 * The data is only read once the server asked for it with a 100 Continue,
+	 * so a request whose kept-alive socket was closed by the server meanwhile
+	 * is sent again on another socket.
+	 * 
+	 * @param path
+	 * @param is
+	 * @param length
+	 * 			the number of bytes {@code is} holds, -1 if unknown
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String create(String path, InputStream is, long length) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>CREATE</b>, with the given layout
+	 * 
+	 * @param path
+	 * @param is
+	 * @param length
+	 * 			the number of bytes {@code is} holds, -1 if unknown
+	 * @param options
+	 * 			the block size, replication, permission, buffer size and
+	 * 			whether to overwrite, the unset ones being left to the server
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String create(String path, InputStream is, long length, CreateOptions options) throws MalformedURLException, IOException, AuthenticationException;
+	
 	/**
 	 * <b>MKDIRS</b>
 	 * 
@@ -157,6 +339,19 @@ public interface WebHDFSConnection {
 	 */
 	public String mkdirs(String path) throws MalformedURLException, IOException, AuthenticationException ;
 	
+	/**
+	 * <b>MKDIRS</b>, with the given permission
+	 * 
+	 * @param path
+	 * @param permission
+	 * 			an octal number such as <code>0755</code>
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String mkdirs(String path, int permission) throws MalformedURLException, IOException, AuthenticationException;
+	
 	/**
 	 * <b>CREATESYMLINK</b>
 	 * 
@@ -199,6 +394,19 @@ public interface WebHDFSConnection {
 	 */
 	public String setPermission(String path) throws MalformedURLException, IOException, AuthenticationException ;
 	
+	/**
+	 * <b>SETPERMISSION</b>, to the given permission
+	 * 
+	 * @param path
+	 * @param permission
+	 * 			an octal number such as <code>0644</code>
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String setPermission(String path, int permission) throws MalformedURLException, IOException, AuthenticationException;
+	
 	/**
 	 * <b>SETOWNER</b>
 	 * 
@@ -213,6 +421,21 @@ public interface WebHDFSConnection {
 	 */
 	public String setOwner(String path) throws MalformedURLException, IOException, AuthenticationException;
 	
+	/**
+	 * <b>SETOWNER</b>, to the given owner and group
+	 * 
+	 * @param path
+	 * @param owner
+	 * 			the user, null to keep it
+	 * @param group
+	 * 			the group, null to keep it
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String setOwner(String path, String owner, String group) throws MalformedURLException, IOException, AuthenticationException;
+	
 	/**
 	 * <b>SETREPLICATION</b>
 	 * 
@@ -227,6 +450,18 @@ public interface WebHDFSConnection {
 	 */
 	public String setReplication(String path) throws MalformedURLException, IOException, AuthenticationException ;
 	
+	/**
+	 * <b>SETREPLICATION</b>, to the given number of replicas
+	 * 
+	 * @param path
+	 * @param replication
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String setReplication(String path, short replication) throws MalformedURLException, IOException, AuthenticationException;
+	
 	/**
 	 * <b>SETTIMES</b>
 	 * 
@@ -241,6 +476,48 @@ public interface WebHDFSConnection {
 	 */
 	public String setTimes(String path) throws MalformedURLException, IOException, AuthenticationException;
 	
+	/**
+	 * <b>SETTIMES</b>, to the given times
+	 * 
+	 * @param path
+	 * @param modificationTime
+	 * 			in milliseconds since the epoch, -1 to keep it
+	 * @param accessTime
+	 * 			in milliseconds since the epoch, -1 to keep it
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String setTimes(String path, long modificationTime, long accessTime) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>RENEWDELEGATIONTOKEN</b>
+	 * 
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/?op=RENEWDELEGATIONTOKEN&token=<TOKEN>"
+	 * 
+	 * @param token
+	 * @return the new expiration time of the token, in milliseconds
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public long renewDelegationToken(String token) throws MalformedURLException, IOException, AuthenticationException;
+	
+	/**
+	 * <b>CANCELDELEGATIONTOKEN</b>
+	 * 
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/?op=CANCELDELEGATIONTOKEN&token=<TOKEN>"
+	 * 
+	 * @param token
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 * @throws AuthenticationException
+	 */
+	public void cancelDelegationToken(String token) throws MalformedURLException, IOException, AuthenticationException;
+	
 /*
  * ========================================================================
  * POST	
@@ -256,6 +533,40 @@ public interface WebHDFSConnection {
 	 * @throws AuthenticationException
 	 */
 	public String append(String path, InputStream is) throws MalformedURLException, IOException, AuthenticationException ;
+	
+	/**
+	 * <b>APPEND</b>, of known length
+	 * 
+	 * @param path
+	 * @param is
+	 * @param length
+	 * 			the number of bytes {@code is} holds, -1 if unknown
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 * @see #create(String, InputStream, long)
+	 */
+	public String append(String path, InputStream is, long length) throws MalformedURLException, IOException, AuthenticationException ;
+	
+	/**
+	 * <b>CONCAT</b>
+	 * 
+	 * curl -i -X POST "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=CONCAT
+	 * &sources=<PATHS>"
+	 * 
+	 * Moves the blocks of the sources to the end of {@code path} and deletes
+	 * the sources. They must live in the same directory as {@code path}, and
+	 * every file but the last must end on a block boundary.
+	 * 
+	 * @param path
+	 * @param sources
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String concat(String path, String... sources) throws MalformedURLException, IOException, AuthenticationException ;
 /*
  * ========================================================================
  * DELETE	
@@ -275,6 +586,20 @@ public interface WebHDFSConnection {
 	 */
 	public String delete(String path) throws MalformedURLException, IOException, AuthenticationException ;
 	
+	/**
+	 * <b>DELETE</b>, of a whole directory if {@code recursive}
+	 * 
+	 * @param path
+	 * @param recursive
+	 * 			whether a non-empty directory is deleted along with its
+	 * 			children, rather than failing the request
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String delete(String path, boolean recursive) throws MalformedURLException, IOException, AuthenticationException;
+	
 	
 	
 	
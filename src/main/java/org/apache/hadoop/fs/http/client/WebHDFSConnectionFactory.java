@@ -1,6 +1,27 @@
 package org.apache.hadoop.fs.http.client;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.apache.hadoop.fs.http.client.impl.CachingWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.impl.CircuitBreakerPolicy;
+import org.apache.hadoop.fs.http.client.impl.CircuitBreakingWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.impl.ConcurrencyLimiter;
+import org.apache.hadoop.fs.http.client.impl.ConnectionRegistry;
+import org.apache.hadoop.fs.http.client.impl.Endpoint;
+import org.apache.hadoop.fs.http.client.impl.ExecutorAsyncWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.impl.FailoverWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.impl.HedgingPolicy;
+import org.apache.hadoop.fs.http.client.impl.HedgingWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.impl.LimitingWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.impl.LoadBalancingPolicy;
+import org.apache.hadoop.fs.http.client.impl.MetadataCache;
+import org.apache.hadoop.fs.http.client.impl.RetryPolicy;
+import org.apache.hadoop.fs.http.client.impl.RetryingWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.transport.PooledHttpTransport;
 import org.apache.hadoop.fs.http.client.util.Assert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +55,15 @@ public class WebHDFSConnectionFactory {
 	private String username = DEFAULT_USERNAME;
 	private String password = DEFAULT_PASSWORD;
 	private AuthenticationType authenticationType = AuthenticationType.KERBEROS;
-	private WebHDFSConnection webHDFSConnection;
+	private HttpTransport transport = PooledHttpTransport.getSharedInstance();
+	private List<String> endpoints;
+	private LoadBalancingPolicy loadBalancingPolicy = LoadBalancingPolicy.ROUND_ROBIN;
+	private ConnectionRegistry registry = ConnectionRegistry.getSharedInstance();
+	private RetryPolicy retryPolicy;
+	private HedgingPolicy hedgingPolicy;
+	private ConcurrencyLimiter concurrencyLimiter;
+	private CircuitBreakerPolicy circuitBreakerPolicy;
+	private MetadataCache metadataCache;
 	
 	/**
 	 * Creates a new WebHDFSConnectionFactory instance.
@@ -65,19 +94,133 @@ public class WebHDFSConnectionFactory {
 		this.authenticationType = authType;
 	}
 	
+	/**
+	 * Creates a new WebHDFSConnectionFactory instance spreading the requests
+	 * over several servers.
+	 *
+	 * @param endpoints
+	 * 			the servers, as <code>host:port</code> or URLs
+	 * @param username
+	 * 			the user name
+	 * @param password
+	 * 			the user's password
+	 * @param authType
+	 * 			the authentication type
+	 */
+	public WebHDFSConnectionFactory(List<String> endpoints, String username, String password, AuthenticationType authType) {
+		this.endpoints = endpoints;
+		this.username = username;
+		this.password = password;
+		this.authenticationType = authType;
+	}
+
+	/**
+	 * Returns the connection of {@link #getUsername() username}, spreading
+	 * the requests over the {@link #getEndpoints() endpoints} through a
+	 * {@link FailoverWebHDFSConnection} if there are several, or sending them
+	 * to {@link #getHost() host} if there are none
+	 *
+	 * @return the {@link WebHDFSConnection}
+	 */
 	public WebHDFSConnection getConnection() {
-		Assert.notNull(host, "Property <host> must not be null");
-		Assert.notNull(port, "Property <port> must not be null");
+		return getConnection(username, password);
+	}
+
+	/**
+	 * Returns the connection of another user, authenticating with the
+	 * {@link #getPassword() password} of the factory
+	 *
+	 * @param username
+	 * 			the user name
+	 * @return the {@link WebHDFSConnection}
+	 * @see #getConnection(String, String)
+	 */
+	public WebHDFSConnection getConnection(String username) {
+		return getConnection(username, password);
+	}
+
+	/**
+	 * Returns the connection of another user, taken from the
+	 * {@link ConnectionRegistry} if one was created already with the same
+	 * settings, so that serving the user again needs no new authentication.
+	 * The connection fails requests at once to the endpoints whose breaker
+	 * is open if the factory was given a {@link CircuitBreakerPolicy}, holds
+	 * back requests beyond the limit of the factory's
+	 * {@link ConcurrencyLimiter} if any, hedges slow reads if the factory was
+	 * given a {@link HedgingPolicy}, and retries failed requests if it was
+	 * given a {@link RetryPolicy}. Statuses and listings are answered from
+	 * the factory's {@link MetadataCache} if any.
+	 *
+	 * @param username
+	 * 			the user name
+	 * @param password
+	 * 			the user's password
+	 * @return the {@link WebHDFSConnection}
+	 */
+	public WebHDFSConnection getConnection(final String username, final String password) {
 		Assert.notNull(username, "Property <username> must not be null");
 		Assert.notNull(authenticationType, "Property <authenticationType> must not be null");
-		
-		String httpfsUrl = String.format("%s%s:%s", DEFAULT_PROTOCOL, host, port);
+		Assert.notNull(transport, "Property <transport> must not be null");
+		Assert.notNull(registry, "Property <registry> must not be null");
 
-		if(webHDFSConnection == null) {
-			webHDFSConnection = authenticationType.createConnection(httpfsUrl, username, password);
+		final List<String> urls = new ArrayList<String>();
+		if(endpoints == null || endpoints.isEmpty()) {
+			Assert.notNull(host, "Property <host> must not be null");
+			urls.add(String.format("%s%s:%s", DEFAULT_PROTOCOL, host, port));
+		} else {
+			Assert.notNull(loadBalancingPolicy, "Property <loadBalancingPolicy> must not be null");
+			for(String endpoint : endpoints) {
+				urls.add(endpoint.contains("://") ? endpoint : DEFAULT_PROTOCOL + endpoint);
+			}
 		}
 
-		return webHDFSConnection;
+		final AuthenticationType authenticationType = this.authenticationType;
+		final LoadBalancingPolicy loadBalancingPolicy = urls.size() > 1 ? this.loadBalancingPolicy : null;
+		final HttpTransport transport = this.transport;
+		final CircuitBreakerPolicy circuitBreakerPolicy = this.circuitBreakerPolicy;
+
+		ConnectionRegistry.Key key = new ConnectionRegistry.Key(urls, username, password, authenticationType,
+				loadBalancingPolicy, transport, circuitBreakerPolicy);
+		WebHDFSConnection connection = registry.getConnection(key, new ConnectionRegistry.ConnectionSource() {
+			@Override
+			public WebHDFSConnection createConnection() {
+				if(loadBalancingPolicy == null) {
+					return createEndpointConnection(urls.get(0));
+				}
+				List<Endpoint> servers = new ArrayList<Endpoint>(urls.size());
+				for(String httpfsUrl : urls) {
+					servers.add(new Endpoint(httpfsUrl, createEndpointConnection(httpfsUrl)));
+				}
+				return new FailoverWebHDFSConnection(servers, loadBalancingPolicy);
+			}
+
+			private WebHDFSConnection createEndpointConnection(String httpfsUrl) {
+				WebHDFSConnection endpoint = authenticationType.createConnection(httpfsUrl, username, password, transport);
+				return circuitBreakerPolicy == null ? endpoint
+						: new CircuitBreakingWebHDFSConnection(endpoint, circuitBreakerPolicy.getBreaker(httpfsUrl));
+			}
+		});
+		if(concurrencyLimiter != null) {
+			connection = new LimitingWebHDFSConnection(connection, concurrencyLimiter);
+		}
+		if(hedgingPolicy != null) {
+			connection = new HedgingWebHDFSConnection(connection, hedgingPolicy);
+		}
+		if(retryPolicy != null) {
+			connection = new RetryingWebHDFSConnection(connection, retryPolicy);
+		}
+		return metadataCache == null ? connection : new CachingWebHDFSConnection(connection, metadataCache, username);
+	}
+
+	/**
+	 * Returns a non-blocking view of {@link #getConnection()}
+	 *
+	 * @param executor
+	 * 			the executor running the requests
+	 * @return the {@link AsyncWebHDFSConnection}
+	 */
+	public AsyncWebHDFSConnection getAsyncConnection(ExecutorService executor) {
+		return new ExecutorAsyncWebHDFSConnection(getConnection(), executor);
 	}
 
 	public String getHost() {
@@ -119,4 +262,141 @@ public class WebHDFSConnectionFactory {
 	public void setAuthenticationType(AuthenticationType authenticationType) {
 		this.authenticationType = authenticationType;
 	}
+
+	public List<String> getEndpoints() {
+		return endpoints;
+	}
+
+	/**
+	 * Sets the servers to spread the requests over, taking precedence over
+	 * {@link #setHost(String) host} and {@link #setPort(int) port}
+	 *
+	 * @param endpoints
+	 * 			the servers, as <code>host:port</code> or URLs
+	 */
+	public void setEndpoints(List<String> endpoints) {
+		this.endpoints = endpoints;
+	}
+
+	public LoadBalancingPolicy getLoadBalancingPolicy() {
+		return loadBalancingPolicy;
+	}
+
+	/**
+	 * Sets how the requests are spread over the {@link #setEndpoints(List)
+	 * endpoints}; defaults to {@link LoadBalancingPolicy#ROUND_ROBIN}
+	 *
+	 * @param loadBalancingPolicy
+	 * 			the policy
+	 */
+	public void setLoadBalancingPolicy(LoadBalancingPolicy loadBalancingPolicy) {
+		this.loadBalancingPolicy = loadBalancingPolicy;
+	}
+
+	public HttpTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Sets the {@link HttpTransport} the connections send their requests
+	 * through; defaults to the JVM-wide {@link PooledHttpTransport}
+	 *
+	 * @param transport
+	 * 			the transport
+	 */
+	public void setTransport(HttpTransport transport) {
+		this.transport = transport;
+	}
+
+	public ConnectionRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Sets the {@link ConnectionRegistry} keeping the connections; defaults
+	 * to the JVM-wide one
+	 *
+	 * @param registry
+	 * 			the registry
+	 */
+	public void setRegistry(ConnectionRegistry registry) {
+		this.registry = registry;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Sets the {@link RetryPolicy} of the connections, whose retry budget
+	 * they all share; by default failed requests are not retried
+	 *
+	 * @param retryPolicy
+	 * 			the policy, or null
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	public HedgingPolicy getHedgingPolicy() {
+		return hedgingPolicy;
+	}
+
+	/**
+	 * Sets the {@link HedgingPolicy} of the connections, whose latencies and
+	 * hedging budget they all share; by default slow reads are not hedged
+	 *
+	 * @param hedgingPolicy
+	 * 			the policy, or null
+	 */
+	public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+		this.hedgingPolicy = hedgingPolicy;
+	}
+
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	/**
+	 * Sets the {@link ConcurrencyLimiter} of the connections, which bounds
+	 * the requests of all of them together; by default they are not limited
+	 *
+	 * @param concurrencyLimiter
+	 * 			the limiter, or null
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+		return circuitBreakerPolicy;
+	}
+
+	/**
+	 * Sets the {@link CircuitBreakerPolicy} of the connections, which share
+	 * the breaker of each endpoint; by default requests are sent to failing
+	 * endpoints all the same
+	 *
+	 * @param circuitBreakerPolicy
+	 * 			the policy, or null
+	 */
+	public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+		this.circuitBreakerPolicy = circuitBreakerPolicy;
+	}
+
+	public MetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+
+	/**
+	 * Sets the {@link MetadataCache} of the connections, which keep the
+	 * entries of each user apart; by default statuses and listings are read
+	 * from the server every time
+	 *
+	 * @param metadataCache
+	 * 			the cache, or null
+	 */
+	public void setMetadataCache(MetadataCache metadataCache) {
+		this.metadataCache = metadataCache;
+	}
 }
@@ -0,0 +1,49 @@
+package org.apache.hadoop.fs.http.client;
+
+import java.io.IOException;
+
+/**
+ * Signals that the server answered a request with an error status.
+ * <p>
+ * When the response carried a <code>RemoteException</code> JSON object, its
+ * <code>exception</code> and <code>javaClassName</code> members are
+ * available through {@link #getException()} and {@link #getJavaClassName()}.
+ */
+public class WebHDFSException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+	private final String exception;
+	private final String javaClassName;
+
+	public WebHDFSException(int statusCode, String message, String exception, String javaClassName) {
+		super(String.format("%d %s", statusCode, message));
+		this.statusCode = statusCode;
+		this.exception = exception;
+		this.javaClassName = javaClassName;
+	}
+
+	/**
+	 * @return the HTTP status code of the response
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return the simple name of the server-side exception, e.g.
+	 * 			<code>FileNotFoundException</code>, or null if unknown
+	 */
+	public String getException() {
+		return exception;
+	}
+
+	/**
+	 * @return the fully qualified name of the server-side exception, or null
+	 * 			if unknown
+	 */
+	public String getJavaClassName() {
+		return javaClassName;
+	}
+}
@@ -0,0 +1,265 @@
+package org.apache.hadoop.fs.http.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * Seekable {@link InputStream} over a file, backed by ranged OPEN requests.
+ * <p>
+ * Sequential reads share one response. A forward {@link #seek(long)} of at
+ * most {@link #getForwardSeekLimit()} bytes discards data from that response
+ * rather than paying for a new request; any other seek drops it and the next
+ * read reopens the file at the new position. {@link #pread(long, byte[], int, int)}
+ * fetches exactly the requested range and leaves the position untouched.
+ * <p>
+ * Not thread-safe.
+ */
+public class WebHDFSInputStream extends InputStream {
+
+	/** The default largest forward seek served by discarding bytes of the open response */
+	public static final int DEFAULT_FORWARD_SEEK_LIMIT = 128 * 1024;
+
+	private final WebHDFSConnection connection;
+	private final String path;
+	private int forwardSeekLimit = DEFAULT_FORWARD_SEEK_LIMIT;
+
+	private InputStream in;
+	private long pos;
+	private long length;
+	private boolean closed;
+
+	/**
+	 * Creates a new WebHDFSInputStream instance, the file length being
+	 * looked up with GETFILESTATUS the first time it is needed.
+	 *
+	 * @param connection
+	 * 			the connection sending the OPEN requests
+	 * @param path
+	 * 			the file to read
+	 */
+	public WebHDFSInputStream(WebHDFSConnection connection, String path) {
+		this(connection, path, -1L);
+	}
+
+	/**
+	 * Creates a new WebHDFSInputStream instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the OPEN requests
+	 * @param path
+	 * 			the file to read
+	 * @param length
+	 * 			the length of the file, -1 if unknown
+	 */
+	public WebHDFSInputStream(WebHDFSConnection connection, String path, long length) {
+		this.connection = connection;
+		this.path = path;
+		this.length = length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		int n = read(b, 0, 1);
+		return n == -1 ? -1 : b[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (len == 0) {
+			return 0;
+		}
+
+		InputStream stream = stream();
+		if (stream == null) {
+			return -1;
+		}
+
+		int n = stream.read(b, off, len);
+		if (n == -1) {
+			closeStream();
+		} else {
+			pos += n;
+		}
+		return n;
+	}
+
+	/**
+	 * Reads up to {@code len} bytes starting at {@code position} without
+	 * moving the stream's position
+	 *
+	 * @param position
+	 * 			the offset in the file
+	 * @param b
+	 * 			the buffer
+	 * @param off
+	 * 			the offset in the buffer
+	 * @param len
+	 * 			the maximum number of bytes to read
+	 * @return the number of bytes read, -1 if {@code position} is at or past the end of the file
+	 * @throws IOException
+	 */
+	public int pread(long position, byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (len == 0) {
+			return 0;
+		}
+		if (position >= getLength()) {
+			return -1;
+		}
+
+		InputStream stream = open(position, len);
+		try {
+			int total = 0;
+			while (total < len) {
+				int n = stream.read(b, off + total, len - total);
+				if (n == -1) {
+					break;
+				}
+				total += n;
+			}
+			return total == 0 ? -1 : total;
+		}
+		finally {
+			Closeables.closeQuietly(stream);
+		}
+	}
+
+	/**
+	 * Reads exactly {@code len} bytes starting at {@code position} without
+	 * moving the stream's position
+	 *
+	 * @throws EOFException
+	 * 			if the file ends before {@code len} bytes were read
+	 * @see #pread(long, byte[], int, int)
+	 */
+	public void readFully(long position, byte[] b, int off, int len) throws IOException {
+		int n = pread(position, b, off, len);
+		if (n < len) {
+			throw new EOFException(String.format("Reached end of %s reading %d bytes at %d", path, len, position));
+		}
+	}
+
+	/**
+	 * Moves the position of the stream
+	 *
+	 * @param target
+	 * 			the new offset in the file
+	 * @throws IOException
+	 */
+	public void seek(long target) throws IOException {
+		ensureOpen();
+		if (target < 0) {
+			throw new EOFException("Cannot seek to a negative offset");
+		}
+
+		if (in != null && target > pos && target - pos <= forwardSeekLimit) {
+			while (pos < target) {
+				long skipped = in.skip(target - pos);
+				if (skipped <= 0) {
+					if (in.read() == -1) {
+						closeStream();
+						break;
+					}
+					skipped = 1;
+				}
+				pos += skipped;
+			}
+		} else if (target != pos) {
+			closeStream();
+		}
+		pos = target;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		long target = pos + n;
+		if (length >= 0) {
+			target = Math.min(target, length);
+		}
+		long skipped = target - pos;
+		seek(target);
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		ensureOpen();
+		return in == null ? 0 : in.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeStream();
+		closed = true;
+	}
+
+	/**
+	 * @return the current offset in the file
+	 */
+	public long getPos() {
+		return pos;
+	}
+
+	/**
+	 * @return the length of the file
+	 * @throws IOException
+	 */
+	public long getLength() throws IOException {
+		if (length < 0) {
+			try {
+				length = connection.getStatus(path).getLength();
+			}
+			catch(AuthenticationException e) {
+				throw new IOException(e);
+			}
+		}
+		return length;
+	}
+
+	public int getForwardSeekLimit() {
+		return forwardSeekLimit;
+	}
+
+	public void setForwardSeekLimit(int forwardSeekLimit) {
+		this.forwardSeekLimit = forwardSeekLimit;
+	}
+
+	private InputStream stream() throws IOException {
+		if (in == null) {
+			if (pos > 0 && pos >= getLength()) {
+				return null;
+			}
+			in = open(pos, -1L);
+		}
+		return in;
+	}
+
+	private InputStream open(long offset, long len) throws IOException {
+		try {
+			return connection.open(path, offset, len);
+		}
+		catch(AuthenticationException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private void closeStream() {
+		Closeables.closeQuietly(in);
+		in = null;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package org.apache.hadoop.fs.http.client.bulk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.bulk.BulkReport.Result;
+import org.apache.hadoop.fs.http.client.bulk.BulkReport.Status;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Applies a {@link PathOperation} to many paths at once, such as deleting
+ * the files a retention job found.
+ * <p>
+ * Up to {@link #getParallelism()} requests are in flight at any time, each
+ * over a pooled connection, so that the batch takes about as many round
+ * trips in a row as it has paths divided by the parallelism. Requests start
+ * in the order of the paths, no more than {@link #getMaxPerSecond()} a
+ * second if set, to spare the namenode. A failed path does not stop the
+ * others: every path gets a {@link Result} in the {@link BulkReport}, until
+ * more than {@link #getMaxFailures()} failed, the remaining ones then being
+ * skipped.
+ */
+public class BulkExecutor {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final WebHDFSConnection connection;
+	private final ExecutorService executor;
+	private final int parallelism;
+	private final boolean ownsExecutor;
+
+	private double maxPerSecond = 0;
+	private int maxFailures = Integer.MAX_VALUE;
+
+	/**
+	 * Creates a new BulkExecutor instance with its own pool of
+	 * {@code parallelism} workers, released by {@link #shutdown()}.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param parallelism
+	 * 			the number of requests in flight
+	 */
+	public BulkExecutor(WebHDFSConnection connection, int parallelism) {
+		this(connection, Executors.newFixedThreadPool(parallelism,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-bulk-%d").build()), parallelism, true);
+	}
+
+	/**
+	 * Creates a new BulkExecutor instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param executor
+	 * 			the executor sending the requests
+	 * @param parallelism
+	 * 			the number of requests in flight, whatever the size of the
+	 * 			executor
+	 */
+	public BulkExecutor(WebHDFSConnection connection, ExecutorService executor, int parallelism) {
+		this(connection, executor, parallelism, false);
+	}
+
+	private BulkExecutor(WebHDFSConnection connection, ExecutorService executor, int parallelism, boolean ownsExecutor) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Property <parallelism> must be positive");
+		}
+		this.connection = connection;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.ownsExecutor = ownsExecutor;
+	}
+
+	/**
+	 * Applies {@code operation} to every path
+	 *
+	 * @param paths
+	 * 			the paths
+	 * @param operation
+	 * 			the operation, e.g. {@link StandardOperation#DELETE}
+	 * @return the result of every path, in the same order
+	 * @throws InterruptedIOException
+	 * 			if interrupted while waiting, the requests in flight being
+	 * 			cancelled
+	 */
+	public BulkReport execute(List<String> paths, PathOperation operation) throws InterruptedIOException {
+		Assert.notNull(paths, "Property <paths> must not be null");
+		Assert.notNull(operation, "Property <operation> must not be null");
+		long start = System.currentTimeMillis();
+		Result[] results = new Result[paths.size()];
+		AtomicInteger failures = new AtomicInteger();
+		Semaphore permits = new Semaphore(parallelism);
+		List<Future<?>> futures = new ArrayList<Future<?>>(paths.size());
+		long interval = maxPerSecond > 0 ? (long) (NANOS_PER_SECOND / maxPerSecond) : 0L;
+		long next = System.nanoTime();
+
+		try {
+			for (int i = 0; i < results.length; i++) {
+				String path = paths.get(i);
+				if (failures.get() > maxFailures) {
+					results[i] = new Result(path, Status.SKIPPED, null, -1, null);
+					continue;
+				}
+				permits.acquire();
+				// the requests finishing meanwhile may have failed
+				if (failures.get() > maxFailures) {
+					permits.release();
+					results[i] = new Result(path, Status.SKIPPED, null, -1, null);
+					continue;
+				}
+				if (interval > 0) {
+					long now = System.nanoTime();
+					if (next - now > 0) {
+						TimeUnit.NANOSECONDS.sleep(next - now);
+					} else {
+						next = now;
+					}
+					next += interval;
+				}
+				boolean submitted = false;
+				try {
+					futures.add(executor.submit(new Request(operation, path, i, results, failures, permits)));
+					submitted = true;
+				}
+				finally {
+					if (!submitted) {
+						permits.release();
+					}
+				}
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		catch(InterruptedException e) {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while running " + operation.getName());
+		}
+		catch(ExecutionException e) {
+			// only an Error escapes a request
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+			throw (Error) e.getCause();
+		}
+
+		return new BulkReport(operation.getName(), Arrays.asList(results), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Deletes every path, see {@link #execute(List, PathOperation)}
+	 */
+	public BulkReport delete(List<String> paths) throws InterruptedIOException {
+		return execute(paths, StandardOperation.DELETE);
+	}
+
+	/**
+	 * Releases the pool of workers, if the BulkExecutor created it
+	 */
+	public void shutdown() {
+		if (ownsExecutor) {
+			executor.shutdownNow();
+		}
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public double getMaxPerSecond() {
+		return maxPerSecond;
+	}
+
+	/**
+	 * Sets how many requests may start a second, 0 for no limit
+	 *
+	 * @param maxPerSecond
+	 */
+	public void setMaxPerSecond(double maxPerSecond) {
+		if (maxPerSecond < 0) {
+			throw new IllegalArgumentException("Property <maxPerSecond> must not be negative");
+		}
+		this.maxPerSecond = maxPerSecond;
+	}
+
+	public int getMaxFailures() {
+		return maxFailures;
+	}
+
+	/**
+	 * Sets how many paths may fail before the remaining ones are skipped,
+	 * 0 stopping at the first failure. Requests already in flight still
+	 * complete.
+	 *
+	 * @param maxFailures
+	 */
+	public void setMaxFailures(int maxFailures) {
+		if (maxFailures < 0) {
+			throw new IllegalArgumentException("Property <maxFailures> must not be negative");
+		}
+		this.maxFailures = maxFailures;
+	}
+
+	/*
+	 * Applies the operation to one path and records its result.
+	 */
+	private final class Request implements Runnable {
+
+		private final PathOperation operation;
+		private final String path;
+		private final int index;
+		private final Result[] results;
+		private final AtomicInteger failures;
+		private final Semaphore permits;
+
+		Request(PathOperation operation, String path, int index, Result[] results, AtomicInteger failures,
+				Semaphore permits) {
+			this.operation = operation;
+			this.path = path;
+			this.index = index;
+			this.results = results;
+			this.failures = failures;
+			this.permits = permits;
+		}
+
+		@Override
+		public void run() {
+			Result result = null;
+			try {
+				String json = operation.apply(connection, path);
+				int code = ResponseUtil.getCode(json);
+				result = new Result(path, code / 100 == 2 ? Status.SUCCEEDED : Status.FAILED, json, code, null);
+			}
+			catch(IOException e) {
+				result = new Result(path, Status.FAILED, null, -1, e);
+			}
+			catch(AuthenticationException e) {
+				result = new Result(path, Status.FAILED, null, -1, e);
+			}
+			catch(RuntimeException e) {
+				// thrown by the operation, which may be the caller's own
+				result = new Result(path, Status.FAILED, null, -1, e);
+			}
+			finally {
+				if (result != null) {
+					if (result.getStatus() == Status.FAILED) {
+						failures.incrementAndGet();
+					}
+					results[index] = result;
+				}
+				permits.release();
+			}
+		}
+	}
+}
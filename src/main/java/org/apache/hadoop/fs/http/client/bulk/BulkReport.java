@@ -0,0 +1,160 @@
+package org.apache.hadoop.fs.http.client.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a {@link BulkExecutor} did with each path, in the order they were
+ * given.
+ */
+public class BulkReport {
+
+	/**
+	 * What became of a path
+	 */
+	public enum Status {
+		/** The response code was 2xx */
+		SUCCEEDED,
+		/** The response code was not 2xx, or the request failed */
+		FAILED,
+		/** The request was not sent, too many others having failed */
+		SKIPPED
+	}
+
+	/**
+	 * The result of the operation on a single path
+	 */
+	public static final class Result {
+
+		private final String path;
+		private final Status status;
+		private final String response;
+		private final int code;
+		private final Exception error;
+
+		Result(String path, Status status, String response, int code, Exception error) {
+			this.path = path;
+			this.status = status;
+			this.response = response;
+			this.code = code;
+			this.error = error;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * @return the JSON response, or null if none was read
+		 */
+		public String getResponse() {
+			return response;
+		}
+
+		/**
+		 * @return the response code, or -1 if none was read
+		 */
+		public int getCode() {
+			return code;
+		}
+
+		/**
+		 * @return the exception the request failed with, or null
+		 */
+		public Exception getError() {
+			return error;
+		}
+
+		@Override
+		public String toString() {
+			return path + ": " + status + (code < 0 ? "" : " " + code) + (error == null ? "" : " " + error);
+		}
+	}
+
+	private final String operation;
+	private final List<Result> results;
+	private final long elapsedMillis;
+	private int succeeded;
+	private int failed;
+	private int skipped;
+
+	BulkReport(String operation, List<Result> results, long elapsedMillis) {
+		this.operation = operation;
+		this.results = Collections.unmodifiableList(results);
+		this.elapsedMillis = elapsedMillis;
+		for (Result result : results) {
+			switch (result.getStatus()) {
+			case SUCCEEDED:
+				succeeded++;
+				break;
+			case FAILED:
+				failed++;
+				break;
+			default:
+				skipped++;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return the name of the operation applied
+	 */
+	public String getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return the result of every path, in the order they were given
+	 */
+	public List<Result> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return the results which did not succeed, skipped ones included
+	 */
+	public List<Result> getFailures() {
+		List<Result> failures = new ArrayList<Result>(failed + skipped);
+		for (Result result : results) {
+			if (result.getStatus() != Status.SUCCEEDED) {
+				failures.add(result);
+			}
+		}
+		return failures;
+	}
+
+	public int getSucceededCount() {
+		return succeeded;
+	}
+
+	public int getFailedCount() {
+		return failed;
+	}
+
+	public int getSkippedCount() {
+		return skipped;
+	}
+
+	/**
+	 * @return whether the operation succeeded on every path
+	 */
+	public boolean isSuccessful() {
+		return succeeded == results.size();
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return operation + ": " + succeeded + " succeeded, " + failed + " failed, " + skipped + " skipped in "
+				+ elapsedMillis + " ms";
+	}
+}
@@ -0,0 +1,34 @@
+package org.apache.hadoop.fs.http.client.bulk;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * An operation a {@link BulkExecutor} applies to each of many paths, see
+ * {@link StandardOperation} and {@link PathOperations} for the usual ones.
+ * Called concurrently from the worker threads, so implementations must be
+ * thread-safe.
+ */
+public interface PathOperation {
+
+	/**
+	 * @return the name of the operation, e.g. <code>DELETE</code>
+	 */
+	public String getName();
+
+	/**
+	 * Applies the operation to {@code path}
+	 *
+	 * @param connection
+	 * 			the connection sending the request
+	 * @param path
+	 * 			the path
+	 * @return the JSON response, its <code>code</code> telling whether the
+	 * 			operation succeeded
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException;
+}
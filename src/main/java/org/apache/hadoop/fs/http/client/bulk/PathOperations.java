@@ -0,0 +1,107 @@
+package org.apache.hadoop.fs.http.client.bulk;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * The {@link PathOperation}s setting the same values on every path, e.g.
+ * <code>PathOperations.setReplication((short) 2)</code>.
+ */
+public final class PathOperations {
+
+	private PathOperations() {
+	}
+
+	/**
+	 * @see WebHDFSConnection#delete(String, boolean)
+	 */
+	public static PathOperation delete(final boolean recursive) {
+		return new PathOperation() {
+			@Override
+			public String getName() {
+				return "DELETE";
+			}
+
+			@Override
+			public String apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException {
+				return connection.delete(path, recursive);
+			}
+		};
+	}
+
+	/**
+	 * @see WebHDFSConnection#setPermission(String, int)
+	 */
+	public static PathOperation setPermission(final int permission) {
+		return new PathOperation() {
+			@Override
+			public String getName() {
+				return "SETPERMISSION";
+			}
+
+			@Override
+			public String apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException {
+				return connection.setPermission(path, permission);
+			}
+		};
+	}
+
+	/**
+	 * @see WebHDFSConnection#setOwner(String, String, String)
+	 */
+	public static PathOperation setOwner(final String owner, final String group) {
+		if (owner == null && group == null) {
+			throw new IllegalArgumentException("Property <owner> or <group> must not be null");
+		}
+		return new PathOperation() {
+			@Override
+			public String getName() {
+				return "SETOWNER";
+			}
+
+			@Override
+			public String apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException {
+				return connection.setOwner(path, owner, group);
+			}
+		};
+	}
+
+	/**
+	 * @see WebHDFSConnection#setReplication(String, short)
+	 */
+	public static PathOperation setReplication(final short replication) {
+		if (replication <= 0) {
+			throw new IllegalArgumentException("Property <replication> must be positive");
+		}
+		return new PathOperation() {
+			@Override
+			public String getName() {
+				return "SETREPLICATION";
+			}
+
+			@Override
+			public String apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException {
+				return connection.setReplication(path, replication);
+			}
+		};
+	}
+
+	/**
+	 * @see WebHDFSConnection#setTimes(String, long, long)
+	 */
+	public static PathOperation setTimes(final long modificationTime, final long accessTime) {
+		return new PathOperation() {
+			@Override
+			public String getName() {
+				return "SETTIMES";
+			}
+
+			@Override
+			public String apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException {
+				return connection.setTimes(path, modificationTime, accessTime);
+			}
+		};
+	}
+}
@@ -0,0 +1,27 @@
+package org.apache.hadoop.fs.http.client.bulk;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * The {@link WebHDFSConnection} operations needing no values. See
+ * {@link PathOperations} for those setting given values, e.g. permissions
+ * or replication: sent without values, the server would reset them to its
+ * defaults on every path.
+ */
+public enum StandardOperation implements PathOperation {
+
+	DELETE {
+		@Override
+		public String apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException {
+			return connection.delete(path);
+		}
+	};
+
+	@Override
+	public String getName() {
+		return name();
+	}
+}
@@ -0,0 +1,1346 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.channels.WritableByteChannel;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.FileStatusIterator;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSConnectionFactory;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.model.ContentSummary;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileChecksum;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.transport.PooledHttpTransport;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.apache.hadoop.fs.http.client.util.Streams;
+import org.apache.hadoop.fs.http.client.util.URLUtil;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.apache.hadoop.security.authentication.client.Authenticator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Request plumbing shared by the {@link WebHDFSConnection} implementations.
+ * <p>
+ * Subclasses supply the {@link Authenticator} and the way a token is
+ * generated; every HTTP exchange goes through the {@link HttpTransport} so
+ * sockets are recycled between operations.
+ */
+abstract class AbstractWebHDFSConnection implements WebHDFSConnection {
+
+	protected static final Logger logger = LoggerFactory.getLogger(AbstractWebHDFSConnection.class);
+
+	private static final Gson gson = new Gson();
+
+	/* the number of idle sockets the JDK keeps per destination */
+	private static final int MAX_STALE_SOCKETS = Integer.getInteger("http.maxConnections", 5);
+
+	protected String httpfsUrl = WebHDFSConnectionFactory.DEFAULT_URL;
+	protected String principal = WebHDFSConnectionFactory.DEFAULT_USERNAME;
+	protected String password = WebHDFSConnectionFactory.DEFAULT_PASSWORD;
+
+	protected Token token = new AuthenticatedURL.Token();
+	protected Authenticator authenticator;
+	protected HttpTransport transport = PooledHttpTransport.getSharedInstance();
+	protected TokenManager tokenManager = TokenManager.getSharedInstance();
+
+	private final TokenManager.TokenSource tokenSource = new TokenManager.TokenSource() {
+		@Override
+		public Token generateToken() {
+			return AbstractWebHDFSConnection.this.generateToken();
+		}
+	};
+
+	/* null until the server has been asked for LISTSTATUS_BATCH once */
+	private volatile Boolean listStatusBatchSupported;
+
+	/* null until the first CREATE or APPEND told how the server takes data */
+	private volatile UploadMode uploadMode;
+
+	AbstractWebHDFSConnection() {
+	}
+
+	AbstractWebHDFSConnection(String httpfsUrl, String principal, String password, HttpTransport transport) {
+		this.httpfsUrl = httpfsUrl;
+		this.principal = principal;
+		this.password = password;
+		if (transport != null) {
+			this.transport = transport;
+		}
+	}
+
+	/**
+	 * Authenticates against the server and returns a fresh token
+	 *
+	 * @return the new token, unset if the authentication failed
+	 */
+	protected abstract Token generateToken();
+
+	/**
+	 * Additional query string parameters identifying the user, starting
+	 * with {@code &}
+	 *
+	 * @return the parameters, or an empty string if none are needed
+	 */
+	protected String authParams() {
+		return "";
+	}
+
+	/**
+	 * Picks up the token shared with the other connections to the same
+	 * server as the same principal, generating it if it expired
+	 */
+	public void ensureValidToken() {
+		token = tokenManager.getToken(tokenKey(), tokenSource);
+	}
+
+	/**
+	 * Drops the token, e.g. after the server rejected it, so that the next
+	 * request authenticates again
+	 */
+	public void invalidateToken() {
+		tokenManager.invalidate(tokenKey(), token);
+		token = new AuthenticatedURL.Token();
+	}
+
+	private String tokenKey() {
+		return MessageFormat.format("{0}:{1}@{2}", getClass().getName(), principal, httpfsUrl);
+	}
+
+	/*
+	 * ========================================================================
+	 * GET
+	 * ========================================================================
+	 */
+	/**
+	 * <b>GETHOMEDIRECTORY</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/?op=GETHOMEDIRECTORY"
+	 *
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String getHomeDirectory() throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl("", "GETHOMEDIRECTORY"), "GET");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>OPEN</b>
+	 *
+	 * curl -i -L "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=OPEN
+	 * [&offset=<LONG>][&length=<LONG>][&buffersize=<INT>]"
+	 *
+	 * @param path
+	 * @param os
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String open(String path, OutputStream os) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "OPEN"), "GET");
+		conn.setRequestProperty("Content-Type", "application/octet-stream");
+
+		try {
+			conn.connect();
+			Streams.copy(conn.getInputStream(), os);
+		}
+		catch(IOException e) {
+			transport.abort(conn);
+			throw e;
+		}
+
+		String resp = result(conn, false);
+		transport.release(conn);
+
+		return resp;
+	}
+
+	/**
+	 * <b>OPEN</b> into a channel
+	 *
+	 * @param path
+	 * @param channel
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long open(String path, WritableByteChannel channel) throws MalformedURLException, IOException, AuthenticationException {
+		InputStream is = open(path, 0L, -1L);
+		try {
+			return Streams.copy(is, channel);
+		}
+		finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * <b>OPEN</b> into a local file
+	 *
+	 * @param path
+	 * @param localFile
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long open(String path, File localFile) throws MalformedURLException, IOException, AuthenticationException {
+		FileOutputStream os = new FileOutputStream(localFile);
+		try {
+			return open(path, os.getChannel());
+		}
+		finally {
+			Closeables.closeQuietly(os);
+		}
+	}
+
+	/**
+	 * <b>OPEN</b>, ranged
+	 *
+	 * curl -i -L "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=OPEN&offset=<LONG>[&length=<LONG>]"
+	 *
+	 * @param path
+	 * @param offset
+	 * @param length
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public InputStream open(String path, long offset, long length) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		String params = "&offset=" + offset + (length >= 0 ? "&length=" + length : "");
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "OPEN", params), "GET");
+
+		try {
+			conn.connect();
+			checkResponse(conn);
+			return new ResponseInputStream(conn, transport);
+		}
+		catch(WebHDFSException e) {
+			transport.release(conn);
+			throw e;
+		}
+		catch(IOException e) {
+			transport.abort(conn);
+			throw e;
+		}
+	}
+
+	/**
+	 * <b>GETCONTENTSUMMARY</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=GETCONTENTSUMMARY"
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String getContentSummary(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "GETCONTENTSUMMARY"), "GET");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>LISTSTATUS</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=LISTSTATUS"
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String listStatus(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "LISTSTATUS"), "GET");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>GETFILESTATUS</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=GETFILESTATUS"
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String getFileStatus(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "GETFILESTATUS"), "GET");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>GETFILECHECKSUM</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=GETFILECHECKSUM"
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String getFileCheckSum(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "GETFILECHECKSUM"), "GET");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>GETFILESTATUS</b>, parsed
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public FileStatus getStatus(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "GETFILESTATUS"), "GET");
+		return execute(conn, ResponseHandler.FILE_STATUS);
+	}
+
+	/**
+	 * <b>LISTSTATUS</b>, parsed
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public DirectoryListing getListing(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "LISTSTATUS"), "GET");
+		return execute(conn, ResponseHandler.FILE_STATUSES);
+	}
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>, falling back to a streamed <b>LISTSTATUS</b>
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public FileStatusIterator listStatusIterator(String path) throws MalformedURLException, IOException, AuthenticationException {
+		if (listStatusBatchSupported != Boolean.FALSE) {
+			try {
+				DirectoryListing firstPage = listStatusBatch(path, null);
+				listStatusBatchSupported = Boolean.TRUE;
+				return new ListStatusIterator(this, path, firstPage);
+			}
+			catch(WebHDFSException e) {
+				if (listStatusBatchSupported != null || !isUnsupportedOperation(e, "LISTSTATUS_BATCH")) {
+					throw e;
+				}
+				logger.info("LISTSTATUS_BATCH not supported by " + httpfsUrl + ", streaming LISTSTATUS instead");
+				listStatusBatchSupported = Boolean.FALSE;
+			}
+		}
+
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "LISTSTATUS"), "GET");
+		return new ListStatusIterator(this, path, conn);
+	}
+
+	/**
+	 * <b>LISTSTATUS_BATCH</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=LISTSTATUS_BATCH&startAfter=<CHILD>"
+	 *
+	 * @param path
+	 * @param startAfter
+	 * 			the last child of the previous page, null for the first page
+	 * @return one page of children
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	DirectoryListing listStatusBatch(String path, String startAfter) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		String params = startAfter == null ? "" : "&startAfter=" + URLEncoder.encode(startAfter, "UTF-8");
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "LISTSTATUS_BATCH", params), "GET");
+		return execute(conn, ResponseHandler.DIRECTORY_LISTING);
+	}
+
+	/**
+	 * <b>GETCONTENTSUMMARY</b>, parsed
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public ContentSummary getSummary(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "GETCONTENTSUMMARY"), "GET");
+		return execute(conn, ResponseHandler.CONTENT_SUMMARY);
+	}
+
+	/**
+	 * <b>GETFILECHECKSUM</b>, parsed
+	 *
+	 * @param path
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public FileChecksum getChecksum(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "GETFILECHECKSUM"), "GET");
+		return execute(conn, ResponseHandler.FILE_CHECKSUM);
+	}
+
+	/**
+	 * <b>GETDELEGATIONTOKEN</b>
+	 *
+	 * curl -i "http://<HOST>:<PORT>/webhdfs/v1/?op=GETDELEGATIONTOKEN[&renewer=<USER>]"
+	 *
+	 * @param renewer
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String getDelegationToken(String renewer) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		String params = renewer == null ? "" : "&renewer=" + URLEncoder.encode(renewer, "UTF-8");
+		HttpURLConnection conn = openConnection(createOperationUrl("", "GETDELEGATIONTOKEN", params), "GET");
+		return execute(conn, ResponseHandler.TOKEN);
+	}
+
+	/*
+	 * ========================================================================
+	 * PUT
+	 * ========================================================================
+	 */
+	/**
+	 * <b>CREATE</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=CREATE
+	 * [&overwrite=<true|false>][&blocksize=<LONG>][&replication=<SHORT>]
+	 * [&permission=<OCTAL>][&buffersize=<INT>]"
+	 *
+	 * @param path
+	 * @param is
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String create(String path, InputStream is) throws MalformedURLException, IOException, AuthenticationException {
+		return create(path, is, -1L);
+	}
+
+	/**
+	 * <b>CREATE</b>, of known length
+	 *
+	 * @param path
+	 * @param is
+	 * @param length
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String create(String path, InputStream is, long length) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		return upload(createOperationUrl(path, "CREATE"), "PUT", is, length, false);
+	}
+
+	/**
+	 * <b>CREATE</b>, with the given layout
+	 *
+	 * @param path
+	 * @param is
+	 * @param length
+	 * @param options
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String create(String path, InputStream is, long length, CreateOptions options) throws MalformedURLException, IOException, AuthenticationException {
+		StringBuilder params = new StringBuilder();
+		if (options != null) {
+			if (options.getOverwrite() != null) {
+				params.append("&overwrite=").append(options.getOverwrite());
+			}
+			if (options.getBlockSize() > 0) {
+				params.append("&blocksize=").append(options.getBlockSize());
+			}
+			if (options.getReplication() > 0) {
+				params.append("&replication=").append(options.getReplication());
+			}
+			if (options.getPermission() >= 0) {
+				params.append("&permission=").append(octal(options.getPermission()));
+			}
+			if (options.getBufferSize() > 0) {
+				params.append("&buffersize=").append(options.getBufferSize());
+			}
+		}
+		ensureValidToken();
+		return upload(createOperationUrl(path, "CREATE", params.toString()), "PUT", is, length, false);
+	}
+
+	/**
+	 * <b>MKDIRS</b>
+	 *
+	 * curl -i -X PUT
+	 * "http://<HOST>:<PORT>/<PATH>?op=MKDIRS[&permission=<OCTAL>]"
+	 *
+	 * @param path
+	 * @return
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String mkdirs(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "MKDIRS"), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>MKDIRS</b>, with the given permission
+	 *
+	 * @param path
+	 * @param permission
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String mkdirs(String path, int permission) throws MalformedURLException, IOException, AuthenticationException {
+		String params = "&permission=" + octal(permission);
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "MKDIRS", params), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>CREATESYMLINK</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/<PATH>?op=CREATESYMLINK
+	 * &destination=<PATH>[&createParent=<true|false>]"
+	 *
+	 * @param path
+	 * @return
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String createSymLink(String srcPath, String destPath) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		String params = MessageFormat.format("&destination={0}", URLUtil.encodePath(destPath));
+		HttpURLConnection conn = openConnection(createOperationUrl(srcPath, "CREATESYMLINK", params), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>RENAME</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/<PATH>?op=RENAME
+	 * &destination=<PATH>[&createParent=<true|false>]"
+	 *
+	 * @param path
+	 * @return
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String rename(String srcPath, String destPath) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		String params = MessageFormat.format("&destination={0}", URLUtil.encodePath(destPath));
+		HttpURLConnection conn = openConnection(createOperationUrl(srcPath, "RENAME", params), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>SETPERMISSION</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETPERMISSION
+	 * [&permission=<OCTAL>]"
+	 *
+	 * @param path
+	 * @return
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String setPermission(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "SETPERMISSION"), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>SETPERMISSION</b>, to the given permission
+	 *
+	 * @param path
+	 * @param permission
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String setPermission(String path, int permission) throws MalformedURLException, IOException, AuthenticationException {
+		String params = "&permission=" + octal(permission);
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "SETPERMISSION", params), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>SETOWNER</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETOWNER
+	 * [&owner=<USER>][&group=<GROUP>]"
+	 *
+	 * @param path
+	 * @return
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String setOwner(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "SETOWNER"), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>SETOWNER</b>, to the given owner and group
+	 *
+	 * @param path
+	 * @param owner
+	 * @param group
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String setOwner(String path, String owner, String group) throws MalformedURLException, IOException, AuthenticationException {
+		if (owner == null && group == null) {
+			throw new IllegalArgumentException("Property <owner> or <group> must not be null");
+		}
+		StringBuilder params = new StringBuilder();
+		if (owner != null) {
+			params.append("&owner=").append(URLEncoder.encode(owner, "UTF-8"));
+		}
+		if (group != null) {
+			params.append("&group=").append(URLEncoder.encode(group, "UTF-8"));
+		}
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "SETOWNER", params.toString()), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>SETREPLICATION</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETREPLICATION
+	 * [&replication=<SHORT>]"
+	 *
+	 * @param path
+	 * @return
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String setReplication(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "SETREPLICATION"), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>SETREPLICATION</b>, to the given number of replicas
+	 *
+	 * @param path
+	 * @param replication
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String setReplication(String path, short replication) throws MalformedURLException, IOException, AuthenticationException {
+		if (replication <= 0) {
+			throw new IllegalArgumentException("Property <replication> must be positive");
+		}
+		String params = "&replication=" + replication;
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "SETREPLICATION", params), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>SETTIMES</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=SETTIMES
+	 * [&modificationtime=<TIME>][&accesstime=<TIME>]"
+	 *
+	 * @param path
+	 * @return
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String setTimes(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "SETTIMES"), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>SETTIMES</b>, to the given times
+	 *
+	 * @param path
+	 * @param modificationTime
+	 * @param accessTime
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String setTimes(String path, long modificationTime, long accessTime) throws MalformedURLException, IOException, AuthenticationException {
+		StringBuilder params = new StringBuilder();
+		if (modificationTime != -1L) {
+			params.append("&modificationtime=").append(modificationTime);
+		}
+		if (accessTime != -1L) {
+			params.append("&accesstime=").append(accessTime);
+		}
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "SETTIMES", params.toString()), "PUT");
+		return execute(conn);
+	}
+
+	/**
+	 * <b>RENEWDELEGATIONTOKEN</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/?op=RENEWDELEGATIONTOKEN&token=<TOKEN>"
+	 *
+	 * @param token
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long renewDelegationToken(String token) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		String params = "&token=" + URLEncoder.encode(token, "UTF-8");
+		HttpURLConnection conn = openConnection(createOperationUrl("", "RENEWDELEGATIONTOKEN", params), "PUT");
+		return execute(conn, ResponseHandler.LONG);
+	}
+
+	/**
+	 * <b>CANCELDELEGATIONTOKEN</b>
+	 *
+	 * curl -i -X PUT "http://<HOST>:<PORT>/webhdfs/v1/?op=CANCELDELEGATIONTOKEN&token=<TOKEN>"
+	 *
+	 * @param token
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public void cancelDelegationToken(String token) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		String params = "&token=" + URLEncoder.encode(token, "UTF-8");
+		HttpURLConnection conn = openConnection(createOperationUrl("", "CANCELDELEGATIONTOKEN", params), "PUT");
+		ResponseUtil.checkResponse(execute(conn));
+	}
+
+	/*
+	 * ========================================================================
+	 * POST
+	 * ========================================================================
+	 */
+	/**
+	 * curl -i -X POST
+	 * "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=APPEND[&buffersize=<INT>]"
+	 *
+	 * @param path
+	 * @param is
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String append(String path, InputStream is) throws MalformedURLException, IOException, AuthenticationException {
+		return append(path, is, -1L);
+	}
+
+	/**
+	 * <b>APPEND</b>, of known length
+	 *
+	 * @param path
+	 * @param is
+	 * @param length
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String append(String path, InputStream is, long length) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		return upload(createOperationUrl(path, "APPEND"), "POST", is, length, true);
+	}
+
+	/**
+	 * <b>CONCAT</b>
+	 *
+	 * curl -i -X POST "http://<HOST>:<PORT>/webhdfs/v1/<PATH>?op=CONCAT
+	 * &sources=<PATHS>"
+	 *
+	 * @param path
+	 * @param sources
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String concat(String path, String... sources) throws MalformedURLException, IOException, AuthenticationException {
+		StringBuilder params = new StringBuilder("&sources=");
+		for (int i = 0; i < sources.length; i++) {
+			if (i > 0) {
+				params.append(',');
+			}
+			// sources are absolute, unlike the paths relative to /webhdfs/v1/
+			params.append(URLUtil.encodePath(sources[i].startsWith("/") ? sources[i] : "/" + sources[i]));
+		}
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "CONCAT", params.toString()), "POST");
+		return execute(conn);
+	}
+
+	/*
+	 * ========================================================================
+	 * DELETE
+	 * ========================================================================
+	 */
+	/**
+	 * <b>DELETE</b>
+	 *
+	 * curl -i -X DELETE "http://<host>:<port>/webhdfs/v1/<path>?op=DELETE
+	 * [&recursive=<true|false>]"
+	 *
+	 * @param path
+	 * @return
+	 * @throws AuthenticationException
+	 * @throws IOException
+	 * @throws MalformedURLException
+	 */
+	public String delete(String path) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "DELETE"), "DELETE");
+		conn.setInstanceFollowRedirects(false);
+		return execute(conn);
+	}
+
+	/**
+	 * <b>DELETE</b>, of a whole directory if {@code recursive}
+	 *
+	 * @param path
+	 * @param recursive
+	 * @return
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public String delete(String path, boolean recursive) throws MalformedURLException, IOException, AuthenticationException {
+		ensureValidToken();
+		HttpURLConnection conn = openConnection(createOperationUrl(path, "DELETE", "&recursive=" + recursive), "DELETE");
+		conn.setInstanceFollowRedirects(false);
+		return execute(conn);
+	}
+
+	// Begin Getter & Setter
+	public String getHttpfsUrl() {
+		return httpfsUrl;
+	}
+
+	public void setHttpfsUrl(String httpfsUrl) {
+		this.httpfsUrl = httpfsUrl;
+	}
+
+	public String getPrincipal() {
+		return principal;
+	}
+
+	public void setPrincipal(String principal) {
+		this.principal = principal;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public void setPassword(String password) {
+		this.password = password;
+	}
+
+	public HttpTransport getTransport() {
+		return transport;
+	}
+
+	public void setTransport(HttpTransport transport) {
+		this.transport = transport;
+	}
+
+	public TokenManager getTokenManager() {
+		return tokenManager;
+	}
+
+	public void setTokenManager(TokenManager tokenManager) {
+		this.tokenManager = tokenManager;
+	}
+
+	// End Getter & Setter
+
+	/*
+	 * How the server takes the data of CREATE and APPEND, learnt from the
+	 * response to the first upload.
+	 */
+	private enum UploadMode {
+		/* HttpFS, taking the data along with the operation given data=true */
+		DIRECT,
+		/* WebHDFS answering noredirect=true with the datanode location as JSON */
+		NOREDIRECT,
+		/* WebHDFS redirecting to the datanode with a 307 */
+		REDIRECT
+	}
+
+	/*
+	 * Uploads in a single request when the server is known to be HttpFS.
+	 * Otherwise asks the server where to send the data, then streams it to
+	 * that location. Which of those applies is decided by the answer to the
+	 * first upload: HttpFS redirects to itself with data=true, while WebHDFS
+	 * points to a datanode, as JSON if it understands noredirect=true. A
+	 * negative length sends the data with chunked transfer encoding.
+	 */
+	private String upload(URL url, String method, InputStream is, long length, boolean input) throws IOException, AuthenticationException {
+		UploadMode mode = uploadMode;
+		if (mode == UploadMode.DIRECT) {
+			return send(new URL(url.toExternalForm() + "&data=true"), method, is, length, input);
+		}
+
+		String resp = null;
+		String redirectUrl = null;
+
+		if (mode != UploadMode.REDIRECT) {
+			url = new URL(url.toExternalForm() + "&noredirect=true");
+		}
+		HttpURLConnection conn = openConnection(url, method);
+		conn.setInstanceFollowRedirects(false);
+
+		try {
+			conn.connect();
+			int code = conn.getResponseCode();
+			if (code == 307) {
+				redirectUrl = conn.getHeaderField("Location");
+				resp = result(conn, true);
+				mode = UploadMode.REDIRECT;
+			} else if (code == 200 && mode != UploadMode.REDIRECT) {
+				redirectUrl = readLocation(conn);
+				mode = UploadMode.NOREDIRECT;
+			} else {
+				resp = result(conn, true);
+			}
+		}
+		catch(IOException e) {
+			transport.abort(conn);
+			throw e;
+		}
+		transport.release(conn);
+
+		if (redirectUrl == null) {
+			return resp;
+		}
+
+		if (uploadMode == null) {
+			uploadMode = redirectUrl.contains("data=true") ? UploadMode.DIRECT : mode;
+			logger.info("Uploading to " + httpfsUrl + " in " + uploadMode + " mode");
+		}
+		logger.info("Redirecting to => " + redirectUrl);
+		return send(new URL(redirectUrl), method, is, length, input);
+	}
+
+	/*
+	 * Streams the data to the location which takes it.
+	 *
+	 * In streaming mode HttpURLConnection cannot resend the body, so unlike
+	 * other requests it does not retry on a fresh socket when the kept-alive
+	 * one it picked was dropped by the server, e.g. after an idle timeout.
+	 * The request therefore asks for a 100 Continue before any data is read:
+	 * a dropped socket fails while waiting for it, and the request is sent
+	 * again on another socket. Each attempt discards the socket it used, so
+	 * after as many attempts as the JDK keeps idle sockets the last one is
+	 * a fresh socket.
+	 */
+	private String send(URL url, String method, InputStream is, long length, boolean input) throws IOException, AuthenticationException {
+		int attempt = 0;
+		while (true) {
+			HttpURLConnection conn = openConnection(url, method);
+			conn.setDoOutput(true);
+			conn.setDoInput(true);
+			conn.setUseCaches(false);
+			conn.setRequestProperty("Content-Type", "application/octet-stream");
+			conn.setRequestProperty("Expect", "100-continue");
+			setStreamingMode(conn, length);
+
+			OutputStream os;
+			try {
+				conn.connect();
+				os = conn.getOutputStream();
+			}
+			catch(ProtocolException e) {
+				// answered without a 100 Continue, e.g. refused
+				try {
+					checkResponse(conn);
+				}
+				finally {
+					transport.abort(conn);
+				}
+				throw e;
+			}
+			catch(SocketTimeoutException e) {
+				transport.abort(conn);
+				throw e;
+			}
+			catch(IOException e) {
+				transport.abort(conn);
+				if (++attempt > MAX_STALE_SOCKETS) {
+					throw e;
+				}
+				logger.debug("Resending " + method + " " + url.getPath() + " on another socket", e);
+				continue;
+			}
+
+			String resp;
+			try {
+				Streams.copy(is, os);
+				resp = result(conn, input);
+			}
+			catch(IOException e) {
+				transport.abort(conn);
+				throw e;
+			}
+			transport.release(conn);
+			return resp;
+		}
+	}
+
+	/*
+	 * Reads the datanode location out of the answer to noredirect=true.
+	 */
+	private static String readLocation(HttpURLConnection conn) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
+		try {
+			String location = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if ("Location".equals(reader.nextName())) {
+					location = reader.nextString();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			if (location == null) {
+				throw new IOException("Malformed response, missing member <Location>");
+			}
+			return location;
+		}
+		catch(IllegalStateException e) {
+			throw new IOException("Malformed response, expected the datanode location", e);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/*
+	 * Streams the request body instead of letting HttpURLConnection buffer it
+	 * in memory to compute its length.
+	 */
+	private static void setStreamingMode(HttpURLConnection conn, long length) {
+		if (length >= 0 && length <= Integer.MAX_VALUE) {
+			conn.setFixedLengthStreamingMode((int) length);
+		} else {
+			// unknown, or too long for the int overload available on Java 6
+			conn.setChunkedStreamingMode(Streams.SIXTY_FOUR_K);
+		}
+	}
+
+	/**
+	 * Opens an authenticated connection through the transport
+	 *
+	 * @param url
+	 * 			the target URL
+	 * @param method
+	 * 			the HTTP method
+	 * @return the unconnected {@link HttpURLConnection}
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	protected HttpURLConnection openConnection(URL url, String method) throws IOException, AuthenticationException {
+		Token current = token;
+		if (!current.isSet() && authenticator != null) {
+			// never fill in the token shared through the manager
+			current = new AuthenticatedURL.Token();
+			authenticator.authenticate(url, current);
+			token = current;
+		}
+
+		HttpURLConnection conn = transport.open(url);
+		InFlightExchange.opened(conn, transport);
+		AuthenticatedURL.injectToken(conn, current);
+		conn.setRequestMethod(method);
+		return conn;
+	}
+
+	protected String execute(HttpURLConnection conn) throws IOException {
+		String resp;
+		try {
+			conn.connect();
+			resp = result(conn, true);
+		}
+		catch(IOException e) {
+			transport.abort(conn);
+			throw e;
+		}
+		transport.release(conn);
+		return resp;
+	}
+
+	/**
+	 * Sends the request and parses the response body straight off the socket
+	 *
+	 * @param conn
+	 * 			the unconnected {@link HttpURLConnection}
+	 * @param handler
+	 * 			reads the expected member of the response
+	 * @return the parsed value
+	 * @throws IOException
+	 * 			a {@link WebHDFSException} if the server answered with an error
+	 */
+	protected <T> T execute(HttpURLConnection conn, ResponseHandler<T> handler) throws IOException {
+		T value;
+		try {
+			conn.connect();
+			checkResponse(conn);
+
+			JsonReader reader = new JsonReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
+			try {
+				value = handler.handle(reader);
+			}
+			finally {
+				reader.close();
+			}
+		}
+		catch(WebHDFSException e) {
+			transport.release(conn);
+			throw e;
+		}
+		catch(IOException e) {
+			transport.abort(conn);
+			throw e;
+		}
+		catch(RuntimeException e) {
+			// e.g. an unexpected token or an unknown enum constant
+			transport.abort(conn);
+			throw new IOException("Malformed response", e);
+		}
+		transport.release(conn);
+		return value;
+	}
+
+	/**
+	 * Throws a {@link WebHDFSException} unless the response status is 2xx,
+	 * consuming the error body
+	 *
+	 * @param conn
+	 * 			the connected {@link HttpURLConnection}
+	 * @throws IOException
+	 */
+	protected static void checkResponse(HttpURLConnection conn) throws IOException {
+		int code = conn.getResponseCode();
+		if (code / 100 == 2) {
+			return;
+		}
+
+		String message = conn.getResponseMessage();
+		String exception = null;
+		String javaClassName = null;
+
+		InputStream es = conn.getErrorStream();
+		if (es != null) {
+			JsonReader reader = new JsonReader(new InputStreamReader(es, "UTF-8"));
+			try {
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if ("RemoteException".equals(reader.nextName())) {
+						reader.beginObject();
+						while (reader.hasNext()) {
+							String name = reader.nextName();
+							if ("message".equals(name)) {
+								message = reader.nextString();
+							} else if ("exception".equals(name)) {
+								exception = reader.nextString();
+							} else if ("javaClassName".equals(name)) {
+								javaClassName = reader.nextString();
+							} else {
+								reader.skipValue();
+							}
+						}
+						reader.endObject();
+					} else {
+						reader.skipValue();
+					}
+				}
+			}
+			catch(IOException e) {
+				// not a RemoteException, keep the status line
+			}
+			catch(IllegalStateException e) {
+				// not a RemoteException, keep the status line
+			}
+			finally {
+				reader.close();
+			}
+		}
+
+		throw new WebHDFSException(code, message, exception, javaClassName);
+	}
+
+	/*
+	 * Servers predating an operation reject its name as an invalid value of
+	 * the op parameter, e.g. "No enum constant ...Op.LISTSTATUS_BATCH", while
+	 * other bad requests, such as an invalid path, say nothing of the op.
+	 */
+	private static boolean isUnsupportedOperation(WebHDFSException e, String op) {
+		if (e.getStatusCode() == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+			return true;
+		}
+		if (e.getStatusCode() != HttpURLConnection.HTTP_BAD_REQUEST
+				&& !"IllegalArgumentException".equals(e.getException())
+				&& !"UnsupportedOperationException".equals(e.getException())) {
+			return false;
+		}
+		String message = e.getMessage();
+		return message.contains(op) || message.contains("\"op\"");
+	}
+
+	protected URL createOperationUrl(String path, String op) throws MalformedURLException {
+		return createOperationUrl(path, op, "");
+	}
+
+	protected URL createOperationUrl(String path, String op, String params) throws MalformedURLException {
+		String spec = MessageFormat.format("/webhdfs/v1/{0}?op={1}{2}{3}", URLUtil.encodePath(path), op, params, authParams());
+		return createQualifiedUrl(spec);
+	}
+
+	protected URL createQualifiedUrl(String spec) throws MalformedURLException {
+		return createQualifiedUrl(httpfsUrl, spec);
+	}
+
+	/*
+	 * Formats a permission such as 0644 the way WebHDFS expects it.
+	 */
+	private static String octal(int permission) {
+		if (permission < 0 || permission > 01777) {
+			throw new IllegalArgumentException("Property <permission> must be between 0 and 01777");
+		}
+		return Integer.toOctalString(permission);
+	}
+
+	protected static URL createQualifiedUrl(String baseUrl, String spec) throws MalformedURLException {
+		return new URL(new URL(baseUrl), spec);
+	}
+
+	/*
+	 * Report the result in JSON way
+	 *
+	 * @param conn
+	 * @param input
+	 * @return
+	 * @throws IOException
+	 */
+	protected static String result(HttpURLConnection conn, boolean input) throws IOException {
+		String data = "";
+
+		if (input) {
+			try {
+				data = Streams.toString(conn.getInputStream());
+			}
+			catch(IOException e) {
+				InputStream es = conn.getErrorStream();
+				if (es != null) {
+					data = Streams.toString(es);
+				} else if (conn.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST) {
+					throw e;
+				}
+				// an error without a body is reported like any other
+			}
+		}
+
+		Map<String, Object> result = new HashMap<String, Object>();
+		result.put(ResponseUtil.CODE, conn.getResponseCode());
+		result.put(ResponseUtil.MESSAGE, conn.getResponseMessage());
+		result.put(ResponseUtil.TYPE, conn.getContentType());
+		result.put(ResponseUtil.CONTENT, data);
+		//
+		// Convert a Map into JSON string.
+		//
+		String json = gson.toJson(result);
+		if (logger.isDebugEnabled()) {
+			logger.debug("json = " + json);
+		}
+
+		return json;
+	}
+}
@@ -0,0 +1,156 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+
+/**
+ * The fields of a <code>hadoop.auth</code> cookie, parsed once when the
+ * token is issued.
+ * <p>
+ * The cookie value is a list of <code>name=value</code> pairs joined by
+ * <code>&amp;</code>: the user name <code>u</code>, the principal
+ * <code>p</code>, the authentication type <code>t</code>, the expiry time
+ * <code>e</code> in milliseconds and the signature <code>s</code>. They are
+ * looked up by name, in whatever order they come.
+ */
+public final class AuthToken {
+
+	/** The token of a failed or pending authentication */
+	public static final AuthToken UNSET = new AuthToken(new Token());
+
+	private final Token token;
+	private final String user;
+	private final String principal;
+	private final String type;
+	private final long expires;
+	private final String signature;
+
+	/**
+	 * Creates a new AuthToken instance, parsing the fields of {@code token}.
+	 *
+	 * @param token
+	 * 			the token issued by the server, possibly unset
+	 */
+	public AuthToken(Token token) {
+		this.token = token;
+
+		String user = null;
+		String principal = null;
+		String type = null;
+		long expires = 0L;
+		String signature = null;
+
+		if (token.isSet()) {
+			String value = token.toString();
+			if (value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+				value = value.substring(1, value.length() - 1);
+			}
+
+			int start = 0;
+			while (start < value.length()) {
+				int end = value.indexOf('&', start);
+				if (end < 0) {
+					end = value.length();
+				}
+				int eq = value.indexOf('=', start);
+				if (eq > start && eq < end) {
+					String name = value.substring(start, eq);
+					String field = value.substring(eq + 1, end);
+					if ("u".equals(name)) {
+						user = field;
+					} else if ("p".equals(name)) {
+						principal = field;
+					} else if ("t".equals(name)) {
+						type = field;
+					} else if ("e".equals(name)) {
+						expires = parseExpiry(field);
+					} else if ("s".equals(name)) {
+						signature = field;
+					}
+				}
+				start = end + 1;
+			}
+		}
+
+		this.user = user;
+		this.principal = principal;
+		this.type = type;
+		this.expires = expires;
+		this.signature = signature;
+	}
+
+	/**
+	 * @return whether the token was issued at all
+	 */
+	public boolean isSet() {
+		return token.isSet();
+	}
+
+	/**
+	 * @param now
+	 * 			the current time, in milliseconds
+	 * @param margin
+	 * 			how long, in milliseconds, before its expiry the token is no
+	 * 			longer considered valid
+	 * @return whether the token is set and, if it carries an expiry time,
+	 * 			still valid {@code margin} from now
+	 */
+	public boolean isValid(long now, long margin) {
+		return token.isSet() && (expires <= 0 || now + margin < expires);
+	}
+
+	/**
+	 * @return the token as sent to the server
+	 */
+	public Token getToken() {
+		return token;
+	}
+
+	/**
+	 * @return the user name, <code>u</code>
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * @return the principal, <code>p</code>
+	 */
+	public String getPrincipal() {
+		return principal;
+	}
+
+	/**
+	 * @return the authentication type, <code>t</code>, e.g. <code>simple</code>
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return the expiry time in milliseconds, <code>e</code>, or 0 if unknown
+	 */
+	public long getExpires() {
+		return expires;
+	}
+
+	/**
+	 * @return the signature, <code>s</code>
+	 */
+	public String getSignature() {
+		return signature;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("AuthToken[u=%s, p=%s, t=%s, e=%d]", user, principal, type, expires);
+	}
+
+	private static long parseExpiry(String field) {
+		try {
+			return Long.parseLong(field);
+		}
+		catch(NumberFormatException e) {
+			return 0L;
+		}
+	}
+}
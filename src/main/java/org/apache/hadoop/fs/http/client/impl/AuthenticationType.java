@@ -1,20 +1,31 @@
 package org.apache.hadoop.fs.http.client.impl;
 
 import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
 
 public enum AuthenticationType {
 	KERBEROS {
 		@Override
-		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password) {
-			return new KerberosWebHDFSConnection(httpfsUrl, username, password);
+		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password, HttpTransport transport) {
+			return new KerberosWebHDFSConnection(httpfsUrl, username, password, transport);
 		}
 	},
 	PSEUDO {
 		@Override
-		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password) {
-			return new PseudoWebHDFSConnection(httpfsUrl, username, password);
+		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password, HttpTransport transport) {
+			return new PseudoWebHDFSConnection(httpfsUrl, username, password, transport);
+		}
+	},
+	DELEGATION {
+		@Override
+		public WebHDFSConnection createConnection(String httpfsUrl, String username, String password, HttpTransport transport) {
+			return new DelegationWebHDFSConnection(httpfsUrl, username, password, transport);
 		}
 	};
 	
-	public abstract WebHDFSConnection createConnection(String httpfsUrl, String username, String password);
-}
\ No newline at end of file
+	public WebHDFSConnection createConnection(String httpfsUrl, String username, String password) {
+		return createConnection(httpfsUrl, username, password, null);
+	}
+	
+	public abstract WebHDFSConnection createConnection(String httpfsUrl, String username, String password, HttpTransport transport);
+}
@@ -0,0 +1,91 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the extra requests, retries or hedges, to a share of the requests.
+ * <p>
+ * Each request adds {@code ratio} of an extra request to the budget, up to
+ * {@code capacity} of them, and each extra request takes one. The budget
+ * starts full so that a client sending few requests still gets some.
+ */
+final class Budget {
+
+	/* the budget is kept in thousandths of a request */
+	private static final long UNIT = 1000L;
+
+	private final AtomicLong balance;
+	private final AtomicLong granted = new AtomicLong();
+	private final AtomicLong refused = new AtomicLong();
+
+	private volatile double ratio;
+	private volatile int capacity;
+
+	Budget(double ratio, int capacity) {
+		this.ratio = ratio;
+		this.capacity = capacity;
+		this.balance = new AtomicLong(capacity * UNIT);
+	}
+
+	/*
+	 * Adds the share of a new request.
+	 */
+	void deposit() {
+		long amount = (long) (ratio * UNIT);
+		long max = capacity * UNIT;
+		while (true) {
+			long current = balance.get();
+			if (current >= max) {
+				return;
+			}
+			if (balance.compareAndSet(current, Math.min(current + amount, max))) {
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Takes an extra request out of the budget, returning false if it is spent.
+	 */
+	boolean withdraw() {
+		while (true) {
+			long current = balance.get();
+			if (current < UNIT) {
+				refused.incrementAndGet();
+				return false;
+			}
+			if (balance.compareAndSet(current, current - UNIT)) {
+				granted.incrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	long getGrantedCount() {
+		return granted.get();
+	}
+
+	long getRefusedCount() {
+		return refused.get();
+	}
+
+	double getRatio() {
+		return ratio;
+	}
+
+	void setRatio(double ratio) {
+		this.ratio = ratio;
+	}
+
+	int getCapacity() {
+		return capacity;
+	}
+
+	/*
+	 * Changes the capacity, refilling the budget.
+	 */
+	void setCapacity(int capacity) {
+		this.capacity = capacity;
+		balance.set(capacity * UNIT);
+	}
+}
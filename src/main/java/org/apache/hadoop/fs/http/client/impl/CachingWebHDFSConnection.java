@@ -0,0 +1,366 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * Answers <code>GETFILESTATUS</code> and <code>LISTSTATUS</code> from a
+ * {@link MetadataCache}, and drops its entries when changing a path.
+ * <p>
+ * Both the JSON responses and the parsed {@link FileStatus} and
+ * {@link DirectoryListing} are cached, including the 404 answers. Other
+ * errors are not. <code>CREATE</code>, <code>APPEND</code>,
+ * <code>RENAME</code>, <code>DELETE</code>, <code>MKDIRS</code>,
+ * <code>CONCAT</code>, <code>CREATESYMLINK</code> and the <code>SET*</code>
+ * operations drop the entries of the paths they change once they return,
+ * whether or not they succeeded, since a failed request may have been run.
+ * Every other call goes straight to the connection.
+ */
+public class CachingWebHDFSConnection extends ForwardingWebHDFSConnection {
+
+	static final String STATUS_JSON = "GETFILESTATUS";
+	static final String STATUS = "GETFILESTATUS:FileStatus";
+	static final String LISTING_JSON = "LISTSTATUS";
+	static final String LISTING = "LISTSTATUS:DirectoryListing";
+
+	private final WebHDFSConnection connection;
+	private final MetadataCache cache;
+	private final String scope;
+
+	/**
+	 * Creates a new CachingWebHDFSConnection instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param cache
+	 * 			the cache, possibly shared with the connections of other users
+	 * @param scope
+	 * 			whose entries the connection reads, usually the user name, so
+	 * 			that users never see what they may not read themselves
+	 */
+	public CachingWebHDFSConnection(WebHDFSConnection connection, MetadataCache cache, String scope) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(cache, "Property <cache> must not be null");
+		this.connection = connection;
+		this.cache = cache;
+		this.scope = scope;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	public MetadataCache getCache() {
+		return cache;
+	}
+
+	@Override
+	protected <T> T invoke(Operation<T> operation) throws IOException, AuthenticationException {
+		return operation.call(connection);
+	}
+
+	@Override
+	public String getFileStatus(String path) throws MalformedURLException, IOException, AuthenticationException {
+		String json = (String) cache.get(scope, STATUS_JSON, path, System.currentTimeMillis());
+		if (json == null) {
+			long generation = cache.getGeneration();
+			json = connection.getFileStatus(path);
+			cacheJson(STATUS_JSON, path, json, generation);
+		}
+		return json;
+	}
+
+	@Override
+	public String listStatus(String path) throws MalformedURLException, IOException, AuthenticationException {
+		String json = (String) cache.get(scope, LISTING_JSON, path, System.currentTimeMillis());
+		if (json == null) {
+			long generation = cache.getGeneration();
+			json = connection.listStatus(path);
+			cacheJson(LISTING_JSON, path, json, generation);
+		}
+		return json;
+	}
+
+	@Override
+	public FileStatus getStatus(String path) throws MalformedURLException, IOException, AuthenticationException {
+		Object cached = cache.get(scope, STATUS, path, System.currentTimeMillis());
+		if (cached == null) {
+			long generation = cache.getGeneration();
+			try {
+				cached = connection.getStatus(path);
+			}
+			catch(WebHDFSException e) {
+				cacheNotFound(STATUS, path, e, generation);
+				throw e;
+			}
+			cache.put(scope, STATUS, path, cached, false, generation, System.currentTimeMillis());
+		}
+		return (FileStatus) rethrow(cached);
+	}
+
+	@Override
+	public DirectoryListing getListing(String path) throws MalformedURLException, IOException, AuthenticationException {
+		Object cached = cache.get(scope, LISTING, path, System.currentTimeMillis());
+		if (cached == null) {
+			long generation = cache.getGeneration();
+			try {
+				cached = connection.getListing(path);
+			}
+			catch(WebHDFSException e) {
+				cacheNotFound(LISTING, path, e, generation);
+				throw e;
+			}
+			cache.put(scope, LISTING, path, cached, false, generation, System.currentTimeMillis());
+		}
+		return (DirectoryListing) rethrow(cached);
+	}
+
+	@Override
+	public String create(String path, InputStream is) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.create(path, is);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String create(String path, InputStream is, long length) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.create(path, is, length);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String create(String path, InputStream is, long length, CreateOptions options) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.create(path, is, length, options);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String mkdirs(String path) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.mkdirs(path);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String mkdirs(String path, int permission) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.mkdirs(path, permission);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String createSymLink(String srcPath, String destPath) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.createSymLink(srcPath, destPath);
+		}
+		finally {
+			cache.invalidate(srcPath);
+			cache.invalidate(destPath);
+		}
+	}
+
+	@Override
+	public String rename(String srcPath, String destPath) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.rename(srcPath, destPath);
+		}
+		finally {
+			cache.invalidate(srcPath);
+			cache.invalidate(destPath);
+		}
+	}
+
+	@Override
+	public String setPermission(String path) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.setPermission(path);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String setPermission(String path, int permission) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.setPermission(path, permission);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String setOwner(String path) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.setOwner(path);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String setOwner(String path, String owner, String group) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.setOwner(path, owner, group);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String setReplication(String path) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.setReplication(path);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String setReplication(String path, short replication) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.setReplication(path, replication);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String setTimes(String path) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.setTimes(path);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String setTimes(String path, long modificationTime, long accessTime) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.setTimes(path, modificationTime, accessTime);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String append(String path, InputStream is) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.append(path, is);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String append(String path, InputStream is, long length) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.append(path, is, length);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String concat(String path, String... sources) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.concat(path, sources);
+		}
+		finally {
+			cache.invalidate(path);
+			for (String source : sources) {
+				cache.invalidate(source);
+			}
+		}
+	}
+
+	@Override
+	public String delete(String path) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.delete(path);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	@Override
+	public String delete(String path, boolean recursive) throws MalformedURLException, IOException, AuthenticationException {
+		try {
+			return super.delete(path, recursive);
+		}
+		finally {
+			cache.invalidate(path);
+		}
+	}
+
+	/*
+	 * Keeps successful responses, and 404 ones for a shorter time.
+	 */
+	private void cacheJson(String kind, String path, String json, long generation) {
+		int code = ResponseUtil.getCode(json);
+		if (code / 100 == 2 || code == HttpURLConnection.HTTP_NOT_FOUND) {
+			cache.put(scope, kind, path, json, code == HttpURLConnection.HTTP_NOT_FOUND, generation,
+					System.currentTimeMillis());
+		}
+	}
+
+	private void cacheNotFound(String kind, String path, WebHDFSException e, long generation) {
+		if (e.getStatusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+			cache.put(scope, kind, path, e, true, generation, System.currentTimeMillis());
+		}
+	}
+
+	/*
+	 * Throws a copy of a cached 404, so that its stack trace is the caller's.
+	 */
+	private static Object rethrow(Object cached) throws WebHDFSException {
+		if (cached instanceof WebHDFSException) {
+			WebHDFSException e = (WebHDFSException) cached;
+			String message = e.getMessage();
+			String prefix = e.getStatusCode() + " ";
+			if (message != null && message.startsWith(prefix)) {
+				message = message.substring(prefix.length());
+			}
+			throw new WebHDFSException(e.getStatusCode(), message, e.getException(), e.getJavaClassName());
+		}
+		return cached;
+	}
+}
@@ -0,0 +1,161 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The circuit breaker of one endpoint, shared by the connections of every
+ * user sending requests to it.
+ * <p>
+ * A closed breaker lets every request through. Once
+ * {@link CircuitBreakerPolicy#getFailureThreshold()} requests in a row
+ * failed to reach the endpoint or were lost, it opens and requests fail at
+ * once for {@link CircuitBreakerPolicy#getOpenTimeout()}. It is then half
+ * open: one request at a time goes through as a probe, and
+ * {@link CircuitBreakerPolicy#getProbeThreshold()} probes answered in a row
+ * close it again. A failed probe opens it for twice as long as the last
+ * time, up to {@link CircuitBreakerPolicy#getMaxOpenTimeout()}.
+ */
+public class CircuitBreaker {
+
+	/** The states of a circuit breaker */
+	public enum State {
+
+		/** Requests go through */
+		CLOSED,
+
+		/** Requests fail at once */
+		OPEN,
+
+		/** One request at a time goes through, probing the endpoint */
+		HALF_OPEN
+	}
+
+	private final String url;
+	private final CircuitBreakerPolicy policy;
+	private final AtomicLong trips = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/* guarded by this */
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private int probes;
+	private int answeredProbes;
+	private long openTimeout;
+	private long openUntil;
+
+	CircuitBreaker(String url, CircuitBreakerPolicy policy) {
+		this.url = url;
+		this.policy = policy;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the state of the breaker, not moving it from open to half
+	 * 			open if its time is up, which only a request does
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the number of times the breaker opened
+	 */
+	public long getTripCount() {
+		return trips.get();
+	}
+
+	/**
+	 * @return the number of requests failed at once
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Lets a request through, unless the breaker is open, or half open with
+	 * a probe running already
+	 *
+	 * @param now
+	 * 			the current time, in milliseconds
+	 * @return the state the request went through in, to hand back to
+	 * 			{@link #release(State, boolean, long)}, or null if it must fail
+	 */
+	synchronized State acquire(long now) {
+		if (state == State.OPEN && now >= openUntil) {
+			state = State.HALF_OPEN;
+			answeredProbes = 0;
+		}
+		switch (state) {
+		case CLOSED:
+			return State.CLOSED;
+		case HALF_OPEN:
+			if (probes == 0) {
+				probes++;
+				return State.HALF_OPEN;
+			}
+			break;
+		default:
+			break;
+		}
+		rejected.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Records the outcome of a request let through
+	 *
+	 * @param admitted
+	 * 			the state returned by {@link #acquire(long)}
+	 * @param failed
+	 * 			whether the request failed to reach the endpoint, or was lost
+	 * @param now
+	 * 			the current time, in milliseconds
+	 */
+	synchronized void release(State admitted, boolean failed, long now) {
+		if (admitted == State.HALF_OPEN) {
+			probes--;
+			if (state != State.HALF_OPEN) {
+				return;
+			}
+			if (failed) {
+				open(Math.min(openTimeout * 2, policy.getMaxOpenTimeout()), now);
+			} else if (++answeredProbes >= policy.getProbeThreshold()) {
+				state = State.CLOSED;
+				consecutiveFailures = 0;
+			}
+		} else if (state == State.CLOSED) {
+			// requests sent before the breaker opened tell nothing more
+			if (!failed) {
+				consecutiveFailures = 0;
+			} else if (++consecutiveFailures >= policy.getFailureThreshold()) {
+				open(policy.getOpenTimeout(), now);
+			}
+		}
+	}
+
+	/*
+	 * Callers hold the lock.
+	 */
+	private void open(long timeout, long now) {
+		state = State.OPEN;
+		openTimeout = Math.max(timeout, 1L);
+		openUntil = now + openTimeout;
+		trips.incrementAndGet();
+	}
+
+	/**
+	 * Closes the breaker, e.g. once the endpoint is known to be back
+	 */
+	public synchronized void reset() {
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CircuitBreaker[" + url + ", " + state + "]";
+	}
+}
@@ -0,0 +1,105 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * When the requests to an endpoint fail at once rather than tie up the
+ * caller's thread, and the {@link CircuitBreaker}s of the endpoints.
+ * <p>
+ * Every connection sharing the policy shares the breaker of each endpoint,
+ * so that a gateway which stopped answering one user is left alone by
+ * every user.
+ */
+public class CircuitBreakerPolicy {
+
+	/** The default number of failures in a row opening a breaker */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+	/** The default time, in milliseconds, a breaker stays open at first */
+	public static final long DEFAULT_OPEN_TIMEOUT = 5 * 1000L;
+
+	/** The default time, in milliseconds, a breaker stays open at most */
+	public static final long DEFAULT_MAX_OPEN_TIMEOUT = 60 * 1000L;
+
+	/** The default number of probes answered in a row closing a breaker */
+	public static final int DEFAULT_PROBE_THRESHOLD = 3;
+
+	private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+	private volatile long openTimeout = DEFAULT_OPEN_TIMEOUT;
+	private volatile long maxOpenTimeout = DEFAULT_MAX_OPEN_TIMEOUT;
+	private volatile int probeThreshold = DEFAULT_PROBE_THRESHOLD;
+
+	/**
+	 * @param url
+	 * 			the URL of the endpoint, e.g. <code>http://host:14000</code>
+	 * @return the breaker of the endpoint, created closed the first time
+	 */
+	public CircuitBreaker getBreaker(String url) {
+		CircuitBreaker breaker = breakers.get(url);
+		if (breaker == null) {
+			CircuitBreaker created = new CircuitBreaker(url, this);
+			breaker = breakers.putIfAbsent(url, created);
+			if (breaker == null) {
+				breaker = created;
+			}
+		}
+		return breaker;
+	}
+
+	/**
+	 * @return the breakers of the endpoints requests were sent to so far
+	 */
+	public Collection<CircuitBreaker> getBreakers() {
+		return Collections.unmodifiableCollection(new ArrayList<CircuitBreaker>(breakers.values()));
+	}
+
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	public void setFailureThreshold(int failureThreshold) {
+		if (failureThreshold < 1) {
+			throw new IllegalArgumentException("Property <failureThreshold> must be positive");
+		}
+		this.failureThreshold = failureThreshold;
+	}
+
+	public long getOpenTimeout() {
+		return openTimeout;
+	}
+
+	public void setOpenTimeout(long openTimeout) {
+		if (openTimeout < 0) {
+			throw new IllegalArgumentException("Property <openTimeout> must not be negative");
+		}
+		this.openTimeout = openTimeout;
+	}
+
+	public long getMaxOpenTimeout() {
+		return maxOpenTimeout;
+	}
+
+	public void setMaxOpenTimeout(long maxOpenTimeout) {
+		if (maxOpenTimeout < 0) {
+			throw new IllegalArgumentException("Property <maxOpenTimeout> must not be negative");
+		}
+		this.maxOpenTimeout = maxOpenTimeout;
+	}
+
+	public int getProbeThreshold() {
+		return probeThreshold;
+	}
+
+	public void setProbeThreshold(int probeThreshold) {
+		if (probeThreshold < 1) {
+			throw new IllegalArgumentException("Property <probeThreshold> must be positive");
+		}
+		this.probeThreshold = probeThreshold;
+	}
+}
@@ -0,0 +1,75 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.CircuitOpenException;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * Fails the requests of a {@link WebHDFSConnection} to a single endpoint
+ * with a {@link CircuitOpenException} while its {@link CircuitBreaker} is
+ * open, rather than have them wait for a server which stopped answering.
+ * <p>
+ * Requests which could not reach the endpoint, or which it turned away
+ * unrun with a 503, or which were lost, count as failures. Any other answer,
+ * including the operation's own errors, counts as the endpoint being up.
+ * Wrapping each endpoint of a {@link FailoverWebHDFSConnection}, requests
+ * go on to the next endpoint while the breaker is open; retries do not
+ * wait for it to close.
+ */
+public class CircuitBreakingWebHDFSConnection extends ForwardingWebHDFSConnection {
+
+	private final WebHDFSConnection connection;
+	private final CircuitBreaker breaker;
+
+	/**
+	 * Creates a new CircuitBreakingWebHDFSConnection instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param breaker
+	 * 			the breaker of the endpoint it sends them to
+	 */
+	public CircuitBreakingWebHDFSConnection(WebHDFSConnection connection, CircuitBreaker breaker) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(breaker, "Property <breaker> must not be null");
+		this.connection = connection;
+		this.breaker = breaker;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	public CircuitBreaker getBreaker() {
+		return breaker;
+	}
+
+	@Override
+	protected <T> T invoke(Operation<T> operation) throws IOException, AuthenticationException {
+		CircuitBreaker.State admitted = breaker.acquire(System.currentTimeMillis());
+		if (admitted == null) {
+			throw new CircuitOpenException("Circuit open for " + breaker.getUrl() + ", not sending " + operation);
+		}
+
+		Failure failure = null;
+		try {
+			T result = operation.call(connection);
+			failure = Failure.ofResult(result);
+			return result;
+		}
+		catch(IOException e) {
+			failure = Failure.of(e);
+			throw e;
+		}
+		catch(AuthenticationException e) {
+			failure = Failure.of(e);
+			throw e;
+		}
+		finally {
+			breaker.release(admitted, failure == Failure.UNSENT || failure == Failure.LOST, System.currentTimeMillis());
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hadoop.fs.http.client.LimitExceededException;
+
+/**
+ * Learns how many requests a server sustains at once, and holds the
+ * requests beyond that back.
+ * <p>
+ * The limit follows the TCP Vegas congestion control: the lowest latency
+ * seen for an operation tells how fast the server answers it when idle, and
+ * the ratio of each latency to the one of its operation how many requests
+ * are queued on the server. The limit grows by one while fewer than
+ * {@link #getAlpha()} requests are estimated to be queued, and shrinks by
+ * one beyond {@link #getBeta()}. Requests the server turned away as
+ * overloaded, or lost on the way, shrink it by {@link #getBackoffRatio()}
+ * instead. The lowest latency is measured anew every
+ * {@link #PROBE_INTERVAL} requests of an operation, so that a server
+ * getting slower for good is not taken as overloaded forever.
+ * <p>
+ * Requests beyond the limit wait for another to finish, up to
+ * {@link #getMaxQueued()} of them for at most {@link #getMaxWait()}; other
+ * requests fail with a {@link LimitExceededException}.
+ */
+public class ConcurrencyLimiter {
+
+	/** The number of requests of an operation after which its lowest latency is measured anew */
+	public static final int PROBE_INTERVAL = 1000;
+
+	/** The default initial limit */
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+	/** The default minimum limit */
+	public static final int DEFAULT_MIN_LIMIT = 1;
+
+	/** The default maximum limit */
+	public static final int DEFAULT_MAX_LIMIT = 1000;
+
+	/** The default number of requests allowed to wait for the limit */
+	public static final int DEFAULT_MAX_QUEUED = 1000;
+
+	/** The default time, in milliseconds, a request waits for the limit */
+	public static final long DEFAULT_MAX_WAIT = 30 * 1000L;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/* guarded by lock */
+	private double limit = DEFAULT_INITIAL_LIMIT;
+	private int inFlight;
+	private int queued;
+	private final Map<String, Baseline> baselines = new HashMap<String, Baseline>();
+
+	private volatile int minLimit = DEFAULT_MIN_LIMIT;
+	private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+	private volatile int maxQueued = DEFAULT_MAX_QUEUED;
+	private volatile long maxWait = DEFAULT_MAX_WAIT;
+	private volatile int alpha = 3;
+	private volatile int beta = 6;
+	private volatile double backoffRatio = 0.9;
+
+	/**
+	 * Waits until fewer requests than the limit are in flight
+	 *
+	 * @return the number of requests in flight once this one is counted
+	 * @throws LimitExceededException
+	 * 			if too many requests are waiting already, or the wait timed out
+	 * @throws InterruptedIOException
+	 * 			if interrupted while waiting
+	 */
+	int acquire() throws LimitExceededException, InterruptedIOException {
+		lock.lock();
+		try {
+			if (inFlight < (int) limit) {
+				return ++inFlight;
+			}
+			if (queued >= maxQueued) {
+				rejected.incrementAndGet();
+				throw new LimitExceededException("Too many requests waiting: " + queued + " queued, "
+						+ inFlight + " in flight");
+			}
+
+			queued++;
+			try {
+				long nanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+				while (inFlight >= (int) limit) {
+					if (nanos <= 0) {
+						rejected.incrementAndGet();
+						throw new LimitExceededException("Timed out after " + maxWait + " ms waiting for one of "
+								+ inFlight + " requests in flight");
+					}
+					nanos = available.awaitNanos(nanos);
+				}
+				return ++inFlight;
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for one of " + inFlight + " requests in flight");
+			}
+			finally {
+				queued--;
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Counts a request out, adjusting the limit
+	 *
+	 * @param operation
+	 * 			the name of the operation, whose latencies are compared with
+	 * 			each other only
+	 * @param latency
+	 * 			the latency of the request, in nanoseconds, or -1 if it
+	 * 			does not tell about the server's load, e.g. a transfer
+	 * @param overloaded
+	 * 			whether the server turned the request away as overloaded,
+	 * 			or it was lost
+	 * @param inFlightAtStart
+	 * 			the number of requests in flight when it was sent
+	 */
+	void release(String operation, long latency, boolean overloaded, int inFlightAtStart) {
+		lock.lock();
+		try {
+			inFlight--;
+			if (overloaded) {
+				limit = Math.max(minLimit, limit * backoffRatio);
+			} else if (latency > 0) {
+				adjust(operation, latency, inFlightAtStart);
+			}
+			available.signal();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Callers hold the lock.
+	 */
+	private void adjust(String operation, long latency, int inFlightAtStart) {
+		Baseline baseline = baselines.get(operation);
+		if (baseline == null) {
+			baseline = new Baseline();
+			baselines.put(operation, baseline);
+		}
+		if (++baseline.samples >= PROBE_INTERVAL) {
+			baseline.samples = 0;
+			baseline.minLatency = latency;
+		} else if (latency < baseline.minLatency) {
+			baseline.minLatency = latency;
+		}
+
+		double queue = limit * (1.0 - (double) baseline.minLatency / latency);
+		if (queue < alpha) {
+			// only grow a limit actually reached
+			if (inFlightAtStart * 2 >= (int) limit) {
+				limit = Math.min(maxLimit, limit + 1);
+				available.signal();
+			}
+		} else if (queue > beta) {
+			limit = Math.max(minLimit, limit - 1);
+		}
+	}
+
+	/**
+	 * @return the number of requests currently allowed in flight
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of requests in flight
+	 */
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of requests waiting for the limit
+	 */
+	public int getQueued() {
+		lock.lock();
+		try {
+			return queued;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of requests failed with a {@link LimitExceededException}
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Sets the limit, e.g. to start from a known sustainable one
+	 *
+	 * @param limit
+	 */
+	public void setLimit(int limit) {
+		lock.lock();
+		try {
+			this.limit = Math.max(minLimit, Math.min(maxLimit, limit));
+			available.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public void setMinLimit(int minLimit) {
+		if (minLimit < 1) {
+			throw new IllegalArgumentException("Property <minLimit> must be positive");
+		}
+		this.minLimit = minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+
+	/**
+	 * Sets the number of requests allowed to wait for the limit, 0 failing
+	 * every request beyond it at once
+	 *
+	 * @param maxQueued
+	 */
+	public void setMaxQueued(int maxQueued) {
+		this.maxQueued = maxQueued;
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public int getAlpha() {
+		return alpha;
+	}
+
+	public void setAlpha(int alpha) {
+		this.alpha = alpha;
+	}
+
+	public int getBeta() {
+		return beta;
+	}
+
+	public void setBeta(int beta) {
+		this.beta = beta;
+	}
+
+	public double getBackoffRatio() {
+		return backoffRatio;
+	}
+
+	public void setBackoffRatio(double backoffRatio) {
+		if (backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("Property <backoffRatio> must be in ]0, 1[");
+		}
+		this.backoffRatio = backoffRatio;
+	}
+
+	/*
+	 * The lowest latency of an operation, guarded by lock
+	 */
+	private static class Baseline {
+		long minLatency = Long.MAX_VALUE;
+		int samples;
+	}
+}
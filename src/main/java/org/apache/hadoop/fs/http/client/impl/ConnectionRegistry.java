@@ -0,0 +1,288 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.util.Assert;
+
+/**
+ * Keeps the connections of every (endpoints, user, authentication type),
+ * so that serving a user again costs a map lookup rather than a new
+ * connection and authentication.
+ * <p>
+ * The registry holds at most {@link #getMaxSize()} connections, evicting
+ * the least recently used one beyond that, along with the connections
+ * unused for {@link #getMaxIdle()}. Connections still share their
+ * transport and, through the {@link TokenManager}, their tokens whether or
+ * not they are registered; an evicted connection keeps working for the
+ * callers still holding it. Eviction therefore leaves tokens alone: a
+ * delegation token is cancelled by whoever holds its connection, or stops
+ * being renewed once the connection is garbage collected.
+ */
+public class ConnectionRegistry {
+
+	/** The default maximum number of connections */
+	public static final int DEFAULT_MAX_SIZE = 1024;
+
+	/** The default time, in milliseconds, after which an unused connection is evicted */
+	public static final long DEFAULT_MAX_IDLE = 30 * 60 * 1000L;
+
+	private static ConnectionRegistry sharedInstance;
+
+	private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+	private long maxIdle = DEFAULT_MAX_IDLE;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates the connection of a key missing from the registry.
+	 */
+	public interface ConnectionSource {
+		WebHDFSConnection createConnection();
+	}
+
+	/**
+	 * @return the registry shared by factories which were not given one explicitly
+	 */
+	public static synchronized ConnectionRegistry getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new ConnectionRegistry();
+		}
+		return sharedInstance;
+	}
+
+	/**
+	 * Returns the connection registered for {@code key}, creating it through
+	 * {@code source} if there is none
+	 *
+	 * @param key
+	 * 			identifies the connection
+	 * @param source
+	 * 			creates the connection when needed
+	 * @return the connection
+	 */
+	public synchronized WebHDFSConnection getConnection(Key key, ConnectionSource source) {
+		long now = System.currentTimeMillis();
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			hits++;
+			entry.lastUsed = now;
+		} else {
+			misses++;
+			entry = new Entry(source.createConnection(), now);
+			entries.put(key, entry);
+		}
+		evict(now);
+		return entry.connection;
+	}
+
+	/**
+	 * Removes the connection registered for {@code key}, if any
+	 *
+	 * @param key
+	 * @return the removed connection, or null
+	 */
+	public synchronized WebHDFSConnection remove(Key key) {
+		Entry entry = entries.remove(key);
+		return entry == null ? null : entry.connection;
+	}
+
+	/**
+	 * Removes every connection
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of connections found registered
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of connections created
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of connections evicted, for lack of room or use
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Property <maxSize> must be positive");
+		}
+		this.maxSize = maxSize;
+	}
+
+	public synchronized long getMaxIdle() {
+		return maxIdle;
+	}
+
+	public synchronized void setMaxIdle(long maxIdle) {
+		if (maxIdle < 1) {
+			throw new IllegalArgumentException("Property <maxIdle> must be positive");
+		}
+		this.maxIdle = maxIdle;
+	}
+
+	/*
+	 * Evicts the least recently used entries beyond the maximum size, and
+	 * the idle ones, which come first in access order. Callers hold the lock.
+	 */
+	private void evict(long now) {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			if (entries.size() <= maxSize && now - entry.lastUsed < maxIdle) {
+				break;
+			}
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Identifies a connection by the endpoints it sends its requests to, its
+	 * user and how they authenticate.
+	 */
+	public static final class Key {
+		private final List<String> urls;
+		private final String username;
+		private final String password;
+		private final AuthenticationType authenticationType;
+		private final LoadBalancingPolicy loadBalancingPolicy;
+		private final HttpTransport transport;
+		private final CircuitBreakerPolicy circuitBreakerPolicy;
+		private final int hashCode;
+
+		/**
+		 * Creates a new Key instance.
+		 *
+		 * @param urls
+		 * 			the URLs of the endpoints
+		 * @param username
+		 * 			the user name
+		 * @param password
+		 * 			the user's password, so that changing it creates a new connection
+		 * @param authenticationType
+		 * 			the authentication type
+		 * @param loadBalancingPolicy
+		 * 			how requests are spread over the endpoints, if several
+		 * @param transport
+		 * 			the transport, told apart by identity
+		 */
+		public Key(List<String> urls, String username, String password, AuthenticationType authenticationType,
+				LoadBalancingPolicy loadBalancingPolicy, HttpTransport transport) {
+			this(urls, username, password, authenticationType, loadBalancingPolicy, transport, null);
+		}
+
+		/**
+		 * Creates a new Key instance.
+		 *
+		 * @param urls
+		 * 			the URLs of the endpoints
+		 * @param username
+		 * 			the user name
+		 * @param password
+		 * 			the user's password, so that changing it creates a new connection
+		 * @param authenticationType
+		 * 			the authentication type
+		 * @param loadBalancingPolicy
+		 * 			how requests are spread over the endpoints, if several
+		 * @param transport
+		 * 			the transport, told apart by identity
+		 * @param circuitBreakerPolicy
+		 * 			the circuit breakers of the endpoints if any, told apart by identity
+		 */
+		public Key(List<String> urls, String username, String password, AuthenticationType authenticationType,
+				LoadBalancingPolicy loadBalancingPolicy, HttpTransport transport, CircuitBreakerPolicy circuitBreakerPolicy) {
+			Assert.notNull(urls, "Property <urls> must not be null");
+			this.urls = Collections.unmodifiableList(new ArrayList<String>(urls));
+			this.username = username;
+			this.password = password;
+			this.authenticationType = authenticationType;
+			this.loadBalancingPolicy = loadBalancingPolicy;
+			this.transport = transport;
+			this.circuitBreakerPolicy = circuitBreakerPolicy;
+
+			int h = this.urls.hashCode();
+			h = 31 * h + (username == null ? 0 : username.hashCode());
+			h = 31 * h + (password == null ? 0 : password.hashCode());
+			h = 31 * h + (authenticationType == null ? 0 : authenticationType.hashCode());
+			h = 31 * h + (loadBalancingPolicy == null ? 0 : loadBalancingPolicy.hashCode());
+			h = 31 * h + System.identityHashCode(transport);
+			h = 31 * h + System.identityHashCode(circuitBreakerPolicy);
+			this.hashCode = h;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hashCode == other.hashCode
+					&& urls.equals(other.urls)
+					&& equal(username, other.username)
+					&& equal(password, other.password)
+					&& authenticationType == other.authenticationType
+					&& loadBalancingPolicy == other.loadBalancingPolicy
+					&& transport == other.transport
+					&& circuitBreakerPolicy == other.circuitBreakerPolicy;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public String toString() {
+			// never the password
+			return authenticationType + ":" + username + "@" + urls;
+		}
+
+		private static boolean equal(Object o1, Object o2) {
+			return o1 == null ? o2 == null : o1.equals(o2);
+		}
+	}
+
+	private static class Entry {
+		final WebHDFSConnection connection;
+		long lastUsed;
+
+		Entry(WebHDFSConnection connection, long lastUsed) {
+			this.connection = connection;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
+import java.net.URLEncoder;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Authenticates every request with a delegation token sent as the
+ * <code>delegation</code> parameter, so requests never go through SPNEGO.
+ * <p>
+ * Created with a principal and password, the connection fetches the token
+ * once through Kerberos and renews it every {@link #getRenewInterval()} in
+ * the background, fetching a new one when the server refuses to renew it
+ * any longer. The token is available through {@link #getDelegation()} so
+ * that a coordinator can hand it out to worker processes, which create their
+ * connections with the token alone and leave its renewal to the coordinator.
+ * Call {@link #cancel()} once done with a token this connection fetched;
+ * the connection cannot be used any more afterwards. A connection dropped
+ * without being cancelled stops renewing its token once it is garbage
+ * collected, and the token expires on the server.
+ */
+public class DelegationWebHDFSConnection extends AbstractWebHDFSConnection {
+
+	protected static final Logger logger = LoggerFactory.getLogger(DelegationWebHDFSConnection.class);
+
+	/** The default time, in milliseconds, between two renewals of the token */
+	public static final long DEFAULT_RENEW_INTERVAL = 60 * 60 * 1000L;
+
+	private static final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-delegation-renewal-%d").build());
+
+	/* authenticates the requests managing the token, null if given one */
+	private final AbstractWebHDFSConnection issuer;
+
+	private volatile String delegation;
+	private volatile long expires;
+	private long renewInterval = DEFAULT_RENEW_INTERVAL;
+	private ScheduledFuture<?> renewal;
+	private volatile boolean cancelled;
+
+	/**
+	 * Creates a new DelegationWebHDFSConnection instance fetching and
+	 * renewing its own token, as {@code principal} logged in with Kerberos.
+	 */
+	public DelegationWebHDFSConnection(String httpfsUrl, String principal, String password, HttpTransport transport) {
+		this(httpfsUrl, principal, transport, new KerberosWebHDFSConnection(httpfsUrl, principal, password, transport));
+	}
+
+	DelegationWebHDFSConnection(String httpfsUrl, String principal, HttpTransport transport, AbstractWebHDFSConnection issuer) {
+		super(httpfsUrl, principal, null, transport);
+		this.issuer = issuer;
+	}
+
+	/**
+	 * Creates a new DelegationWebHDFSConnection instance using a token
+	 * obtained, and renewed, elsewhere.
+	 */
+	public DelegationWebHDFSConnection(String httpfsUrl, String delegation, HttpTransport transport) {
+		super(httpfsUrl, null, null, transport);
+		this.issuer = null;
+		this.delegation = delegation;
+	}
+
+	/**
+	 * Fetches the delegation token if the connection has none yet
+	 *
+	 * @throws IllegalStateException
+	 * 			if the connection was cancelled
+	 */
+	@Override
+	public void ensureValidToken() {
+		if (cancelled) {
+			throw new IllegalStateException("Delegation token for " + principal + "@" + httpfsUrl + " was cancelled");
+		}
+		if (delegation == null && issuer != null) {
+			fetch();
+		}
+	}
+
+	/**
+	 * Drops the delegation token so that the next request fetches a new one,
+	 * unless the token was handed out by another process
+	 */
+	@Override
+	public void invalidateToken() {
+		if (issuer != null) {
+			synchronized (this) {
+				delegation = null;
+			}
+		}
+	}
+
+	@Override
+	protected Token generateToken() {
+		// the delegation parameter replaces the hadoop.auth cookie
+		return new AuthenticatedURL.Token();
+	}
+
+	@Override
+	protected String authParams() {
+		String current = delegation;
+		if (current == null) {
+			return "";
+		}
+		try {
+			return "&delegation=" + URLEncoder.encode(current, "UTF-8");
+		}
+		catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Cancels the token, if this connection fetched it, and stops renewing it.
+	 * The requests sent through the connection fail from then on.
+	 *
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public final synchronized void cancel() throws IOException, AuthenticationException {
+		cancelled = true;
+		if (renewal != null) {
+			renewal.cancel(false);
+			renewal = null;
+		}
+		String current = delegation;
+		if (issuer != null && current != null) {
+			delegation = null;
+			issuer.cancelDelegationToken(current);
+		}
+	}
+
+	/**
+	 * @return the delegation token, as sent along with the requests, or
+	 * 			null if it has not been fetched yet
+	 */
+	public String getDelegation() {
+		return delegation;
+	}
+
+	/**
+	 * Replaces the delegation token, e.g. with a fresher one handed out by
+	 * the process renewing it
+	 *
+	 * @param delegation
+	 */
+	public void setDelegation(String delegation) {
+		this.delegation = delegation;
+	}
+
+	/**
+	 * @return the expiration time of the token as of its last renewal, in
+	 * 			milliseconds, or 0 if it has not been renewed yet
+	 */
+	public long getExpires() {
+		return expires;
+	}
+
+	public long getRenewInterval() {
+		return renewInterval;
+	}
+
+	public void setRenewInterval(long renewInterval) {
+		if (renewInterval < 1) {
+			throw new IllegalArgumentException("Property <renewInterval> must be positive");
+		}
+		this.renewInterval = renewInterval;
+	}
+
+	/*
+	 * Fetches a new token through Kerberos and schedules its renewal.
+	 */
+	private synchronized void fetch() {
+		if (delegation != null || cancelled) {
+			return;
+		}
+		try {
+			delegation = issuer.getDelegationToken(principal);
+			expires = 0L;
+			logger.info("Fetched delegation token for " + principal + "@" + httpfsUrl);
+			scheduleRenewal();
+		}
+		catch(Exception ex) {
+			// the requests go out unauthenticated and get rejected
+			logger.error("Failed to fetch delegation token for " + principal + "@" + httpfsUrl, ex);
+		}
+	}
+
+	private void scheduleRenewal() {
+		if (renewal != null) {
+			return;
+		}
+		try {
+			Renewal task = new Renewal(this);
+			renewal = renewer.scheduleWithFixedDelay(task, renewInterval, renewInterval, TimeUnit.MILLISECONDS);
+			task.future = renewal;
+		}
+		catch(RejectedExecutionException e) {
+			logger.warn("Not renewing delegation token for " + principal + "@" + httpfsUrl, e);
+		}
+	}
+
+	private void renew() {
+		String current = delegation;
+		if (current == null) {
+			return;
+		}
+		try {
+			expires = issuer.renewDelegationToken(current);
+			logger.debug("Renewed delegation token for " + principal + "@" + httpfsUrl + " until " + expires);
+		}
+		catch(WebHDFSException e) {
+			// past its maximum lifetime, or cancelled on the server
+			logger.info("Delegation token for " + principal + "@" + httpfsUrl + " not renewed, fetching a new one: "
+					+ e.getMessage());
+			synchronized (this) {
+				if (delegation == current) {
+					delegation = null;
+					fetch();
+				}
+			}
+		}
+		catch(Exception e) {
+			logger.warn("Failed to renew delegation token for " + principal + "@" + httpfsUrl, e);
+		}
+	}
+
+	/*
+	 * Renews the token of a connection as long as the connection is in use,
+	 * so that the renewal does not keep it from being garbage collected.
+	 */
+	private static class Renewal implements Runnable {
+		private final WeakReference<DelegationWebHDFSConnection> connection;
+		volatile ScheduledFuture<?> future;
+
+		Renewal(DelegationWebHDFSConnection connection) {
+			this.connection = new WeakReference<DelegationWebHDFSConnection>(connection);
+		}
+
+		@Override
+		public void run() {
+			DelegationWebHDFSConnection current = connection.get();
+			if (current == null) {
+				logger.debug("Delegation connection collected, no longer renewing its token");
+				ScheduledFuture<?> scheduled = future;
+				if (scheduled != null) {
+					scheduled.cancel(false);
+				}
+				return;
+			}
+			current.renew();
+		}
+	}
+}
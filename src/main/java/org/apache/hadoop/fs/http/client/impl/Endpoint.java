@@ -0,0 +1,154 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.util.Assert;
+
+/**
+ * One of the servers a {@link FailoverWebHDFSConnection} spreads its requests
+ * over, along with its health and load.
+ * <p>
+ * An endpoint which failed to answer, or answered as a standby namenode, is
+ * left out for a back-off period doubling with each consecutive failure, up
+ * to {@link #MAX_BACKOFF_FACTOR} times the initial one. A request it
+ * answers puts it back in rotation.
+ */
+public class Endpoint {
+
+	/** The maximum factor the back-off period grows by */
+	public static final int MAX_BACKOFF_FACTOR = 32;
+
+	/* the weight of the latest request in the average latency */
+	private static final double ALPHA = 0.2;
+
+	private final String url;
+	private final WebHDFSConnection connection;
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong latency = new AtomicLong();
+
+	private volatile int consecutiveFailures;
+	private volatile long unavailableUntil;
+	private volatile boolean standby;
+
+	/**
+	 * Creates a new Endpoint instance.
+	 *
+	 * @param url
+	 * 			the URL of the server, e.g. <code>http://host:14000</code>
+	 * @param connection
+	 * 			the connection sending requests to it
+	 */
+	public Endpoint(String url, WebHDFSConnection connection) {
+		Assert.notNull(url, "Property <url> must not be null");
+		Assert.notNull(connection, "Property <connection> must not be null");
+		this.url = url;
+		this.connection = connection;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * @return the number of requests currently sent to the endpoint
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * @return the number of requests sent to the endpoint so far
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the number of requests the endpoint failed to answer, or
+	 * 			rejected as a standby namenode
+	 */
+	public long getFailureCount() {
+		return failures.get();
+	}
+
+	/**
+	 * @return the moving average of the latency of the endpoint, in
+	 * 			nanoseconds, or 0 if it has not answered any request yet
+	 */
+	public long getLatency() {
+		return latency.get();
+	}
+
+	/**
+	 * @return whether the endpoint last rejected a request as a standby namenode
+	 */
+	public boolean isStandby() {
+		return standby;
+	}
+
+	/**
+	 * @param now
+	 * 			the current time, in milliseconds
+	 * @return whether the endpoint is out of its back-off period
+	 */
+	public boolean isAvailable(long now) {
+		return now >= unavailableUntil;
+	}
+
+	/**
+	 * @return when the back-off period of the endpoint ends, in milliseconds
+	 */
+	public long getUnavailableUntil() {
+		return unavailableUntil;
+	}
+
+	void started() {
+		outstanding.incrementAndGet();
+		requests.incrementAndGet();
+	}
+
+	void finished() {
+		outstanding.decrementAndGet();
+	}
+
+	/*
+	 * The endpoint answered, whether or not the operation succeeded.
+	 */
+	void answered(long nanos) {
+		consecutiveFailures = 0;
+		unavailableUntil = 0L;
+		standby = false;
+
+		while (true) {
+			long current = latency.get();
+			long next = current == 0L ? nanos : (long) (current + ALPHA * (nanos - current));
+			if (latency.compareAndSet(current, next)) {
+				return;
+			}
+		}
+	}
+
+	void failed(boolean standby, long backoff, long now) {
+		failures.incrementAndGet();
+		this.standby = standby;
+		// racing failures may count once, the back-off is only a hint
+		int consecutive = Math.min(consecutiveFailures + 1, Integer.numberOfTrailingZeros(MAX_BACKOFF_FACTOR) + 1);
+		consecutiveFailures = consecutive;
+		unavailableUntil = now + (backoff << (consecutive - 1));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Endpoint[%s, outstanding=%d, latency=%dus%s]", url, outstanding.get(), latency.get() / 1000,
+				isAvailable(System.currentTimeMillis()) ? "" : standby ? ", standby" : ", unavailable");
+	}
+}
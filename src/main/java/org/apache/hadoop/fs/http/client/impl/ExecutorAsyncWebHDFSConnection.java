@@ -0,0 +1,472 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hadoop.fs.http.client.AsyncWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.model.ContentSummary;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileChecksum;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+import org.apache.hadoop.fs.http.client.util.Assert;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link AsyncWebHDFSConnection} running the operations of a blocking
+ * {@link WebHDFSConnection} on an {@link ExecutorService}.
+ * <p>
+ * A cancelled or timed out operation has its thread interrupted and the
+ * socket of the request it is waiting on closed. Requests sent from other
+ * threads, such as hedged ones, are left to complete.
+ */
+public class ExecutorAsyncWebHDFSConnection implements AsyncWebHDFSConnection {
+
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-async-timer").build());
+
+	private final WebHDFSConnection connection;
+	private final ListeningExecutorService executor;
+	private final long timeoutMillis;
+
+	/**
+	 * Creates a new ExecutorAsyncWebHDFSConnection instance.
+	 *
+	 * @param connection
+	 * 			the blocking connection
+	 * @param executor
+	 * 			the executor running the requests
+	 */
+	public ExecutorAsyncWebHDFSConnection(WebHDFSConnection connection, ExecutorService executor) {
+		this(connection, MoreExecutors.listeningDecorator(executor), 0L);
+	}
+
+	private ExecutorAsyncWebHDFSConnection(WebHDFSConnection connection, ListeningExecutorService executor, long timeoutMillis) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		this.connection = connection;
+		this.executor = executor;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	@Override
+	public AsyncWebHDFSConnection withTimeout(long timeout, TimeUnit unit) {
+		return new ExecutorAsyncWebHDFSConnection(connection, executor, unit.toMillis(timeout));
+	}
+
+	@Override
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	@Override
+	public ListenableFuture<String> getHomeDirectory() {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.getHomeDirectory();
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> open(final String path, final OutputStream os) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.open(path, os);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> getContentSummary(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.getContentSummary(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> listStatus(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.listStatus(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> getFileStatus(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.getFileStatus(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> getFileCheckSum(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.getFileCheckSum(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<FileStatus> getStatus(final String path) {
+		return submit(new Callable<FileStatus>() {
+			@Override
+			public FileStatus call() throws Exception {
+				return connection.getStatus(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<DirectoryListing> getListing(final String path) {
+		return submit(new Callable<DirectoryListing>() {
+			@Override
+			public DirectoryListing call() throws Exception {
+				return connection.getListing(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<ContentSummary> getSummary(final String path) {
+		return submit(new Callable<ContentSummary>() {
+			@Override
+			public ContentSummary call() throws Exception {
+				return connection.getSummary(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<FileChecksum> getChecksum(final String path) {
+		return submit(new Callable<FileChecksum>() {
+			@Override
+			public FileChecksum call() throws Exception {
+				return connection.getChecksum(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> getDelegationToken(final String renewer) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.getDelegationToken(renewer);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> create(final String path, final InputStream is, final long length) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.create(path, is, length);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> create(final String path, final InputStream is, final long length, final CreateOptions options) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.create(path, is, length, options);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> create(final String path, final InputStream is) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.create(path, is);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> mkdirs(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.mkdirs(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> mkdirs(final String path, final int permission) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.mkdirs(path, permission);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> createSymLink(final String srcPath, final String destPath) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.createSymLink(srcPath, destPath);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> rename(final String srcPath, final String destPath) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.rename(srcPath, destPath);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> setPermission(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.setPermission(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> setPermission(final String path, final int permission) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.setPermission(path, permission);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> setOwner(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.setOwner(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> setOwner(final String path, final String owner, final String group) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.setOwner(path, owner, group);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> setReplication(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.setReplication(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> setReplication(final String path, final short replication) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.setReplication(path, replication);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> setTimes(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.setTimes(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> setTimes(final String path, final long modificationTime, final long accessTime) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.setTimes(path, modificationTime, accessTime);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Long> renewDelegationToken(final String token) {
+		return submit(new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				return connection.renewDelegationToken(token);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Void> cancelDelegationToken(final String token) {
+		return submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				connection.cancelDelegationToken(token);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> append(final String path, final InputStream is, final long length) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.append(path, is, length);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> append(final String path, final InputStream is) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.append(path, is);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> concat(final String path, final String... sources) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.concat(path, sources);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> delete(final String path) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.delete(path);
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<String> delete(final String path, final boolean recursive) {
+		return submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return connection.delete(path, recursive);
+			}
+		});
+	}
+
+	/*
+	 * Runs the task on the executor; the returned future propagates its
+	 * cancellation to the running task and fails it on timeout, aborting the
+	 * request the task is blocked in.
+	 */
+	private <T> ListenableFuture<T> submit(final Callable<T> task) {
+		final SettableFuture<T> result = SettableFuture.create();
+		final InFlightExchange exchange = new InFlightExchange();
+		final ListenableFuture<T> running = executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				exchange.attach();
+				try {
+					return task.call();
+				}
+				finally {
+					exchange.detach();
+				}
+			}
+		});
+
+		Futures.addCallback(running, new FutureCallback<T>() {
+			@Override
+			public void onSuccess(T value) {
+				result.set(value);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				result.setException(t);
+			}
+		});
+
+		final ScheduledFuture<?> timeout = timeoutMillis > 0 ? scheduleTimeout(result, running, exchange) : null;
+
+		result.addListener(new Runnable() {
+			@Override
+			public void run() {
+				if (timeout != null) {
+					timeout.cancel(false);
+				}
+				if (result.isCancelled()) {
+					running.cancel(true);
+					exchange.abort();
+				}
+			}
+		}, MoreExecutors.sameThreadExecutor());
+
+		return result;
+	}
+
+	private ScheduledFuture<?> scheduleTimeout(final SettableFuture<?> result, final ListenableFuture<?> running,
+			final InFlightExchange exchange) {
+		final long timeout = timeoutMillis;
+		return timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (result.setException(new TimeoutException("Operation timed out after " + timeout + " ms"))) {
+					running.cancel(true);
+					exchange.abort();
+				}
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,170 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spreads the requests over several HttpFS gateways, or WebHDFS namenodes,
+ * ordering them for each request as its {@link LoadBalancingPolicy} says.
+ * <p>
+ * A request goes to the next endpoint when the current one could not be
+ * reached, was unavailable or rejected it as a standby namenode, provided
+ * the request can still be sent: it did not start streaming the caller's
+ * data yet. Requests lost once sent, e.g. on a read timeout, are only sent
+ * again if they are idempotent. Failed endpoints are tried last until their
+ * back-off period ends, see {@link Endpoint}. Endpoints whose circuit
+ * breaker is open, see {@link CircuitBreakingWebHDFSConnection}, are passed
+ * over.
+ * <p>
+ * Operations returning the JSON response, which do not throw on errors,
+ * fail over in the same cases, returning the response of the last endpoint
+ * tried when none of them could run the operation.
+ */
+public class FailoverWebHDFSConnection extends ForwardingWebHDFSConnection {
+
+	private static final Logger logger = LoggerFactory.getLogger(FailoverWebHDFSConnection.class);
+
+	/** The default time, in milliseconds, a failed endpoint is left out at first */
+	public static final long DEFAULT_BACKOFF = 2000L;
+
+	private final List<Endpoint> endpoints;
+	private final LoadBalancingPolicy policy;
+	private final AtomicInteger sequence = new AtomicInteger();
+	private volatile long backoff = DEFAULT_BACKOFF;
+
+	/**
+	 * Creates a new FailoverWebHDFSConnection instance.
+	 *
+	 * @param endpoints
+	 * 			the endpoints to spread the requests over
+	 * @param policy
+	 * 			how to order the endpoints for each request
+	 */
+	public FailoverWebHDFSConnection(List<Endpoint> endpoints, LoadBalancingPolicy policy) {
+		Assert.notNull(endpoints, "Property <endpoints> must not be null");
+		Assert.notNull(policy, "Property <policy> must not be null");
+		if (endpoints.isEmpty()) {
+			throw new IllegalArgumentException("Property <endpoints> must not be empty");
+		}
+		this.endpoints = Collections.unmodifiableList(new ArrayList<Endpoint>(endpoints));
+		this.policy = policy;
+	}
+
+	/**
+	 * @return the endpoints, along with their health and load
+	 */
+	public List<Endpoint> getEndpoints() {
+		return endpoints;
+	}
+
+	public LoadBalancingPolicy getPolicy() {
+		return policy;
+	}
+
+	public long getBackoff() {
+		return backoff;
+	}
+
+	public void setBackoff(long backoff) {
+		if (backoff < 0) {
+			throw new IllegalArgumentException("Property <backoff> must not be negative");
+		}
+		this.backoff = backoff;
+	}
+
+	@Override
+	protected <T> T invoke(Operation<T> operation) throws IOException, AuthenticationException {
+		List<Endpoint> ordered = order();
+
+		for (int i = 0; i < ordered.size(); i++) {
+			Endpoint endpoint = ordered.get(i);
+			boolean last = i == ordered.size() - 1;
+			long start = System.nanoTime();
+			endpoint.started();
+			try {
+				T result = operation.call(endpoint.getConnection());
+				Failure failure = Failure.ofResult(result);
+				if (!failOver(operation, endpoint, failure, null, start, last)) {
+					return result;
+				}
+			}
+			catch(IOException e) {
+				if (!failOver(operation, endpoint, Failure.of(e), e, start, last)) {
+					throw e;
+				}
+			}
+			catch(AuthenticationException e) {
+				if (!failOver(operation, endpoint, Failure.of(e), e, start, last)) {
+					throw e;
+				}
+			}
+			finally {
+				endpoint.finished();
+			}
+		}
+		// the last endpoint either answers or throws
+		throw new IllegalStateException("No endpoint tried");
+	}
+
+	/*
+	 * Available endpoints in the order of the policy, followed by the ones
+	 * backing off, the soonest available first.
+	 */
+	private List<Endpoint> order() {
+		long now = System.currentTimeMillis();
+		List<Endpoint> available = new ArrayList<Endpoint>(endpoints.size());
+		List<Endpoint> unavailable = null;
+		for (Endpoint endpoint : endpoints) {
+			if (endpoint.isAvailable(now)) {
+				available.add(endpoint);
+			} else {
+				if (unavailable == null) {
+					unavailable = new ArrayList<Endpoint>(endpoints.size());
+				}
+				unavailable.add(endpoint);
+			}
+		}
+
+		List<Endpoint> ordered = policy.order(available, sequence.getAndIncrement());
+		if (unavailable != null) {
+			long[] keys = new long[unavailable.size()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = unavailable.get(i).getUnavailableUntil();
+			}
+			ordered.addAll(LoadBalancingPolicy.sort(unavailable, keys));
+		}
+		return ordered;
+	}
+
+	/*
+	 * Records the failure against the endpoint, returning whether to send the
+	 * operation to the next one.
+	 */
+	private boolean failOver(Operation<?> operation, Endpoint endpoint, Failure failure, Exception e, long start,
+			boolean last) {
+		if (failure == Failure.NONE || failure == Failure.UNAUTHORIZED) {
+			// another endpoint would not do better
+			endpoint.answered(System.nanoTime() - start);
+			return false;
+		}
+		if (failure == Failure.SHED) {
+			// its circuit breaker keeps count already
+			return !last;
+		}
+		endpoint.failed(failure == Failure.STANDBY, backoff, System.currentTimeMillis());
+
+		if (last || !failure.isRetriable(operation)) {
+			return false;
+		}
+		logger.warn("Failing over " + operation + " from " + endpoint.getUrl() + ": " + (e == null ? failure : e.toString()));
+		return true;
+	}
+}
@@ -0,0 +1,131 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+
+import org.apache.hadoop.fs.http.client.CircuitOpenException;
+import org.apache.hadoop.fs.http.client.LimitExceededException;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * What a failed request tells about whether sending it again may help, and
+ * whether it may have been run already.
+ */
+enum Failure {
+
+	/** The server answered, the failure is the operation's own */
+	NONE,
+
+	/** The server rejected the token, the operation was not run */
+	UNAUTHORIZED,
+
+	/** The server is a standby namenode, the operation was not run */
+	STANDBY,
+
+	/** The request never reached the server, or was turned away unrun */
+	UNSENT,
+
+	/** The request may or may not have been run */
+	LOST,
+
+	/** The request was not sent, its endpoint's circuit breaker being open */
+	SHED;
+
+	private static final String STANDBY_EXCEPTION = "StandbyException";
+
+	/**
+	 * @return whether an operation failing this way can be sent again
+	 */
+	boolean isRetriable(ForwardingWebHDFSConnection.Operation<?> operation) {
+		switch (this) {
+		case NONE:
+		case SHED:
+			// another endpoint may take it, but not the same one right away
+			return false;
+		case LOST:
+			return operation.isIdempotent() && operation.isReplayable();
+		default:
+			return operation.isReplayable();
+		}
+	}
+
+	static Failure of(IOException e) {
+		if (e instanceof LimitExceededException) {
+			// sending it again would only add to the load
+			return NONE;
+		}
+		if (e instanceof CircuitOpenException) {
+			return SHED;
+		}
+		if (e instanceof WebHDFSException) {
+			WebHDFSException we = (WebHDFSException) e;
+			return isStandby(we) ? STANDBY : ofStatus(we.getStatusCode());
+		}
+		if (e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof UnknownHostException) {
+			return UNSENT;
+		}
+		return LOST;
+	}
+
+	static Failure of(AuthenticationException e) {
+		// the authentication round trip failed to reach the server
+		return e.getCause() instanceof IOException ? of((IOException) e.getCause()) : NONE;
+	}
+
+	/**
+	 * Classifies the JSON response returned by the operations which do not
+	 * throw on errors
+	 *
+	 * @param result
+	 * 			the result of any operation
+	 * @return {@link #NONE} unless {@code result} is a failed JSON response
+	 */
+	static Failure ofResult(Object result) {
+		if (!(result instanceof String)) {
+			return NONE;
+		}
+		String json = (String) result;
+		int code = ResponseUtil.getCode(json);
+		if (code < 0 || code / 100 == 2) {
+			return NONE;
+		}
+		if (json.indexOf(STANDBY_EXCEPTION) >= 0) {
+			try {
+				ResponseUtil.checkResponse(json);
+			}
+			catch(WebHDFSException e) {
+				return of(e);
+			}
+			catch(RuntimeException e) {
+				// not a JSON response after all
+				return NONE;
+			}
+		}
+		return ofStatus(code);
+	}
+
+	private static Failure ofStatus(int code) {
+		switch (code) {
+		case HttpURLConnection.HTTP_UNAUTHORIZED:
+			return UNAUTHORIZED;
+		case 429:
+		case HttpURLConnection.HTTP_UNAVAILABLE:
+			return UNSENT;
+		case HttpURLConnection.HTTP_BAD_GATEWAY:
+		case HttpURLConnection.HTTP_GATEWAY_TIMEOUT:
+			return LOST;
+		default:
+			return NONE;
+		}
+	}
+
+	private static boolean isStandby(WebHDFSException e) {
+		return STANDBY_EXCEPTION.equals(e.getException())
+				|| (e.getJavaClassName() != null && e.getJavaClassName().endsWith("." + STANDBY_EXCEPTION));
+	}
+}
@@ -0,0 +1,603 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.FileStatusIterator;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.model.ContentSummary;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileChecksum;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * {@link WebHDFSConnection} turning every call into an {@link Operation}
+ * handed to {@link #invoke(Operation)}, which decides which connection, and
+ * how many times, to run it against.
+ * <p>
+ * Each operation tells whether it is idempotent, following the annotations
+ * of the namenode's <code>ClientProtocol</code>, and whether it can still be
+ * sent again: operations streaming data from or to the caller cannot, once
+ * the first byte went through. Pure operations, which only read metadata or
+ * return a stream of the file, can even run several times at once.
+ */
+public abstract class ForwardingWebHDFSConnection implements WebHDFSConnection {
+
+	/**
+	 * A call of a {@link WebHDFSConnection} method, which can be run against
+	 * any connection.
+	 */
+	public abstract static class Operation<T> {
+		private final String name;
+		private final boolean idempotent;
+		private final boolean pure;
+
+		protected Operation(String name, boolean idempotent) {
+			this(name, idempotent, false);
+		}
+
+		protected Operation(String name, boolean idempotent, boolean pure) {
+			this.name = name;
+			this.idempotent = idempotent;
+			this.pure = pure;
+		}
+
+		/**
+		 * @return the WebHDFS operation, e.g. <code>GETFILESTATUS</code>
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return whether running the operation twice has the same effect as
+		 * 			running it once
+		 */
+		public boolean isIdempotent() {
+			return idempotent;
+		}
+
+		/**
+		 * @return whether the operation changes nothing on the server and
+		 * 			hands its result back rather than writing it to the
+		 * 			caller's stream, so that it can run several times at once
+		 */
+		public boolean isPure() {
+			return pure;
+		}
+
+		/**
+		 * @return whether the operation can be sent again, i.e. it did not
+		 * 			consume nor produce any of the caller's data yet
+		 */
+		public boolean isReplayable() {
+			return true;
+		}
+
+		/**
+		 * Runs the operation against {@code connection}
+		 */
+		public abstract T call(WebHDFSConnection connection) throws IOException, AuthenticationException;
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Runs {@code operation}
+	 *
+	 * @param operation
+	 * 			the operation
+	 * @return its result
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	protected abstract <T> T invoke(Operation<T> operation) throws IOException, AuthenticationException;
+
+	@Override
+	public String getHomeDirectory() throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("GETHOMEDIRECTORY", true, true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getHomeDirectory();
+			}
+		});
+	}
+
+	@Override
+	public String open(final String path, OutputStream os) throws MalformedURLException, IOException, AuthenticationException {
+		final TrackingOutputStream tracked = new TrackingOutputStream(os);
+		return invoke(new Operation<String>("OPEN", true) {
+			@Override
+			public boolean isReplayable() {
+				return !tracked.touched;
+			}
+
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.open(path, tracked);
+			}
+		});
+	}
+
+	@Override
+	public long open(final String path, WritableByteChannel channel) throws MalformedURLException, IOException, AuthenticationException {
+		final TrackingChannel tracked = new TrackingChannel(channel);
+		return invoke(new Operation<Long>("OPEN", true) {
+			@Override
+			public boolean isReplayable() {
+				return !tracked.touched;
+			}
+
+			@Override
+			public Long call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.open(path, tracked);
+			}
+		});
+	}
+
+	@Override
+	public long open(final String path, final File localFile) throws MalformedURLException, IOException, AuthenticationException {
+		// the local file is written over from the start on every attempt
+		return invoke(new Operation<Long>("OPEN", true) {
+			@Override
+			public Long call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.open(path, localFile);
+			}
+		});
+	}
+
+	@Override
+	public InputStream open(final String path, final long offset, final long length) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<InputStream>("OPEN", true, true) {
+			@Override
+			public InputStream call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.open(path, offset, length);
+			}
+		});
+	}
+
+	@Override
+	public String getContentSummary(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("GETCONTENTSUMMARY", true, true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getContentSummary(path);
+			}
+		});
+	}
+
+	@Override
+	public String listStatus(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("LISTSTATUS", true, true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.listStatus(path);
+			}
+		});
+	}
+
+	@Override
+	public String getFileStatus(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("GETFILESTATUS", true, true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getFileStatus(path);
+			}
+		});
+	}
+
+	@Override
+	public String getFileCheckSum(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("GETFILECHECKSUM", true, true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getFileCheckSum(path);
+			}
+		});
+	}
+
+	@Override
+	public FileStatus getStatus(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<FileStatus>("GETFILESTATUS", true, true) {
+			@Override
+			public FileStatus call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getStatus(path);
+			}
+		});
+	}
+
+	@Override
+	public DirectoryListing getListing(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<DirectoryListing>("LISTSTATUS", true, true) {
+			@Override
+			public DirectoryListing call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getListing(path);
+			}
+		});
+	}
+
+	@Override
+	public FileStatusIterator listStatusIterator(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		// only the first batch goes through invoke, the next ones come from
+		// the connection which answered it
+		return invoke(new Operation<FileStatusIterator>("LISTSTATUS_BATCH", true) {
+			@Override
+			public FileStatusIterator call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.listStatusIterator(path);
+			}
+		});
+	}
+
+	@Override
+	public ContentSummary getSummary(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<ContentSummary>("GETCONTENTSUMMARY", true, true) {
+			@Override
+			public ContentSummary call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getSummary(path);
+			}
+		});
+	}
+
+	@Override
+	public FileChecksum getChecksum(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<FileChecksum>("GETFILECHECKSUM", true, true) {
+			@Override
+			public FileChecksum call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getChecksum(path);
+			}
+		});
+	}
+
+	@Override
+	public String getDelegationToken(final String renewer) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("GETDELEGATIONTOKEN", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.getDelegationToken(renewer);
+			}
+		});
+	}
+
+	@Override
+	public String create(final String path, InputStream is) throws MalformedURLException, IOException, AuthenticationException {
+		final TrackingInputStream tracked = new TrackingInputStream(is);
+		return invoke(new Operation<String>("CREATE", false) {
+			@Override
+			public boolean isReplayable() {
+				return !tracked.touched;
+			}
+
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.create(path, tracked);
+			}
+		});
+	}
+
+	@Override
+	public String create(final String path, InputStream is, final long length) throws MalformedURLException, IOException, AuthenticationException {
+		final TrackingInputStream tracked = new TrackingInputStream(is);
+		return invoke(new Operation<String>("CREATE", false) {
+			@Override
+			public boolean isReplayable() {
+				return !tracked.touched;
+			}
+
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.create(path, tracked, length);
+			}
+		});
+	}
+
+	@Override
+	public String create(final String path, InputStream is, final long length, final CreateOptions options) throws MalformedURLException, IOException, AuthenticationException {
+		final TrackingInputStream tracked = new TrackingInputStream(is);
+		return invoke(new Operation<String>("CREATE", false) {
+			@Override
+			public boolean isReplayable() {
+				return !tracked.touched;
+			}
+
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.create(path, tracked, length, options);
+			}
+		});
+	}
+
+	@Override
+	public String mkdirs(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("MKDIRS", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.mkdirs(path);
+			}
+		});
+	}
+
+	@Override
+	public String mkdirs(final String path, final int permission) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("MKDIRS", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.mkdirs(path, permission);
+			}
+		});
+	}
+
+	@Override
+	public String createSymLink(final String srcPath, final String destPath) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("CREATESYMLINK", false) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.createSymLink(srcPath, destPath);
+			}
+		});
+	}
+
+	@Override
+	public String rename(final String srcPath, final String destPath) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("RENAME", false) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.rename(srcPath, destPath);
+			}
+		});
+	}
+
+	@Override
+	public String setPermission(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("SETPERMISSION", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.setPermission(path);
+			}
+		});
+	}
+
+	@Override
+	public String setPermission(final String path, final int permission) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("SETPERMISSION", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.setPermission(path, permission);
+			}
+		});
+	}
+
+	@Override
+	public String setOwner(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("SETOWNER", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.setOwner(path);
+			}
+		});
+	}
+
+	@Override
+	public String setOwner(final String path, final String owner, final String group) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("SETOWNER", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.setOwner(path, owner, group);
+			}
+		});
+	}
+
+	@Override
+	public String setReplication(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("SETREPLICATION", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.setReplication(path);
+			}
+		});
+	}
+
+	@Override
+	public String setReplication(final String path, final short replication) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("SETREPLICATION", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.setReplication(path, replication);
+			}
+		});
+	}
+
+	@Override
+	public String setTimes(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("SETTIMES", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.setTimes(path);
+			}
+		});
+	}
+
+	@Override
+	public String setTimes(final String path, final long modificationTime, final long accessTime) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("SETTIMES", true) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.setTimes(path, modificationTime, accessTime);
+			}
+		});
+	}
+
+	@Override
+	public long renewDelegationToken(final String token) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<Long>("RENEWDELEGATIONTOKEN", true) {
+			@Override
+			public Long call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.renewDelegationToken(token);
+			}
+		});
+	}
+
+	@Override
+	public void cancelDelegationToken(final String token) throws MalformedURLException, IOException, AuthenticationException {
+		invoke(new Operation<Void>("CANCELDELEGATIONTOKEN", true) {
+			@Override
+			public Void call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				connection.cancelDelegationToken(token);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public String append(final String path, InputStream is) throws MalformedURLException, IOException, AuthenticationException {
+		final TrackingInputStream tracked = new TrackingInputStream(is);
+		return invoke(new Operation<String>("APPEND", false) {
+			@Override
+			public boolean isReplayable() {
+				return !tracked.touched;
+			}
+
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.append(path, tracked);
+			}
+		});
+	}
+
+	@Override
+	public String append(final String path, InputStream is, final long length) throws MalformedURLException, IOException, AuthenticationException {
+		final TrackingInputStream tracked = new TrackingInputStream(is);
+		return invoke(new Operation<String>("APPEND", false) {
+			@Override
+			public boolean isReplayable() {
+				return !tracked.touched;
+			}
+
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.append(path, tracked, length);
+			}
+		});
+	}
+
+	@Override
+	public String concat(final String path, final String... sources) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("CONCAT", false) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.concat(path, sources);
+			}
+		});
+	}
+
+	@Override
+	public String delete(final String path) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("DELETE", false) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.delete(path);
+			}
+		});
+	}
+
+	@Override
+	public String delete(final String path, final boolean recursive) throws MalformedURLException, IOException, AuthenticationException {
+		return invoke(new Operation<String>("DELETE", false) {
+			@Override
+			public String call(WebHDFSConnection connection) throws IOException, AuthenticationException {
+				return connection.delete(path, recursive);
+			}
+		});
+	}
+
+	/*
+	 * Records whether any byte was read from the caller's stream.
+	 */
+	private static class TrackingInputStream extends FilterInputStream {
+		volatile boolean touched;
+
+		TrackingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			touched = true;
+			return in.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			touched = true;
+			return in.read(b, off, len);
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			touched = true;
+			return in.skip(n);
+		}
+	}
+
+	/*
+	 * Records whether any byte was written to the caller's stream.
+	 */
+	private static class TrackingOutputStream extends FilterOutputStream {
+		volatile boolean touched;
+
+		TrackingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			touched = true;
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			touched = true;
+			out.write(b, off, len);
+		}
+	}
+
+	/*
+	 * Records whether any byte was written to the caller's channel.
+	 */
+	private static class TrackingChannel implements WritableByteChannel {
+		private final WritableByteChannel channel;
+		volatile boolean touched;
+
+		TrackingChannel(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			touched = true;
+			return channel.write(src);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
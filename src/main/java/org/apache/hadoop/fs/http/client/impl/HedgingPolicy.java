@@ -0,0 +1,246 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * When a {@link HedgingWebHDFSConnection} sends a duplicate of a slow
+ * request.
+ * <p>
+ * The latencies of the last {@link #WINDOW} requests of each operation are
+ * kept, and a request still running past the {@link #getPercentile()}
+ * percentile of them is hedged, never sooner than {@link #getMinDelay()}.
+ * Operations are not hedged until {@link #getMinSamples()} latencies were
+ * measured. Hedges are bounded by a budget shared by every connection using
+ * the policy, each request adding {@link #getBudgetRatio()} of a hedge to it
+ * up to {@link #getBudgetCapacity()}, so that they do not double the load of
+ * a server slowing down for good.
+ */
+public class HedgingPolicy {
+
+	/** The number of latencies kept per operation */
+	public static final int WINDOW = 256;
+
+	/** The default percentile of the latencies past which a request is hedged */
+	public static final double DEFAULT_PERCENTILE = 95.0;
+
+	/** The default minimum delay, in milliseconds, before hedging a request */
+	public static final long DEFAULT_MIN_DELAY = 10L;
+
+	/** The default number of latencies measured before hedging an operation */
+	public static final int DEFAULT_MIN_SAMPLES = 20;
+
+	/** The default share of a hedge each request adds to the budget */
+	public static final double DEFAULT_BUDGET_RATIO = 0.05;
+
+	/** The default number of hedges the budget holds at most, and starts with */
+	public static final int DEFAULT_BUDGET_CAPACITY = 10;
+
+	/** The operations hedged by default */
+	public static final Set<String> DEFAULT_OPERATIONS = Collections.unmodifiableSet(
+			new HashSet<String>(Arrays.asList("OPEN", "GETFILESTATUS", "LISTSTATUS")));
+
+	/* the percentile is computed again every so many latencies */
+	private static final int REFRESH_EVERY = 16;
+
+	private final ConcurrentMap<String, Latencies> latencies = new ConcurrentHashMap<String, Latencies>();
+	private final Budget budget = new Budget(DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_CAPACITY);
+	private final AtomicLong wins = new AtomicLong();
+
+	private volatile Set<String> operations = DEFAULT_OPERATIONS;
+	private volatile double percentile = DEFAULT_PERCENTILE;
+	private volatile long minDelay = DEFAULT_MIN_DELAY;
+	private volatile int minSamples = DEFAULT_MIN_SAMPLES;
+
+	/**
+	 * @param operation
+	 * 			the WebHDFS operation, e.g. <code>OPEN</code>
+	 * @return whether requests of the operation are hedged
+	 */
+	public boolean isHedged(String operation) {
+		return operations.contains(operation);
+	}
+
+	/**
+	 * @param operation
+	 * 			the WebHDFS operation
+	 * @return the time to wait for a request of the operation before
+	 * 			hedging it, in milliseconds, or -1 if too few of its latencies
+	 * 			were measured yet
+	 */
+	public long getDelay(String operation) {
+		Latencies window = latencies.get(operation);
+		if (window == null) {
+			return -1L;
+		}
+		long delay = window.getPercentile(minSamples);
+		return delay < 0 ? -1L : Math.max(TimeUnit.NANOSECONDS.toMillis(delay), minDelay);
+	}
+
+	/**
+	 * Records the latency of a request
+	 *
+	 * @param operation
+	 * 			the WebHDFS operation
+	 * @param nanos
+	 * 			the latency, in nanoseconds
+	 */
+	public void record(String operation, long nanos) {
+		Latencies window = latencies.get(operation);
+		if (window == null) {
+			Latencies created = new Latencies();
+			window = latencies.putIfAbsent(operation, created);
+			if (window == null) {
+				window = created;
+			}
+		}
+		window.add(nanos);
+	}
+
+	/**
+	 * @return the number of hedges sent so far
+	 */
+	public long getHedgeCount() {
+		return budget.getGrantedCount();
+	}
+
+	/**
+	 * @return the number of hedges not sent for lack of budget
+	 */
+	public long getExhaustedCount() {
+		return budget.getRefusedCount();
+	}
+
+	/**
+	 * @return the number of hedges which answered before the request they duplicated
+	 */
+	public long getWinCount() {
+		return wins.get();
+	}
+
+	public Set<String> getOperations() {
+		return operations;
+	}
+
+	/**
+	 * Sets the operations to hedge, among those which change nothing on
+	 * the server
+	 *
+	 * @param operations
+	 * 			the WebHDFS operations, e.g. <code>OPEN</code>
+	 */
+	public void setOperations(Set<String> operations) {
+		this.operations = Collections.unmodifiableSet(new HashSet<String>(operations));
+	}
+
+	public double getPercentile() {
+		return percentile;
+	}
+
+	public void setPercentile(double percentile) {
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Property <percentile> must be in ]0, 100]");
+		}
+		this.percentile = percentile;
+		for (Latencies window : latencies.values()) {
+			window.invalidate();
+		}
+	}
+
+	public long getMinDelay() {
+		return minDelay;
+	}
+
+	public void setMinDelay(long minDelay) {
+		this.minDelay = minDelay;
+	}
+
+	public int getMinSamples() {
+		return minSamples;
+	}
+
+	public void setMinSamples(int minSamples) {
+		if (minSamples < 1 || minSamples > WINDOW) {
+			throw new IllegalArgumentException("Property <minSamples> must be in [1, " + WINDOW + "]");
+		}
+		this.minSamples = minSamples;
+	}
+
+	public double getBudgetRatio() {
+		return budget.getRatio();
+	}
+
+	public void setBudgetRatio(double budgetRatio) {
+		budget.setRatio(budgetRatio);
+	}
+
+	public int getBudgetCapacity() {
+		return budget.getCapacity();
+	}
+
+	/**
+	 * Sets the number of hedges the budget holds at most, refilling it
+	 *
+	 * @param budgetCapacity
+	 */
+	public void setBudgetCapacity(int budgetCapacity) {
+		budget.setCapacity(budgetCapacity);
+	}
+
+	void deposit() {
+		budget.deposit();
+	}
+
+	boolean withdraw() {
+		return budget.withdraw();
+	}
+
+	void won() {
+		wins.incrementAndGet();
+	}
+
+	/*
+	 * The last latencies of an operation, in a ring, with their percentile
+	 * computed again every few additions rather than on every request.
+	 */
+	private class Latencies {
+		private final long[] ring = new long[WINDOW];
+		private int count;
+		private int next;
+		private int sinceRefresh;
+		private long cached = -1L;
+
+		synchronized void add(long nanos) {
+			ring[next] = nanos;
+			next = (next + 1) % WINDOW;
+			if (count < WINDOW) {
+				count++;
+			}
+			sinceRefresh++;
+		}
+
+		synchronized void invalidate() {
+			cached = -1L;
+		}
+
+		synchronized long getPercentile(int minSamples) {
+			if (count < minSamples) {
+				return -1L;
+			}
+			if (cached < 0 || sinceRefresh >= REFRESH_EVERY) {
+				long[] sorted = Arrays.copyOf(ring, count);
+				Arrays.sort(sorted);
+				int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+				cached = sorted[Math.max(0, Math.min(rank, count - 1))];
+				sinceRefresh = 0;
+			}
+			return cached;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Sends a duplicate of the read requests still running past the delay its
+ * {@link HedgingPolicy} derives from their usual latency, and returns
+ * whichever answers first.
+ * <p>
+ * Only pure operations the policy names are hedged, e.g. <code>OPEN</code>
+ * returning a stream of the file, <code>GETFILESTATUS</code> and
+ * <code>LISTSTATUS</code>. Wrapping a {@link FailoverWebHDFSConnection}, the
+ * duplicate goes to the next endpoint; <code>OPEN</code> may also be
+ * redirected to another datanode. A duplicate not started yet when the
+ * first answer comes is cancelled; one already running is left to finish
+ * and its result, if a stream, closed.
+ * <p>
+ * Until the policy has measured enough latencies of an operation, its
+ * requests run on the calling thread; hedged ones run on the executor.
+ */
+public class HedgingWebHDFSConnection extends ForwardingWebHDFSConnection {
+
+	private static final Logger logger = LoggerFactory.getLogger(HedgingWebHDFSConnection.class);
+
+	private static final ExecutorService sharedExecutor = Executors.newCachedThreadPool(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-hedge-%d").build());
+
+	private final WebHDFSConnection connection;
+	private final HedgingPolicy policy;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a new HedgingWebHDFSConnection instance running the requests
+	 * on a JVM-wide pool of daemon threads.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param policy
+	 * 			when to hedge them
+	 */
+	public HedgingWebHDFSConnection(WebHDFSConnection connection, HedgingPolicy policy) {
+		this(connection, policy, sharedExecutor);
+	}
+
+	/**
+	 * Creates a new HedgingWebHDFSConnection instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param policy
+	 * 			when to hedge them
+	 * @param executor
+	 * 			runs the requests and their duplicates; it must not queue
+	 * 			them, or the duplicates would wait for the slow requests
+	 */
+	public HedgingWebHDFSConnection(WebHDFSConnection connection, HedgingPolicy policy, ExecutorService executor) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(policy, "Property <policy> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		this.connection = connection;
+		this.policy = policy;
+		this.executor = executor;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	public HedgingPolicy getPolicy() {
+		return policy;
+	}
+
+	@Override
+	protected <T> T invoke(Operation<T> operation) throws IOException, AuthenticationException {
+		if (!operation.isPure() || !policy.isHedged(operation.getName())) {
+			return operation.call(connection);
+		}
+
+		policy.deposit();
+		long delay = policy.getDelay(operation.getName());
+		if (delay < 0) {
+			// still learning the latencies
+			long start = System.nanoTime();
+			T value = operation.call(connection);
+			policy.record(operation.getName(), System.nanoTime() - start);
+			return value;
+		}
+
+		SettableFuture<T> result = SettableFuture.create();
+		AtomicInteger running = new AtomicInteger(1);
+		AtomicBoolean settled = new AtomicBoolean();
+		Future<?> first = executor.submit(new Attempt<T>(operation, result, running, settled, false));
+		Future<?> hedge = null;
+		try {
+			try {
+				return result.get(delay, TimeUnit.MILLISECONDS);
+			}
+			catch(TimeoutException e) {
+				// slower than usual
+			}
+
+			if (!result.isDone() && policy.withdraw()) {
+				logger.debug("Hedging " + operation + " after " + delay + " ms");
+				running.incrementAndGet();
+				hedge = executor.submit(new Attempt<T>(operation, result, running, settled, true));
+			}
+			return result.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			// whichever attempt answers closes its result
+			result.cancel(false);
+			throw new InterruptedIOException("Interrupted while waiting for " + operation);
+		}
+		catch(ExecutionException e) {
+			throw rethrow(e.getCause());
+		}
+		finally {
+			first.cancel(false);
+			if (hedge != null) {
+				hedge.cancel(false);
+			}
+		}
+	}
+
+	private static IOException rethrow(Throwable t) throws AuthenticationException {
+		if (t instanceof IOException) {
+			return (IOException) t;
+		}
+		if (t instanceof AuthenticationException) {
+			throw (AuthenticationException) t;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new IOException(t);
+	}
+
+	/*
+	 * One of the copies of a request, settling the result unless the other
+	 * copy did already, in which case its own result is thrown away.
+	 */
+	private class Attempt<T> implements Runnable {
+		private final Operation<T> operation;
+		private final SettableFuture<T> result;
+		private final AtomicInteger running;
+		private final AtomicBoolean settled;
+		private final boolean hedge;
+
+		Attempt(Operation<T> operation, SettableFuture<T> result, AtomicInteger running, AtomicBoolean settled,
+				boolean hedge) {
+			this.operation = operation;
+			this.result = result;
+			this.running = running;
+			this.settled = settled;
+			this.hedge = hedge;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			try {
+				T value = operation.call(connection);
+				policy.record(operation.getName(), System.nanoTime() - start);
+				// counted before the caller can see the result
+				boolean first = settled.compareAndSet(false, true);
+				if (first && hedge) {
+					policy.won();
+				}
+				if (!first || !result.set(value)) {
+					if (value instanceof Closeable) {
+						Closeables.closeQuietly((Closeable) value);
+					}
+				}
+			}
+			catch(Throwable t) {
+				// the request fails once every copy failed
+				if (running.decrementAndGet() == 0) {
+					result.setException(t);
+				}
+			}
+		}
+	}
+}
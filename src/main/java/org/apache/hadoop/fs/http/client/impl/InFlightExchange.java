@@ -0,0 +1,77 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+
+/**
+ * The HTTP exchange a task running on a worker thread is blocked in, so that
+ * whoever gives up on the task can abort it: neither interrupting the thread
+ * nor cancelling its future unblocks a socket read.
+ * <p>
+ * The task {@link #attach()}es the instance to its thread while it runs, and
+ * the {@link AbstractWebHDFSConnection}s it calls record each connection they
+ * open. Once {@link #abort()}ed, the exchange in flight is closed and any
+ * later request of the task fails straight away.
+ */
+final class InFlightExchange {
+
+	private static final ThreadLocal<InFlightExchange> current = new ThreadLocal<InFlightExchange>();
+
+	private HttpURLConnection conn;
+	private HttpTransport transport;
+	private boolean aborted;
+	private boolean done;
+
+	/*
+	 * Makes this instance the one of the calling thread, until detach().
+	 */
+	void attach() {
+		current.set(this);
+	}
+
+	/*
+	 * Called by the task once it returned, so that abort() no longer touches
+	 * the connections it released.
+	 */
+	synchronized void detach() {
+		current.remove();
+		conn = null;
+		transport = null;
+		done = true;
+	}
+
+	/*
+	 * Closes the exchange in flight, if any, and fails the following ones.
+	 */
+	synchronized void abort() {
+		if (done || aborted) {
+			return;
+		}
+		aborted = true;
+		if (conn != null) {
+			transport.abort(conn);
+			conn = null;
+			transport = null;
+		}
+	}
+
+	/*
+	 * Records a connection just opened by the calling thread.
+	 */
+	static void opened(HttpURLConnection conn, HttpTransport transport) throws InterruptedIOException {
+		InFlightExchange exchange = current.get();
+		if (exchange == null) {
+			return;
+		}
+		synchronized (exchange) {
+			if (exchange.aborted) {
+				transport.abort(conn);
+				throw new InterruptedIOException("Request aborted");
+			}
+			exchange.conn = conn;
+			exchange.transport = transport;
+		}
+	}
+}
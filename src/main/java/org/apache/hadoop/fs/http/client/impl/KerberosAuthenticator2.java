@@ -30,7 +30,6 @@ import javax.security.auth.callback.PasswordCallback;
 import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.login.AppConfigurationEntry;
 import javax.security.auth.login.Configuration;
-import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 
 import org.apache.commons.codec.binary.Base64;
@@ -141,6 +140,7 @@ class KerberosAuthenticator2 implements Authenticator {
 	
 	private String username;
 	private String password;
+	private KerberosLoginCache loginCache = KerberosLoginCache.getSharedInstance();
 	
 	public KerberosAuthenticator2(String username, String password) {
 		super();
@@ -235,15 +235,7 @@ class KerberosAuthenticator2 implements Authenticator {
 			}
 */
 			
-			LoginContext loginContext = new LoginContext("", null,
-					new KerberosClientCallbackHandler(username, password),
-					new LoginConfig(this.debug));
-			loginContext.login();
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("Kerberos authenticated user: "
-						+ loginContext.getSubject());
-			}
-			Subject subject = loginContext.getSubject();
+			Subject subject = loginCache.getSubject(username, password, this.debug);
 			
 			Subject.doAs(subject, new PrivilegedExceptionAction<Void>() {
 
@@ -338,7 +330,11 @@ class KerberosAuthenticator2 implements Authenticator {
 		this.debug = debug;
 	}
 
-	private static class LoginConfig extends Configuration {
+	void setLoginCache(KerberosLoginCache loginCache) {
+		this.loginCache = loginCache;
+	}
+
+	static class LoginConfig extends Configuration {
 		private boolean debug;
 
 		public LoginConfig(boolean debug) {
@@ -362,7 +358,7 @@ class KerberosAuthenticator2 implements Authenticator {
 
 	}
 
-	private static class KerberosClientCallbackHandler implements
+	static class KerberosClientCallbackHandler implements
 			CallbackHandler {
 		private String username;
 		private String password;
@@ -0,0 +1,310 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Keeps the Kerberos {@link Subject} of every principal logged in, so that
+ * SPNEGO authentications run the GSS exchange against cached credentials
+ * instead of logging in to the KDC each time.
+ * <p>
+ * A principal is logged in again in the background once
+ * {@link #RENEW_AT} of its ticket granting ticket lifetime has elapsed,
+ * provided it was used since its last login; principals left unused are
+ * logged out instead. A principal whose TGT expired anyway is logged in
+ * again by the next thread asking for it, the other threads asking for the
+ * same principal waiting for that login.
+ * <p>
+ * Logins are kept per principal and password, so that a caller only ever
+ * gets the subject its own password logged in.
+ */
+public class KerberosLoginCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(KerberosLoginCache.class);
+
+	/** The fraction of the TGT lifetime after which the principal is logged in again */
+	public static final double RENEW_AT = 0.8;
+
+	/* TGTs with less time left than this are not handed out */
+	private static final long MIN_REMAINING_LIFETIME = 60 * 1000L;
+
+	private static KerberosLoginCache sharedInstance;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-kerberos-renewal-%d").build());
+
+	private final AtomicLong logins = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong renewals = new AtomicLong();
+
+	/**
+	 * @return the cache shared by every Kerberos connection
+	 */
+	public static synchronized KerberosLoginCache getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new KerberosLoginCache();
+		}
+		return sharedInstance;
+	}
+
+	/**
+	 * Returns the subject of {@code principal}, logging in to the KDC only
+	 * if it is not logged in yet or its TGT is about to expire
+	 *
+	 * @param principal
+	 * @param password
+	 * @param debug
+	 * 			whether the login module logs the login
+	 * @return the logged in subject
+	 * @throws LoginException
+	 */
+	Subject getSubject(String principal, String password, boolean debug) throws LoginException {
+		String key = key(principal, password);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			Entry created = new Entry(key, principal, password, debug);
+			entry = entries.putIfAbsent(key, created);
+			if (entry == null) {
+				entry = created;
+			}
+		}
+		entry.uses.incrementAndGet();
+
+		Login login = entry.login;
+		if (login != null && login.isUsable(System.currentTimeMillis())) {
+			hits.incrementAndGet();
+			return login.subject;
+		}
+
+		synchronized (entry) {
+			login = entry.login;
+			if (login != null && login.isUsable(System.currentTimeMillis())) {
+				hits.incrementAndGet();
+				return login.subject;
+			}
+			try {
+				return login(entry).subject;
+			}
+			catch(LoginException e) {
+				if (entry.login == null) {
+					// never logged in, e.g. a wrong password
+					entries.remove(key, entry);
+				}
+				throw e;
+			}
+		}
+	}
+
+	/*
+	 * Keys the entries by principal and a digest of the password, so that
+	 * the password itself is not kept as a key.
+	 */
+	private static String key(String principal, String password) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest((password == null ? "" : password).getBytes("UTF-8"));
+			StringBuilder key = new StringBuilder(principal.length() + 1 + hash.length * 2).append(principal).append(':');
+			for (byte b : hash) {
+				key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return key.toString();
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+		catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 not supported", e);
+		}
+	}
+
+	/**
+	 * @return the number of logins to the KDC, renewals included
+	 */
+	public long getLoginCount() {
+		return logins.get();
+	}
+
+	/**
+	 * @return the number of subjects handed out without logging in
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of logins done in the background before the TGT expired
+	 */
+	public long getRenewalCount() {
+		return renewals.get();
+	}
+
+	/**
+	 * Logs out every principal and stops renewing TGTs
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
+		for (Entry entry : entries.values()) {
+			synchronized (entry) {
+				logout(entry);
+			}
+		}
+		entries.clear();
+	}
+
+	/**
+	 * Creates the context logging {@code principal} in
+	 */
+	protected LoginContext createLoginContext(String principal, String password, boolean debug) throws LoginException {
+		return new LoginContext("", null,
+				new KerberosAuthenticator2.KerberosClientCallbackHandler(principal, password),
+				new KerberosAuthenticator2.LoginConfig(debug));
+	}
+
+	/*
+	 * Logs the principal of the entry in, replacing its previous login.
+	 * Callers hold the lock of the entry.
+	 */
+	private Login login(Entry entry) throws LoginException {
+		LoginContext context = createLoginContext(entry.principal, entry.password, entry.debug);
+		context.login();
+		logins.incrementAndGet();
+
+		// the previous login is left alone, other threads may still be using it
+		Login login = new Login(context, entry.uses.get());
+		entry.login = login;
+		if (logger.isDebugEnabled()) {
+			logger.debug("Kerberos authenticated user: " + login.subject);
+		}
+
+		if (login.renewAt > 0) {
+			scheduleRenewal(entry, login);
+		}
+		return login;
+	}
+
+	private void logout(Entry entry) {
+		Login login = entry.login;
+		entry.login = null;
+		if (login != null) {
+			try {
+				login.context.logout();
+			}
+			catch(LoginException e) {
+				logger.debug("Failed to log " + entry.principal + " out", e);
+			}
+		}
+	}
+
+	private void scheduleRenewal(final Entry entry, final Login login) {
+		try {
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (entry) {
+						if (entry.login != login) {
+							// logged in again meanwhile
+							return;
+						}
+						if (entry.uses.get() == login.usesAtLogin) {
+							logger.debug("Logging out unused principal " + entry.principal);
+							logout(entry);
+							entries.remove(entry.key, entry);
+							return;
+						}
+						try {
+							login(entry);
+							renewals.incrementAndGet();
+						}
+						catch(LoginException e) {
+							// the next caller logs in again once the TGT expired
+							logger.warn("Failed to renew TGT of " + entry.principal, e);
+						}
+					}
+				}
+			}, Math.max(login.renewAt - System.currentTimeMillis(), 0L), TimeUnit.MILLISECONDS);
+		}
+		catch(RejectedExecutionException e) {
+			logger.debug("Not renewing TGT of " + entry.principal + ", cache shut down");
+		}
+	}
+
+	/*
+	 * A login, with when its TGT is due for renewal and when it expires.
+	 */
+	private static class Login {
+		final LoginContext context;
+		final Subject subject;
+		final long usesAtLogin;
+		final long renewAt;
+		final long expires;
+
+		Login(LoginContext context, long usesAtLogin) {
+			this.context = context;
+			this.subject = context.getSubject();
+			this.usesAtLogin = usesAtLogin;
+
+			KerberosTicket tgt = findTgt(subject);
+			if (tgt == null) {
+				// nothing to renew, keep the login until the server rejects it
+				this.renewAt = 0L;
+				this.expires = 0L;
+			} else {
+				long start = tgt.getStartTime() != null ? tgt.getStartTime().getTime() : System.currentTimeMillis();
+				Date end = tgt.getEndTime();
+				this.expires = end.getTime();
+				this.renewAt = start + (long) ((expires - start) * RENEW_AT);
+			}
+		}
+
+		boolean isUsable(long now) {
+			return expires <= 0 || now < expires - MIN_REMAINING_LIFETIME;
+		}
+
+		private static KerberosTicket findTgt(Subject subject) {
+			for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+				KerberosPrincipal server = ticket.getServer();
+				if (server != null && server.getName().startsWith("krbtgt/")) {
+					return ticket;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static class Entry {
+		final String key;
+		final String principal;
+		final boolean debug;
+		final String password;
+		volatile Login login;
+		final AtomicLong uses = new AtomicLong();
+
+		Entry(String key, String principal, String password, boolean debug) {
+			this.key = key;
+			this.principal = principal;
+			this.password = password;
+			this.debug = debug;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.fs.http.client.LimitExceededException;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+/**
+ * Holds back the requests of a {@link WebHDFSConnection} beyond the number
+ * its {@link ConcurrencyLimiter} learned the server sustains, failing them
+ * with a {@link LimitExceededException} once too many are waiting.
+ * <p>
+ * Every request counts as in flight until it returns; a stream returned by
+ * <code>OPEN</code> is not counted while read. The latencies of the
+ * operations transferring file data, listing a directory or summing up a
+ * tree tell more about their size than about the server's load, so they do
+ * not move the limit, unless they fail as overloaded. The latencies of the
+ * others are only compared with those of the same operation. Wrapping the
+ * connections of every user in the same limiter bounds the load the client
+ * puts on the server as a whole.
+ */
+public class LimitingWebHDFSConnection extends ForwardingWebHDFSConnection {
+
+	/* operations whose latency depends on the amount of data */
+	private static final Set<String> UNSAMPLED = Collections.unmodifiableSet(
+			new HashSet<String>(Arrays.asList("OPEN", "CREATE", "APPEND", "LISTSTATUS", "GETCONTENTSUMMARY")));
+
+	private final WebHDFSConnection connection;
+	private final ConcurrencyLimiter limiter;
+
+	/**
+	 * Creates a new LimitingWebHDFSConnection instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param limiter
+	 * 			how many of them to send at once
+	 */
+	public LimitingWebHDFSConnection(WebHDFSConnection connection, ConcurrencyLimiter limiter) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(limiter, "Property <limiter> must not be null");
+		this.connection = connection;
+		this.limiter = limiter;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	public ConcurrencyLimiter getLimiter() {
+		return limiter;
+	}
+
+	@Override
+	protected <T> T invoke(Operation<T> operation) throws IOException, AuthenticationException {
+		int inFlight = limiter.acquire();
+		long start = System.nanoTime();
+		Failure failure = null;
+		try {
+			T result = operation.call(connection);
+			failure = Failure.ofResult(result);
+			return result;
+		}
+		catch(IOException e) {
+			failure = Failure.of(e);
+			throw e;
+		}
+		catch(AuthenticationException e) {
+			failure = Failure.of(e);
+			throw e;
+		}
+		finally {
+			boolean overloaded = failure == Failure.UNSENT || failure == Failure.LOST;
+			boolean sampled = failure == Failure.NONE && !UNSAMPLED.contains(operation.getName());
+			limiter.release(operation.getName(), sampled ? System.nanoTime() - start : -1L, overloaded, inFlight);
+		}
+	}
+}
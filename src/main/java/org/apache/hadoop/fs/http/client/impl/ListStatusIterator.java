@@ -0,0 +1,190 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.fs.http.client.FileStatusIterator;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * {@link FileStatusIterator} over either the pages of LISTSTATUS_BATCH, each
+ * fetched once the previous one is exhausted, or the <code>FileStatus</code>
+ * array of a single LISTSTATUS response, parsed one entry at a time while the
+ * response is still being received.
+ */
+class ListStatusIterator implements FileStatusIterator {
+
+	private final AbstractWebHDFSConnection connection;
+	private final String path;
+
+	// LISTSTATUS_BATCH
+	private Iterator<FileStatus> page;
+	private String startAfter;
+	private long remainingEntries;
+
+	// LISTSTATUS
+	private HttpURLConnection conn;
+	private JsonReader reader;
+
+	private FileStatus next;
+	private boolean done;
+
+	/**
+	 * Creates an iterator continuing from the first LISTSTATUS_BATCH page
+	 */
+	ListStatusIterator(AbstractWebHDFSConnection connection, String path, DirectoryListing firstPage) {
+		this.connection = connection;
+		this.path = path;
+		setPage(firstPage);
+	}
+
+	/**
+	 * Creates an iterator reading the <code>FileStatus</code> array of an
+	 * unconnected LISTSTATUS request
+	 */
+	ListStatusIterator(AbstractWebHDFSConnection connection, String path, HttpURLConnection conn) throws IOException {
+		this.connection = connection;
+		this.path = path;
+		this.conn = conn;
+
+		try {
+			conn.connect();
+			AbstractWebHDFSConnection.checkResponse(conn);
+
+			reader = new JsonReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
+			reader.beginObject();
+			enterMember("FileStatuses");
+			reader.beginObject();
+			enterMember("FileStatus");
+			reader.beginArray();
+		}
+		catch(IOException e) {
+			abort();
+			throw e;
+		}
+		catch(RuntimeException e) {
+			abort();
+			throw new IOException("Malformed LISTSTATUS response", e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() throws IOException {
+		if (next == null && !done) {
+			next = fetch();
+			done = next == null;
+		}
+		return next != null;
+	}
+
+	@Override
+	public FileStatus next() throws IOException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		FileStatus status = next;
+		next = null;
+		return status;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (reader != null && !done) {
+			abort();
+		}
+		done = true;
+	}
+
+	private FileStatus fetch() throws IOException {
+		if (reader != null) {
+			return fetchStreamed();
+		}
+
+		while (!page.hasNext() && remainingEntries > 0) {
+			try {
+				setPage(connection.listStatusBatch(path, startAfter));
+			}
+			catch(AuthenticationException e) {
+				throw new IOException(e);
+			}
+		}
+		if (!page.hasNext()) {
+			return null;
+		}
+
+		FileStatus status = page.next();
+		startAfter = status.getPathSuffix();
+		return status;
+	}
+
+	private FileStatus fetchStreamed() throws IOException {
+		try {
+			if (reader.hasNext()) {
+				return FileStatus.read(reader);
+			}
+
+			reader.endArray();
+			skipRemainingMembers();
+			reader.endObject();
+			skipRemainingMembers();
+			reader.endObject();
+			reader.close();
+		}
+		catch(IOException e) {
+			abort();
+			throw e;
+		}
+		catch(RuntimeException e) {
+			// e.g. an unexpected token or an unknown file type
+			abort();
+			throw new IOException("Malformed LISTSTATUS response", e);
+		}
+
+		connection.transport.release(conn);
+		reader = null;
+		return null;
+	}
+
+	private void setPage(DirectoryListing listing) {
+		List<FileStatus> statuses = listing.getFileStatuses();
+		page = statuses.iterator();
+		remainingEntries = statuses.isEmpty() ? 0L : listing.getRemainingEntries();
+	}
+
+	/*
+	 * Moves the reader to the value of the named member of the object it is
+	 * in, skipping the members in front of it.
+	 */
+	private void enterMember(String member) throws IOException {
+		while (reader.hasNext()) {
+			if (member.equals(reader.nextName())) {
+				return;
+			}
+			reader.skipValue();
+		}
+		throw new IOException("Malformed LISTSTATUS response, missing member <" + member + ">");
+	}
+
+	private void skipRemainingMembers() throws IOException {
+		while (reader.hasNext()) {
+			reader.nextName();
+			reader.skipValue();
+		}
+	}
+
+	private void abort() {
+		connection.transport.abort(conn);
+		Closeables.closeQuietly(reader);
+		reader = null;
+		done = true;
+	}
+}
@@ -0,0 +1,96 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How a {@link FailoverWebHDFSConnection} orders its endpoints for each
+ * request, the first one being tried first and the others in turn if it
+ * fails.
+ */
+public enum LoadBalancingPolicy {
+
+	/** Each request starts with the next endpoint */
+	ROUND_ROBIN {
+		@Override
+		List<Endpoint> order(List<Endpoint> endpoints, int sequence) {
+			return rotate(endpoints, sequence);
+		}
+	},
+
+	/** Requests go to the endpoint with the fewest requests in flight */
+	LEAST_OUTSTANDING {
+		@Override
+		List<Endpoint> order(List<Endpoint> endpoints, int sequence) {
+			// rotated first so that ties are spread evenly
+			List<Endpoint> ordered = rotate(endpoints, sequence);
+			long[] keys = new long[ordered.size()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = ordered.get(i).getOutstanding();
+			}
+			return sort(ordered, keys);
+		}
+	},
+
+	/**
+	 * Requests go to the endpoint with the lowest average latency, weighted
+	 * by the requests in flight; endpoints not measured yet come first
+	 */
+	LATENCY_WEIGHTED {
+		@Override
+		List<Endpoint> order(List<Endpoint> endpoints, int sequence) {
+			List<Endpoint> ordered = rotate(endpoints, sequence);
+			long[] keys = new long[ordered.size()];
+			for (int i = 0; i < keys.length; i++) {
+				Endpoint endpoint = ordered.get(i);
+				keys[i] = endpoint.getLatency() * (endpoint.getOutstanding() + 1);
+			}
+			return sort(ordered, keys);
+		}
+	};
+
+	/**
+	 * Orders the endpoints for a request
+	 *
+	 * @param endpoints
+	 * 			the endpoints to order, left unchanged
+	 * @param sequence
+	 * 			the number of the request
+	 * @return a new list of the endpoints in the order to try them
+	 */
+	abstract List<Endpoint> order(List<Endpoint> endpoints, int sequence);
+
+	private static List<Endpoint> rotate(List<Endpoint> endpoints, int sequence) {
+		int size = endpoints.size();
+		List<Endpoint> rotated = new ArrayList<Endpoint>(size);
+		if (size == 0) {
+			return rotated;
+		}
+		int start = (sequence & Integer.MAX_VALUE) % size;
+		for (int i = 0; i < size; i++) {
+			rotated.add(endpoints.get((start + i) % size));
+		}
+		return rotated;
+	}
+
+	/*
+	 * Stable insertion sort of the endpoints by keys read once beforehand,
+	 * the load of the endpoints changing while they are sorted. There are
+	 * only a handful of endpoints.
+	 */
+	static List<Endpoint> sort(List<Endpoint> endpoints, long[] keys) {
+		for (int i = 1; i < keys.length; i++) {
+			long key = keys[i];
+			Endpoint endpoint = endpoints.get(i);
+			int j = i - 1;
+			while (j >= 0 && keys[j] > key) {
+				keys[j + 1] = keys[j];
+				endpoints.set(j + 1, endpoints.get(j));
+				j--;
+			}
+			keys[j + 1] = key;
+			endpoints.set(j + 1, endpoint);
+		}
+		return endpoints;
+	}
+}
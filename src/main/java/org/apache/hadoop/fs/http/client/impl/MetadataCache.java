@@ -0,0 +1,375 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps the file statuses and directory listings read through
+ * {@link CachingWebHDFSConnection}s, so that asking for the same path again
+ * within {@link #getTtl()} costs a map lookup rather than a round trip.
+ * <p>
+ * The cache holds at most {@link #getMaxSize()} entries, evicting the least
+ * recently used one beyond that. Paths found missing are kept for
+ * {@link #getNegativeTtl()}. Changing a path through any connection sharing
+ * the cache drops the entries of the path, of the paths below it and of
+ * the directories above it, whatever the user who read them; changes made
+ * by other clients show once the entries expire. A cache is meant for the
+ * connections to a single cluster.
+ * <p>
+ * The entries are indexed by path, so that a change only visits the entries
+ * it drops. A value read while a path it depends on changed is not kept;
+ * changes to unrelated paths do not prevent caching it.
+ */
+public class MetadataCache {
+
+	/** The default maximum number of entries */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/** The default time, in milliseconds, an entry is kept */
+	public static final long DEFAULT_TTL = 5 * 1000L;
+
+	/** The default time, in milliseconds, a missing path is remembered */
+	public static final long DEFAULT_NEGATIVE_TTL = 2 * 1000L;
+
+	/* the number of changed paths and directories remembered before forgetting them all */
+	private static final int MAX_CHANGES = 10000;
+
+	private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private final NavigableMap<String, Set<Key>> byPath = new TreeMap<String, Set<Key>>();
+
+	/* the generation of the last change of each path, and of the last change below each directory */
+	private final Map<String, Long> changedAt = new HashMap<String, Long>();
+	private final Map<String, Long> changedBelow = new HashMap<String, Long>();
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+	private long ttl = DEFAULT_TTL;
+	private long negativeTtl = DEFAULT_NEGATIVE_TTL;
+
+	private long generation;
+	/* the reads started before this generation are not kept, their changes being forgotten */
+	private long floor;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/**
+	 * @param scope
+	 * 			who read the entry, e.g. the user name
+	 * @param kind
+	 * 			what was read, e.g. the operation
+	 * @param path
+	 * 			the path
+	 * @param now
+	 * 			the current time, in milliseconds
+	 * @return the value read, or null if unknown or expired
+	 */
+	synchronized Object get(String scope, String kind, String path, long now) {
+		Key key = new Key(scope, kind, normalize(path));
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			if (now < entry.expires) {
+				hits++;
+				return entry.value;
+			}
+			remove(key);
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * @return the number of invalidations so far, to hand to
+	 * 			{@link #put(String, String, String, Object, boolean, long, long)}
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Keeps a value read, unless {@code path}, one of its ancestors or of the
+	 * paths below it was invalidated since the read started, in which case
+	 * the value may be stale already
+	 *
+	 * @param scope
+	 * @param kind
+	 * @param path
+	 * @param value
+	 * @param negative
+	 * 			whether the value tells the path is missing
+	 * @param generation
+	 * 			the generation when the read started
+	 * @param now
+	 * 			the current time, in milliseconds
+	 */
+	synchronized void put(String scope, String kind, String path, Object value, boolean negative, long generation,
+			long now) {
+		String normalized = normalize(path);
+		if (generation < floor || changedSince(normalized, generation)) {
+			return;
+		}
+		long expires = now + (negative ? negativeTtl : ttl);
+		Key key = new Key(scope, kind, normalized);
+		if (entries.put(key, new Entry(value, expires)) == null) {
+			Set<Key> keys = byPath.get(normalized);
+			if (keys == null) {
+				keys = new HashSet<Key>(4);
+				byPath.put(normalized, keys);
+			}
+			keys.add(key);
+		}
+
+		Iterator<Key> it = entries.keySet().iterator();
+		while (entries.size() > maxSize && it.hasNext()) {
+			Key eldest = it.next();
+			it.remove();
+			unindex(eldest);
+			evictions++;
+		}
+	}
+
+	/**
+	 * Drops the entries of {@code path}, of the paths below it and of the
+	 * directories above it
+	 *
+	 * @param path
+	 * 			the path changed
+	 */
+	synchronized void invalidate(String path) {
+		generation++;
+		invalidations++;
+		String changed = normalize(path);
+		if (changed.length() == 0) {
+			clear();
+			return;
+		}
+
+		for (String ancestor = changed; ; ancestor = parent(ancestor)) {
+			drop(byPath.remove(ancestor));
+			if (ancestor.length() == 0) {
+				break;
+			}
+		}
+		// '0' follows '/', so the range holds exactly the paths below
+		Map<String, Set<Key>> below = byPath.subMap(changed + "/", true, changed + "0", false);
+		for (Set<Key> keys : below.values()) {
+			drop(keys);
+		}
+		below.clear();
+
+		changedAt.put(changed, generation);
+		for (String ancestor = parent(changed); ; ancestor = parent(ancestor)) {
+			changedBelow.put(ancestor, generation);
+			if (ancestor.length() == 0) {
+				break;
+			}
+		}
+		if (changedAt.size() + changedBelow.size() > MAX_CHANGES) {
+			forget();
+		}
+	}
+
+	/**
+	 * Removes every entry
+	 */
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+		byPath.clear();
+		forget();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of reads answered from the cache
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of reads sent to the server
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries evicted for lack of room
+	 */
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of changes which dropped entries
+	 */
+	public synchronized long getInvalidationCount() {
+		return invalidations;
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Property <maxSize> must be positive");
+		}
+		this.maxSize = maxSize;
+	}
+
+	public synchronized long getTtl() {
+		return ttl;
+	}
+
+	public synchronized void setTtl(long ttl) {
+		if (ttl < 0) {
+			throw new IllegalArgumentException("Property <ttl> must not be negative");
+		}
+		this.ttl = ttl;
+	}
+
+	public synchronized long getNegativeTtl() {
+		return negativeTtl;
+	}
+
+	/**
+	 * Sets the time a missing path is remembered, 0 not remembering it
+	 *
+	 * @param negativeTtl
+	 */
+	public synchronized void setNegativeTtl(long negativeTtl) {
+		if (negativeTtl < 0) {
+			throw new IllegalArgumentException("Property <negativeTtl> must not be negative");
+		}
+		this.negativeTtl = negativeTtl;
+	}
+
+	/*
+	 * Drops the leading, trailing and doubled slashes, so that every
+	 * spelling of a path maps to the same entries.
+	 */
+	static String normalize(String path) {
+		if (path == null) {
+			return "";
+		}
+		StringBuilder sb = new StringBuilder(path.length());
+		for (String part : path.split("/")) {
+			if (part.length() > 0) {
+				if (sb.length() > 0) {
+					sb.append('/');
+				}
+				sb.append(part);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String parent(String path) {
+		int slash = path.lastIndexOf('/');
+		return slash < 0 ? "" : path.substring(0, slash);
+	}
+
+	/*
+	 * Tells whether a value of path read at the given generation may have
+	 * been changed since, through the path, an ancestor or a path below it.
+	 */
+	private boolean changedSince(String path, long generation) {
+		Long last = changedBelow.get(path);
+		if (last != null && last > generation) {
+			return true;
+		}
+		for (String ancestor = path; ; ancestor = parent(ancestor)) {
+			last = changedAt.get(ancestor);
+			if (last != null && last > generation) {
+				return true;
+			}
+			if (ancestor.length() == 0) {
+				return false;
+			}
+		}
+	}
+
+	/*
+	 * Drops the record of the changes so far, refusing instead the values of
+	 * the reads started before now.
+	 */
+	private void forget() {
+		changedAt.clear();
+		changedBelow.clear();
+		floor = generation;
+	}
+
+	private void drop(Set<Key> keys) {
+		if (keys != null) {
+			for (Key key : keys) {
+				entries.remove(key);
+			}
+		}
+	}
+
+	private void remove(Key key) {
+		entries.remove(key);
+		unindex(key);
+	}
+
+	private void unindex(Key key) {
+		Set<Key> keys = byPath.get(key.path);
+		if (keys != null && keys.remove(key) && keys.isEmpty()) {
+			byPath.remove(key.path);
+		}
+	}
+
+	private static final class Key {
+		private final String scope;
+		private final String kind;
+		private final String path;
+
+		Key(String scope, String kind, String path) {
+			this.scope = scope;
+			this.kind = kind;
+			this.path = path;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return path.equals(other.path) && kind.equals(other.kind)
+					&& (scope == null ? other.scope == null : scope.equals(other.scope));
+		}
+
+		@Override
+		public int hashCode() {
+			int h = path.hashCode();
+			h = 31 * h + kind.hashCode();
+			h = 31 * h + (scope == null ? 0 : scope.hashCode());
+			return h;
+		}
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long expires;
+
+		Entry(Object value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.model.ContentSummary;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileChecksum;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Reads the value of the single member wrapped by a WebHDFS JSON response,
+ * e.g. <code>{"FileStatus": {...}}</code>, straight off the response stream.
+ */
+abstract class ResponseHandler<T> {
+
+	static final ResponseHandler<FileStatus> FILE_STATUS = new ResponseHandler<FileStatus>("FileStatus") {
+		@Override
+		protected FileStatus readValue(JsonReader reader) throws IOException {
+			return FileStatus.read(reader);
+		}
+	};
+
+	static final ResponseHandler<DirectoryListing> FILE_STATUSES = new ResponseHandler<DirectoryListing>("FileStatuses") {
+		@Override
+		protected DirectoryListing readValue(JsonReader reader) throws IOException {
+			return DirectoryListing.read(reader);
+		}
+	};
+
+	static final ResponseHandler<DirectoryListing> DIRECTORY_LISTING = new ResponseHandler<DirectoryListing>("DirectoryListing") {
+		@Override
+		protected DirectoryListing readValue(JsonReader reader) throws IOException {
+			return DirectoryListing.readPartial(reader);
+		}
+	};
+
+	static final ResponseHandler<ContentSummary> CONTENT_SUMMARY = new ResponseHandler<ContentSummary>("ContentSummary") {
+		@Override
+		protected ContentSummary readValue(JsonReader reader) throws IOException {
+			return ContentSummary.read(reader);
+		}
+	};
+
+	static final ResponseHandler<FileChecksum> FILE_CHECKSUM = new ResponseHandler<FileChecksum>("FileChecksum") {
+		@Override
+		protected FileChecksum readValue(JsonReader reader) throws IOException {
+			return FileChecksum.read(reader);
+		}
+	};
+
+	static final ResponseHandler<Long> LONG = new ResponseHandler<Long>("long") {
+		@Override
+		protected Long readValue(JsonReader reader) throws IOException {
+			return reader.nextLong();
+		}
+	};
+
+	static final ResponseHandler<String> TOKEN = new ResponseHandler<String>("Token") {
+		@Override
+		protected String readValue(JsonReader reader) throws IOException {
+			String urlString = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if ("urlString".equals(reader.nextName())) {
+					urlString = reader.nextString();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			if (urlString == null) {
+				throw new IOException("Malformed response, missing member <urlString>");
+			}
+			return urlString;
+		}
+	};
+
+	private final String member;
+
+	ResponseHandler(String member) {
+		this.member = member;
+	}
+
+	/**
+	 * Reads the response object, skipping every member but the expected one
+	 *
+	 * @param reader
+	 * 			the {@link JsonReader} positioned at the start of the response
+	 * @return the value of the expected member
+	 * @throws IOException
+	 * 			if the response does not contain the expected member
+	 */
+	T handle(JsonReader reader) throws IOException {
+		T value = null;
+		boolean found = false;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (member.equals(reader.nextName())) {
+				value = readValue(reader);
+				found = true;
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (!found) {
+			throw new IOException("Malformed response, missing member <" + member + ">");
+		}
+		return value;
+	}
+
+	protected abstract T readValue(JsonReader reader) throws IOException;
+}
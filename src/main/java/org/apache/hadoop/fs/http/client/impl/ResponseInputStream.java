@@ -0,0 +1,122 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.fs.http.client.util.Streams;
+
+/**
+ * The body of a response handed to the caller. Closing it returns the
+ * connection to the {@link HttpTransport}: kept alive if the body was read
+ * to the end or only a little of it is left, dropped otherwise so the rest
+ * of it is not transferred.
+ * <p>
+ * A ranged read usually stops after exactly the bytes it asked for, without
+ * ever seeing the end of the stream; knowing the length of the body lets
+ * such a response keep its connection too.
+ */
+class ResponseInputStream extends FilterInputStream {
+
+	/*
+	 * Reading this much more is cheaper than a new connection
+	 */
+	static final long DRAIN_LIMIT = Streams.SIXTY_FOUR_K;
+
+	private final HttpURLConnection conn;
+	private final HttpTransport transport;
+	/* -1 when the response carries no Content-Length */
+	private final long length;
+	private long count;
+	private boolean eof;
+	private boolean closed;
+
+	ResponseInputStream(HttpURLConnection conn, HttpTransport transport) throws IOException {
+		super(conn.getInputStream());
+		this.conn = conn;
+		this.transport = transport;
+		this.length = contentLength(conn);
+	}
+
+	private static long contentLength(HttpURLConnection conn) {
+		String value = conn.getHeaderField("Content-Length");
+		if (value == null) {
+			return -1L;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch(NumberFormatException e) {
+			return -1L;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b == -1) {
+			eof = true;
+		} else {
+			count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n == -1) {
+			eof = true;
+		} else {
+			count += n;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	/*
+	 * Reads the rest of the body if it is known to be short, so that the
+	 * connection can be kept
+	 */
+	private boolean drain() {
+		if (length < 0 || length - count > DRAIN_LIMIT) {
+			return false;
+		}
+		try {
+			byte[] buffer = new byte[Streams.EIGHT_K];
+			while (count < length) {
+				if (read(buffer, 0, buffer.length) == -1) {
+					break;
+				}
+			}
+			return true;
+		}
+		catch(IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		if (eof || drain()) {
+			Closeables.closeQuietly(in);
+			transport.release(conn);
+		} else {
+			transport.abort(conn);
+			Closeables.closeQuietly(in);
+		}
+	}
+}
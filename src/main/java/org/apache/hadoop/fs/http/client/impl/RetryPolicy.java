@@ -0,0 +1,131 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.util.Random;
+
+/**
+ * How many times, and how long apart, a {@link RetryingWebHDFSConnection}
+ * sends a failed request again.
+ * <p>
+ * The delay before the n-th retry is drawn uniformly between 0 and
+ * <code>min(maxDelay, baseDelay * 2^(n-1))</code>, so that clients failing
+ * together do not retry together. Retries are further bounded by a budget
+ * shared by every connection using the policy: each request adds
+ * {@link #getBudgetRatio()} of a retry to it, up to
+ * {@link #getBudgetCapacity()} retries, and each retry takes one. A server
+ * failing every request then sees at most that ratio of extra load, instead
+ * of {@link #getMaxAttempts()} times its load.
+ */
+public class RetryPolicy {
+
+	/** The default number of attempts, the first one included */
+	public static final int DEFAULT_MAX_ATTEMPTS = 4;
+
+	/** The default delay, in milliseconds, the first retry waits at most */
+	public static final long DEFAULT_BASE_DELAY = 100L;
+
+	/** The default maximum delay, in milliseconds, between two attempts */
+	public static final long DEFAULT_MAX_DELAY = 10 * 1000L;
+
+	/** The default share of a retry each request adds to the budget */
+	public static final double DEFAULT_BUDGET_RATIO = 0.1;
+
+	/** The default number of retries the budget holds at most, and starts with */
+	public static final int DEFAULT_BUDGET_CAPACITY = 10;
+
+	private static final Random random = new Random();
+
+	private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private volatile long baseDelay = DEFAULT_BASE_DELAY;
+	private volatile long maxDelay = DEFAULT_MAX_DELAY;
+
+	private final Budget budget = new Budget(DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_CAPACITY);
+
+	/**
+	 * @param retry
+	 * 			the number of the retry, starting at 1
+	 * @return the time to wait before the retry, in milliseconds
+	 */
+	public long getDelay(int retry) {
+		long ceiling = baseDelay << Math.min(retry - 1, 30);
+		if (ceiling <= 0 || ceiling > maxDelay) {
+			ceiling = maxDelay;
+		}
+		return ceiling <= 0 ? 0L : (long) (random.nextDouble() * ceiling);
+	}
+
+	/**
+	 * @return the number of retries granted so far
+	 */
+	public long getRetryCount() {
+		return budget.getGrantedCount();
+	}
+
+	/**
+	 * @return the number of retries refused for lack of budget
+	 */
+	public long getExhaustedCount() {
+		return budget.getRefusedCount();
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public void setMaxAttempts(int maxAttempts) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("Property <maxAttempts> must be positive");
+		}
+		this.maxAttempts = maxAttempts;
+	}
+
+	public long getBaseDelay() {
+		return baseDelay;
+	}
+
+	public void setBaseDelay(long baseDelay) {
+		this.baseDelay = baseDelay;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	public void setMaxDelay(long maxDelay) {
+		this.maxDelay = maxDelay;
+	}
+
+	public double getBudgetRatio() {
+		return budget.getRatio();
+	}
+
+	public void setBudgetRatio(double budgetRatio) {
+		budget.setRatio(budgetRatio);
+	}
+
+	public int getBudgetCapacity() {
+		return budget.getCapacity();
+	}
+
+	/**
+	 * Sets the number of retries the budget holds at most, refilling it
+	 *
+	 * @param budgetCapacity
+	 */
+	public void setBudgetCapacity(int budgetCapacity) {
+		budget.setCapacity(budgetCapacity);
+	}
+
+	/*
+	 * Adds the share of a new request to the budget.
+	 */
+	void deposit() {
+		budget.deposit();
+	}
+
+	/*
+	 * Takes a retry out of the budget, returning false if it is spent.
+	 */
+	boolean withdraw() {
+		return budget.withdraw();
+	}
+}
@@ -0,0 +1,142 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the requests of a {@link WebHDFSConnection} again when they fail
+ * transiently, as its {@link RetryPolicy} allows.
+ * <p>
+ * Requests which could not reach the server, or which it turned away
+ * unrun with a 503 or as a standby namenode, are sent again unless they
+ * already streamed some of the caller's data. Requests lost once sent, e.g.
+ * on a connection reset, are only sent again if they are idempotent. A
+ * request rejected with a 401 authenticates again and is sent once more
+ * right away, outside of the retry budget. Operations returning the JSON
+ * response, which do not throw on errors, are retried in the same cases.
+ * <p>
+ * The connection holds no state of its own, the budget being the policy's,
+ * so that wrapping a connection costs nothing but the wrapper.
+ */
+public class RetryingWebHDFSConnection extends ForwardingWebHDFSConnection {
+
+	private static final Logger logger = LoggerFactory.getLogger(RetryingWebHDFSConnection.class);
+
+	private final WebHDFSConnection connection;
+	private final RetryPolicy policy;
+
+	/**
+	 * Creates a new RetryingWebHDFSConnection instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param policy
+	 * 			when to send them again
+	 */
+	public RetryingWebHDFSConnection(WebHDFSConnection connection, RetryPolicy policy) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(policy, "Property <policy> must not be null");
+		this.connection = connection;
+		this.policy = policy;
+	}
+
+	public WebHDFSConnection getConnection() {
+		return connection;
+	}
+
+	public RetryPolicy getPolicy() {
+		return policy;
+	}
+
+	@Override
+	protected <T> T invoke(Operation<T> operation) throws IOException, AuthenticationException {
+		policy.deposit();
+		boolean reauthenticated = false;
+		int attempt = 1;
+
+		while (true) {
+			T result = null;
+			Exception error = null;
+			Failure failure;
+			try {
+				result = operation.call(connection);
+				failure = Failure.ofResult(result);
+			}
+			catch(IOException e) {
+				error = e;
+				failure = Failure.of(e);
+			}
+			catch(AuthenticationException e) {
+				error = e;
+				failure = Failure.of(e);
+			}
+
+			if (failure == Failure.NONE) {
+				return complete(result, error);
+			}
+
+			if (failure == Failure.UNAUTHORIZED) {
+				if (reauthenticated || !operation.isReplayable()) {
+					return complete(result, error);
+				}
+				logger.info("Token rejected for " + operation + ", authenticating again");
+				invalidateToken(connection);
+				reauthenticated = true;
+				continue;
+			}
+
+			if (attempt >= policy.getMaxAttempts() || !failure.isRetriable(operation) || !policy.withdraw()) {
+				return complete(result, error);
+			}
+
+			long delay = policy.getDelay(attempt);
+			logger.warn("Retrying " + operation + " in " + delay + " ms after attempt " + attempt + ": "
+					+ (error == null ? failure : error.toString()));
+			try {
+				Thread.sleep(delay);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return complete(result, error);
+			}
+			attempt++;
+		}
+	}
+
+	/*
+	 * Drops the token the server rejected, so that the next request
+	 * authenticates again.
+	 */
+	static void invalidateToken(WebHDFSConnection connection) {
+		if (connection instanceof AbstractWebHDFSConnection) {
+			((AbstractWebHDFSConnection) connection).invalidateToken();
+		} else if (connection instanceof FailoverWebHDFSConnection) {
+			for (Endpoint endpoint : ((FailoverWebHDFSConnection) connection).getEndpoints()) {
+				invalidateToken(endpoint.getConnection());
+			}
+		} else if (connection instanceof RetryingWebHDFSConnection) {
+			invalidateToken(((RetryingWebHDFSConnection) connection).getConnection());
+		} else if (connection instanceof HedgingWebHDFSConnection) {
+			invalidateToken(((HedgingWebHDFSConnection) connection).getConnection());
+		} else if (connection instanceof LimitingWebHDFSConnection) {
+			invalidateToken(((LimitingWebHDFSConnection) connection).getConnection());
+		} else if (connection instanceof CircuitBreakingWebHDFSConnection) {
+			invalidateToken(((CircuitBreakingWebHDFSConnection) connection).getConnection());
+		}
+	}
+
+	private static <T> T complete(T result, Exception error) throws IOException, AuthenticationException {
+		if (error instanceof IOException) {
+			throw (IOException) error;
+		}
+		if (error instanceof AuthenticationException) {
+			throw (AuthenticationException) error;
+		}
+		return result;
+	}
+}
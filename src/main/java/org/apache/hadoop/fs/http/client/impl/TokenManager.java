@@ -0,0 +1,316 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Shares the authentication tokens of every connection to the same server
+ * as the same principal.
+ * <p>
+ * Handing out a valid token takes no lock. A missing or expired token is
+ * generated once, by the first thread asking for it, while the others wait
+ * for that very refresh. Tokens in use are regenerated in the background
+ * {@link #getRefreshAhead()} before they expire, so request threads do not
+ * pay for the authentication round trip.
+ * <p>
+ * Tokens are parsed into an {@link AuthToken} once when issued. A token is
+ * considered expired {@link #getExpiryMargin()} before the expiry time it
+ * carries, so that it does not expire on its way to the server.
+ * <p>
+ * The manager only holds the connections generating the tokens weakly. The
+ * token of a key is dropped once every connection of that key was garbage
+ * collected, so that evicted connections and their users are not kept
+ * forever.
+ */
+public class TokenManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(TokenManager.class);
+
+	/** The default time, in milliseconds, before expiry at which a token is regenerated */
+	public static final long DEFAULT_REFRESH_AHEAD = 5 * 60 * 1000L;
+
+	/** The default time, in milliseconds, before expiry at which a token is no longer handed out */
+	public static final long DEFAULT_EXPIRY_MARGIN = 30 * 1000L;
+
+	private static TokenManager sharedInstance;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-token-refresh-%d").build());
+	private final AtomicLong generated = new AtomicLong();
+
+	private volatile long refreshAhead = DEFAULT_REFRESH_AHEAD;
+	private volatile long expiryMargin = DEFAULT_EXPIRY_MARGIN;
+
+	/**
+	 * Generates the token of a connection, returning an unset token if the
+	 * authentication failed.
+	 */
+	interface TokenSource {
+		Token generateToken();
+	}
+
+	/**
+	 * @return the manager shared by connections which were not given one explicitly
+	 */
+	public static synchronized TokenManager getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new TokenManager();
+		}
+		return sharedInstance;
+	}
+
+	/**
+	 * Returns the token for {@code key}, generating it through
+	 * {@code source} if there is no valid one yet
+	 *
+	 * @param key
+	 * 			identifies the server, principal and authentication method
+	 * @param source
+	 * 			generates the token when needed
+	 * @return the token, unset if the authentication failed
+	 */
+	Token getToken(String key, TokenSource source) {
+		Entry entry = entry(key, source);
+		long now = System.currentTimeMillis();
+		entry.lastUsed = now;
+
+		AuthToken token = entry.issued.token;
+		if (token.isValid(now, expiryMargin)) {
+			if (token.getExpires() > 0 && now >= token.getExpires() - refreshAhead) {
+				refreshInBackground(entry, 0L);
+			}
+			return token.getToken();
+		}
+		return refresh(entry, false);
+	}
+
+	/**
+	 * Drops the token for {@code key} if it is still {@code stale}, e.g.
+	 * after the server rejected it
+	 */
+	void invalidate(String key, Token stale) {
+		Entry entry = entries.get(key);
+		if (entry != null && entry.issued.token.getToken() == stale) {
+			entry.issued = Issued.NONE;
+		}
+	}
+
+	/**
+	 * @return the number of tokens generated so far
+	 */
+	public long getGeneratedCount() {
+		return generated.get();
+	}
+
+	public long getRefreshAhead() {
+		return refreshAhead;
+	}
+
+	public void setRefreshAhead(long refreshAhead) {
+		this.refreshAhead = refreshAhead;
+	}
+
+	public long getExpiryMargin() {
+		return expiryMargin;
+	}
+
+	public void setExpiryMargin(long expiryMargin) {
+		this.expiryMargin = expiryMargin;
+	}
+
+	/**
+	 * Stops refreshing tokens in the background
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * @return the number of keys with a token or a connection
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	private Entry entry(String key, TokenSource source) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			purge();
+			Entry created = new Entry(key, source);
+			entry = entries.putIfAbsent(key, created);
+			if (entry == null) {
+				entry = created;
+			}
+		}
+		if (entry.source.get() != source) {
+			// any connection of the key generates the same token
+			entry.source = new WeakReference<TokenSource>(source);
+		}
+		return entry;
+	}
+
+	/*
+	 * Drops the entries whose connections were all garbage collected.
+	 */
+	private void purge() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().source.get() == null) {
+				it.remove();
+			}
+		}
+	}
+
+	/*
+	 * Runs the refresh of the entry, or waits for the one already running.
+	 */
+	private Token refresh(Entry entry, boolean force) {
+		while (true) {
+			FutureTask<Token> task = entry.refreshing.get();
+			if (task == null) {
+				task = new FutureTask<Token>(new Refresh(entry, force));
+				if (!entry.refreshing.compareAndSet(null, task)) {
+					continue;
+				}
+				try {
+					task.run();
+				}
+				finally {
+					entry.refreshing.compareAndSet(task, null);
+				}
+			}
+
+			try {
+				return task.get();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return entry.issued.token.getToken();
+			}
+			catch(ExecutionException e) {
+				logger.error("Failed to generate token for " + entry.key, e.getCause());
+				return entry.issued.token.getToken();
+			}
+		}
+	}
+
+	/*
+	 * Schedules a refresh of the entry unless one is already pending.
+	 */
+	private void refreshInBackground(final Entry entry, long delay) {
+		if (!entry.pending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					entry.pending.set(false);
+					if (entry.source.get() == null) {
+						// no connection left to use the token
+						entries.remove(entry.key, entry);
+						return;
+					}
+					Issued issued = entry.issued;
+					// leave tokens nobody asked for since they were issued to expire
+					if (entry.lastUsed >= issued.issuedAt || !issued.token.isValid(System.currentTimeMillis(), expiryMargin)) {
+						refresh(entry, true);
+					}
+				}
+			}, Math.max(delay, 0L), TimeUnit.MILLISECONDS);
+		}
+		catch(RejectedExecutionException e) {
+			entry.pending.set(false);
+			logger.debug("Not refreshing token for " + entry.key + ", manager shut down");
+		}
+	}
+
+	private class Refresh implements Callable<Token> {
+		private final Entry entry;
+		private final boolean force;
+
+		Refresh(Entry entry, boolean force) {
+			this.entry = entry;
+			this.force = force;
+		}
+
+		@Override
+		public Token call() throws Exception {
+			long now = System.currentTimeMillis();
+			AuthToken current = entry.issued.token;
+			if (!force && current.isValid(now, expiryMargin)) {
+				// refreshed by another thread since the caller looked
+				return current.getToken();
+			}
+
+			TokenSource source = entry.source.get();
+			if (source == null) {
+				// every connection of the key is gone
+				return current.getToken();
+			}
+			AuthToken token = new AuthToken(source.generateToken());
+			generated.incrementAndGet();
+			if (!token.isSet() && current.isValid(System.currentTimeMillis(), expiryMargin)) {
+				// keep the token we have until it actually expires
+				return current.getToken();
+			}
+
+			entry.issued = new Issued(token, now);
+			logger.debug("Generated token for " + entry.key + ": " + token);
+			if (token.isSet() && token.getExpires() > 0) {
+				long lifetime = token.getExpires() - expiryMargin - System.currentTimeMillis();
+				// tokens living shorter than refreshAhead are refreshed half way
+				refreshInBackground(entry, Math.max(lifetime - refreshAhead, lifetime / 2));
+			}
+			return token.getToken();
+		}
+	}
+
+	/*
+	 * A token along with when it was issued.
+	 */
+	private static class Issued {
+		static final Issued NONE = new Issued(AuthToken.UNSET, 0L);
+
+		final AuthToken token;
+		final long issuedAt;
+
+		Issued(AuthToken token, long issuedAt) {
+			this.token = token;
+			this.issuedAt = issuedAt;
+		}
+	}
+
+	private static class Entry {
+		final String key;
+		final AtomicReference<FutureTask<Token>> refreshing = new AtomicReference<FutureTask<Token>>();
+		final AtomicBoolean pending = new AtomicBoolean();
+		volatile WeakReference<TokenSource> source;
+		volatile Issued issued = Issued.NONE;
+		volatile long lastUsed;
+
+		Entry(String key, TokenSource source) {
+			this.key = key;
+			this.source = new WeakReference<TokenSource>(source);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.model;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A <code>ContentSummary</code> JSON object as returned by GETCONTENTSUMMARY
+ */
+public class ContentSummary {
+
+	private long directoryCount;
+	private long fileCount;
+	private long length;
+	private long quota;
+	private long spaceConsumed;
+	private long spaceQuota;
+
+	/**
+	 * Reads the members of a <code>ContentSummary</code> object, the reader
+	 * being positioned before its opening brace
+	 *
+	 * @param reader
+	 * 			the {@link JsonReader}
+	 * @return the {@link ContentSummary}
+	 * @throws IOException
+	 */
+	public static ContentSummary read(JsonReader reader) throws IOException {
+		ContentSummary summary = new ContentSummary();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if ("directoryCount".equals(name)) {
+				summary.directoryCount = reader.nextLong();
+			} else if ("fileCount".equals(name)) {
+				summary.fileCount = reader.nextLong();
+			} else if ("length".equals(name)) {
+				summary.length = reader.nextLong();
+			} else if ("quota".equals(name)) {
+				summary.quota = reader.nextLong();
+			} else if ("spaceConsumed".equals(name)) {
+				summary.spaceConsumed = reader.nextLong();
+			} else if ("spaceQuota".equals(name)) {
+				summary.spaceQuota = reader.nextLong();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return summary;
+	}
+
+	public long getDirectoryCount() {
+		return directoryCount;
+	}
+
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getQuota() {
+		return quota;
+	}
+
+	public long getSpaceConsumed() {
+		return spaceConsumed;
+	}
+
+	public long getSpaceQuota() {
+		return spaceQuota;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ContentSummary[directoryCount=%d; fileCount=%d; length=%d; spaceConsumed=%d]",
+				directoryCount, fileCount, length, spaceConsumed);
+	}
+}
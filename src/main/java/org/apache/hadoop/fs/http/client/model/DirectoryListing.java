@@ -0,0 +1,123 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * The children of a directory as returned by LISTSTATUS, or one page of
+ * them as returned by LISTSTATUS_BATCH
+ */
+public class DirectoryListing {
+
+	private final List<FileStatus> fileStatuses;
+	private final long remainingEntries;
+
+	public DirectoryListing(List<FileStatus> fileStatuses) {
+		this(fileStatuses, 0L);
+	}
+
+	public DirectoryListing(List<FileStatus> fileStatuses, long remainingEntries) {
+		this.fileStatuses = Collections.unmodifiableList(fileStatuses);
+		this.remainingEntries = remainingEntries;
+	}
+
+	/**
+	 * Reads the members of a <code>FileStatuses</code> object, the reader
+	 * being positioned before its opening brace
+	 *
+	 * @param reader
+	 * 			the {@link JsonReader}
+	 * @return the {@link DirectoryListing}
+	 * @throws IOException
+	 */
+	public static DirectoryListing read(JsonReader reader) throws IOException {
+		List<FileStatus> statuses = new ArrayList<FileStatus>();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if ("FileStatus".equals(reader.nextName())) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					statuses.add(FileStatus.read(reader));
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return new DirectoryListing(statuses);
+	}
+
+	/**
+	 * Reads the members of a LISTSTATUS_BATCH <code>DirectoryListing</code>
+	 * object, the reader being positioned before its opening brace
+	 *
+	 * @param reader
+	 * 			the {@link JsonReader}
+	 * @return the {@link DirectoryListing} page
+	 * @throws IOException
+	 */
+	public static DirectoryListing readPartial(JsonReader reader) throws IOException {
+		List<FileStatus> statuses = new ArrayList<FileStatus>();
+		long remainingEntries = 0L;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if ("partialListing".equals(name)) {
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if ("FileStatuses".equals(reader.nextName())) {
+						statuses.addAll(read(reader).getFileStatuses());
+					} else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+			} else if ("remainingEntries".equals(name)) {
+				remainingEntries = reader.nextLong();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return new DirectoryListing(statuses, remainingEntries);
+	}
+
+	public List<FileStatus> getFileStatuses() {
+		return fileStatuses;
+	}
+
+	public int size() {
+		return fileStatuses.size();
+	}
+
+	/**
+	 * @return the number of children left after this page, always 0 for a
+	 * 			complete listing
+	 */
+	public long getRemainingEntries() {
+		return remainingEntries;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.model;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A <code>FileChecksum</code> JSON object as returned by GETFILECHECKSUM
+ */
+public class FileChecksum {
+
+	private String algorithm;
+	private String bytes;
+	private int length;
+
+	/**
+	 * Reads the members of a <code>FileChecksum</code> object, the reader
+	 * being positioned before its opening brace
+	 *
+	 * @param reader
+	 * 			the {@link JsonReader}
+	 * @return the {@link FileChecksum}
+	 * @throws IOException
+	 */
+	public static FileChecksum read(JsonReader reader) throws IOException {
+		FileChecksum checksum = new FileChecksum();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if ("algorithm".equals(name)) {
+				checksum.algorithm = reader.nextString();
+			} else if ("bytes".equals(name)) {
+				checksum.bytes = reader.nextString();
+			} else if ("length".equals(name)) {
+				checksum.length = reader.nextInt();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return checksum;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * @return the checksum as a hexadecimal string
+	 */
+	public String getBytes() {
+		return bytes;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FileChecksum[algorithm=%s; bytes=%s; length=%d]", algorithm, bytes, length);
+	}
+}
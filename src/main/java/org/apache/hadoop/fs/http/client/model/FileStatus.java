@@ -0,0 +1,152 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.model;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A <code>FileStatus</code> JSON object as returned by GETFILESTATUS and
+ * LISTSTATUS
+ */
+public class FileStatus {
+
+	public enum Type {
+		FILE, DIRECTORY, SYMLINK
+	}
+
+	private long accessTime;
+	private long blockSize;
+	private String group;
+	private long length;
+	private long modificationTime;
+	private String owner;
+	private String pathSuffix;
+	private String permission;
+	private short replication;
+	private Type type;
+	private String symlink;
+
+	/**
+	 * Reads the members of a <code>FileStatus</code> object, the reader being
+	 * positioned before its opening brace
+	 *
+	 * @param reader
+	 * 			the {@link JsonReader}
+	 * @return the {@link FileStatus}
+	 * @throws IOException
+	 */
+	public static FileStatus read(JsonReader reader) throws IOException {
+		FileStatus status = new FileStatus();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if ("accessTime".equals(name)) {
+				status.accessTime = reader.nextLong();
+			} else if ("blockSize".equals(name)) {
+				status.blockSize = reader.nextLong();
+			} else if ("group".equals(name)) {
+				status.group = reader.nextString();
+			} else if ("length".equals(name)) {
+				status.length = reader.nextLong();
+			} else if ("modificationTime".equals(name)) {
+				status.modificationTime = reader.nextLong();
+			} else if ("owner".equals(name)) {
+				status.owner = reader.nextString();
+			} else if ("pathSuffix".equals(name)) {
+				status.pathSuffix = reader.nextString();
+			} else if ("permission".equals(name)) {
+				status.permission = reader.nextString();
+			} else if ("replication".equals(name)) {
+				status.replication = (short) reader.nextInt();
+			} else if ("type".equals(name)) {
+				status.type = Type.valueOf(reader.nextString());
+			} else if ("symlink".equals(name)) {
+				status.symlink = reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		return status;
+	}
+
+	public long getAccessTime() {
+		return accessTime;
+	}
+
+	public long getBlockSize() {
+		return blockSize;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getModificationTime() {
+		return modificationTime;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	/**
+	 * @return the name relative to the listed directory, empty for GETFILESTATUS
+	 */
+	public String getPathSuffix() {
+		return pathSuffix;
+	}
+
+	/**
+	 * @return the octal permission, e.g. <code>755</code>
+	 */
+	public String getPermission() {
+		return permission;
+	}
+
+	public short getReplication() {
+		return replication;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getSymlink() {
+		return symlink;
+	}
+
+	public boolean isDirectory() {
+		return type == Type.DIRECTORY;
+	}
+
+	public boolean isFile() {
+		return type == Type.FILE;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FileStatus[pathSuffix=%s; type=%s; length=%d; owner=%s; group=%s; permission=%s]",
+				pathSuffix, type, length, owner, group, permission);
+	}
+}
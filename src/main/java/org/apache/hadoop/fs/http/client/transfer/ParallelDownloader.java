@@ -0,0 +1,270 @@
+package org.apache.hadoop.fs.http.client.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Downloads a file as independent ranges fetched concurrently with ranged
+ * OPEN requests, each written in place into the local file.
+ * <p>
+ * A chunk whose transfer fails is resumed from its last written byte up to
+ * {@link #getMaxRetries()} times before the whole download is abandoned.
+ * An abandoned download waits for the chunks still being written before it
+ * closes the local file.
+ * Make sure the connection's transport allows at least as many connections
+ * per route as there are worker threads.
+ */
+public class ParallelDownloader {
+
+	private static final Logger logger = LoggerFactory.getLogger(ParallelDownloader.class);
+
+	/** The default size of the ranges fetched by each request */
+	public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+	/** The default number of times a chunk is resumed after a failure */
+	public static final int DEFAULT_MAX_RETRIES = 3;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final WebHDFSConnection connection;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+
+	private long chunkSize = DEFAULT_CHUNK_SIZE;
+	private int maxRetries = DEFAULT_MAX_RETRIES;
+	private ProgressListener progressListener;
+
+	/**
+	 * Creates a new ParallelDownloader instance with its own pool of
+	 * {@code threads} workers, released by {@link #shutdown()}.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param threads
+	 * 			the number of ranges fetched concurrently
+	 */
+	public ParallelDownloader(WebHDFSConnection connection, int threads) {
+		this(connection, Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-download-%d").build()), true);
+	}
+
+	/**
+	 * Creates a new ParallelDownloader instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param executor
+	 * 			the executor fetching the ranges
+	 */
+	public ParallelDownloader(WebHDFSConnection connection, ExecutorService executor) {
+		this(connection, executor, false);
+	}
+
+	private ParallelDownloader(WebHDFSConnection connection, ExecutorService executor, boolean ownsExecutor) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		this.connection = connection;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+	}
+
+	/**
+	 * Downloads {@code path} into {@code localFile}, replacing its contents
+	 *
+	 * @param path
+	 * 			the remote file
+	 * @param localFile
+	 * 			the local file
+	 * @return the number of bytes downloaded
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long download(final String path, File localFile) throws IOException, AuthenticationException {
+		final long length = connection.getStatus(path).getLength();
+		final AtomicLong transferred = new AtomicLong();
+
+		RandomAccessFile file = new RandomAccessFile(localFile, "rw");
+		try {
+			file.setLength(length);
+			final FileChannel channel = file.getChannel();
+
+			final Parts running = new Parts();
+			List<Future<Void>> chunks = new ArrayList<Future<Void>>();
+			for (long offset = 0; offset < length; offset += chunkSize) {
+				final long start = offset;
+				final long end = Math.min(offset + chunkSize, length);
+				chunks.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						if (!running.start()) {
+							return null;
+						}
+						try {
+							fetch(path, channel, start, end, length, transferred, running);
+						}
+						finally {
+							running.finish();
+						}
+						return null;
+					}
+				}));
+			}
+
+			try {
+				await(chunks);
+			}
+			finally {
+				// cancelled chunks may still be writing
+				running.abandon();
+			}
+			channel.force(false);
+		}
+		finally {
+			Closeables.closeQuietly(file);
+		}
+
+		return length;
+	}
+
+	/**
+	 * Shuts down the worker pool if it was created by this downloader
+	 */
+	public void shutdown() {
+		if (ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	public long getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(long chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Property <chunkSize> must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public ProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/*
+	 * Copies [start, end) of the remote file to the same range of the local
+	 * file, resuming from the last written byte after a failure.
+	 */
+	private void fetch(String path, FileChannel channel, long start, long end, long total, AtomicLong transferred,
+			Parts running) throws IOException, AuthenticationException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long position = start;
+		int attempt = 0;
+
+		while (position < end) {
+			InputStream in = null;
+			try {
+				in = connection.open(path, position, end - position);
+				int n;
+				while (position < end && (n = in.read(buffer.array(), 0, (int) Math.min(buffer.capacity(), end - position))) != -1) {
+					if (running.isAbandoned()) {
+						throw new InterruptedIOException("Download abandoned");
+					}
+					buffer.limit(n);
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+					buffer.clear();
+					progressed(transferred.addAndGet(n), total);
+				}
+				if (position < end) {
+					throw new IOException(String.format("Premature end of %s at %d, expected %d bytes", path, position, end));
+				}
+			}
+			catch(IOException e) {
+				if (e instanceof InterruptedIOException || Thread.currentThread().isInterrupted()
+						|| (e instanceof WebHDFSException && ((WebHDFSException) e).getStatusCode() / 100 == 4)
+						|| ++attempt > maxRetries) {
+					throw e;
+				}
+				logger.warn(String.format("Retrying %s from %d after failure (%d/%d)", path, position, attempt, maxRetries), e);
+			}
+			finally {
+				Closeables.closeQuietly(in);
+			}
+		}
+	}
+
+	private void progressed(long transferred, long total) {
+		if (progressListener != null) {
+			progressListener.progressed(transferred, total);
+		}
+	}
+
+	/*
+	 * Waits for every chunk, cancelling the others as soon as one fails.
+	 */
+	static void await(List<? extends Future<?>> chunks) throws IOException, AuthenticationException {
+		try {
+			for (Future<?> chunk : chunks) {
+				chunk.get();
+			}
+		}
+		catch(InterruptedException e) {
+			cancel(chunks);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for transfer");
+		}
+		catch(ExecutionException e) {
+			cancel(chunks);
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof AuthenticationException) {
+				throw (AuthenticationException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static void cancel(List<? extends Future<?>> chunks) {
+		for (Future<?> chunk : chunks) {
+			chunk.cancel(true);
+		}
+	}
+}
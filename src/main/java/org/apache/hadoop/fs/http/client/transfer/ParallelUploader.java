@@ -0,0 +1,316 @@
+package org.apache.hadoop.fs.http.client.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Uploads a file as independent parts sent concurrently, each through its
+ * own CREATE request and hence to its own datanode, then stitched together
+ * with CONCAT.
+ * <p>
+ * The first part is written to the target path and the others to temporary
+ * files next to it, which CONCAT moves onto the end of the target. HDFS only
+ * concatenates files ending on a block boundary, so {@link #getPartSize()}
+ * must be a multiple of the block size the parts are created with, which
+ * is the part size itself. Parts never overwrite existing files. If any
+ * part fails the upload is abandoned: the parts still being sent are
+ * stopped and waited for, then every file the upload created is deleted,
+ * complete or not.
+ */
+public class ParallelUploader {
+
+	private static final Logger logger = LoggerFactory.getLogger(ParallelUploader.class);
+
+	/** The default size of the parts, the default HDFS block size */
+	public static final long DEFAULT_PART_SIZE = 128L * 1024 * 1024;
+
+	/** The smallest part size, the smallest block size HDFS accepts by default */
+	public static final long MIN_PART_SIZE = 1024L * 1024;
+
+	private final WebHDFSConnection connection;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+
+	private long partSize = DEFAULT_PART_SIZE;
+	private ProgressListener progressListener;
+
+	/**
+	 * Creates a new ParallelUploader instance with its own pool of
+	 * {@code threads} workers, released by {@link #shutdown()}.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param threads
+	 * 			the number of parts sent concurrently
+	 */
+	public ParallelUploader(WebHDFSConnection connection, int threads) {
+		this(connection, Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-upload-%d").build()), true);
+	}
+
+	/**
+	 * Creates a new ParallelUploader instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param executor
+	 * 			the executor sending the parts
+	 */
+	public ParallelUploader(WebHDFSConnection connection, ExecutorService executor) {
+		this(connection, executor, false);
+	}
+
+	private ParallelUploader(WebHDFSConnection connection, ExecutorService executor, boolean ownsExecutor) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		this.connection = connection;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+	}
+
+	/**
+	 * Uploads {@code localFile} to {@code path}
+	 *
+	 * @param localFile
+	 * 			the local file
+	 * @param path
+	 * 			the remote file, which must not exist yet
+	 * @return the number of bytes uploaded
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long upload(File localFile, final String path) throws IOException, AuthenticationException {
+		final long length = localFile.length();
+		final AtomicLong transferred = new AtomicLong();
+
+		RandomAccessFile file = new RandomAccessFile(localFile, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+
+			final List<String> created = Collections.synchronizedList(new ArrayList<String>());
+			if (length <= partSize) {
+				try {
+					send(path, channel, 0L, length, length, transferred, null, created);
+				}
+				catch(IOException e) {
+					cleanup(created);
+					throw e;
+				}
+				catch(AuthenticationException e) {
+					cleanup(created);
+					throw e;
+				}
+				return length;
+			}
+
+			List<String> sources = new ArrayList<String>();
+			final Parts running = new Parts();
+			List<Future<Void>> parts = new ArrayList<Future<Void>>();
+			for (long offset = 0; offset < length; offset += partSize) {
+				final long start = offset;
+				final long end = Math.min(offset + partSize, length);
+				final String partPath = offset == 0 ? path : partPath(path, sources.size() + 1);
+				if (offset > 0) {
+					sources.add(partPath);
+				}
+				parts.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						if (!running.start()) {
+							return null;
+						}
+						try {
+							if (start > 0) {
+								// the file may be there as soon as the request is out
+								created.add(partPath);
+							}
+							send(partPath, channel, start, end, length, transferred, running, created);
+						}
+						finally {
+							running.finish();
+						}
+						return null;
+					}
+				}));
+			}
+
+			try {
+				ParallelDownloader.await(parts);
+				ResponseUtil.checkResponse(connection.concat(path, sources.toArray(new String[sources.size()])));
+			}
+			catch(IOException e) {
+				running.abandon();
+				cleanup(created);
+				throw e;
+			}
+			catch(AuthenticationException e) {
+				running.abandon();
+				cleanup(created);
+				throw e;
+			}
+		}
+		finally {
+			Closeables.closeQuietly(file);
+		}
+
+		return length;
+	}
+
+	/**
+	 * Shuts down the worker pool if it was created by this uploader
+	 */
+	public void shutdown() {
+		if (ownsExecutor) {
+			executor.shutdown();
+		}
+	}
+
+	public long getPartSize() {
+		return partSize;
+	}
+
+	/**
+	 * Sets the size of the parts, which is also their block size, so it must
+	 * be a multiple of 512 and at least {@link #MIN_PART_SIZE}
+	 *
+	 * @param partSize
+	 */
+	public void setPartSize(long partSize) {
+		if (partSize < MIN_PART_SIZE || partSize % 512 != 0) {
+			throw new IllegalArgumentException("Property <partSize> must be a multiple of 512 of at least " + MIN_PART_SIZE);
+		}
+		this.partSize = partSize;
+	}
+
+	public ProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/*
+	 * Sends [start, end) of the local file to a new remote file, with blocks
+	 * of the part size so that CONCAT accepts it.
+	 */
+	private void send(String path, FileChannel channel, long start, long end, long total, AtomicLong transferred,
+			Parts running, List<String> created) throws IOException, AuthenticationException {
+		CreateOptions options = new CreateOptions();
+		options.setOverwrite(false);
+		options.setBlockSize(partSize);
+		ResponseUtil.checkResponse(connection.create(path,
+				new PartInputStream(path, channel, start, end, total, transferred, running, created), end - start, options));
+	}
+
+	/*
+	 * Deletes the files created so far. A file already at the target path
+	 * fails the CREATE before any data is asked for, so it is never deleted.
+	 */
+	private void cleanup(List<String> created) {
+		String[] paths;
+		synchronized (created) {
+			paths = created.toArray(new String[created.size()]);
+		}
+		for (String p : paths) {
+			try {
+				connection.delete(p);
+			}
+			catch(Exception e) {
+				logger.warn("Failed to delete " + p + " after failed upload", e);
+			}
+		}
+	}
+
+	private static String partPath(String path, int index) {
+		return String.format("%s._PART_%05d", path, index);
+	}
+
+	private void progressed(long transferred, long total) {
+		if (progressListener != null) {
+			progressListener.progressed(transferred, total);
+		}
+	}
+
+	/*
+	 * Reads [start, end) of a channel shared with the other parts through
+	 * positional reads, which leave the channel position alone.
+	 */
+	private class PartInputStream extends InputStream {
+		private final String path;
+		private final FileChannel channel;
+		private final long end;
+		private final long total;
+		private final AtomicLong transferred;
+		private final Parts running;
+		private final List<String> created;
+		private long position;
+		private boolean started;
+
+		PartInputStream(String path, FileChannel channel, long start, long end, long total, AtomicLong transferred,
+				Parts running, List<String> created) {
+			this.path = path;
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+			this.total = total;
+			this.transferred = transferred;
+			this.running = running;
+			this.created = created;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (position >= end) {
+				return -1;
+			}
+			if (running != null && running.isAbandoned()) {
+				throw new IOException("Upload abandoned");
+			}
+			if (!started) {
+				// the server only asks for the data once it created the file
+				started = true;
+				synchronized (created) {
+					if (!created.contains(path)) {
+						created.add(path);
+					}
+				}
+			}
+			int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+			if (n > 0) {
+				position += n;
+				progressed(transferred.addAndGet(n), total);
+			}
+			return n;
+		}
+	}
+}
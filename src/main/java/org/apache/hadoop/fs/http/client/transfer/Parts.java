@@ -0,0 +1,51 @@
+package org.apache.hadoop.fs.http.client.transfer;
+
+/**
+ * Tracks the parts of a transfer being worked on, so that an abandoned
+ * transfer waits for them before releasing the file or the remote paths
+ * they use.
+ */
+class Parts {
+	private int active;
+	private volatile boolean abandoned;
+
+	/**
+	 * @return {@code false} if the transfer was abandoned and the part must
+	 * 			not start
+	 */
+	synchronized boolean start() {
+		if (abandoned) {
+			return false;
+		}
+		active++;
+		return true;
+	}
+
+	synchronized void finish() {
+		active--;
+		notifyAll();
+	}
+
+	boolean isAbandoned() {
+		return abandoned;
+	}
+
+	/**
+	 * Stops the parts not started yet and waits for the others.
+	 */
+	synchronized void abandon() {
+		abandoned = true;
+		boolean interrupted = false;
+		while (active > 0) {
+			try {
+				wait();
+			}
+			catch(InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
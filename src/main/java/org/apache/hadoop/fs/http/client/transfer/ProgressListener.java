@@ -0,0 +1,16 @@
+package org.apache.hadoop.fs.http.client.transfer;
+
+/**
+ * Notified as a transfer moves data. Called concurrently from the worker
+ * threads, so implementations must be thread-safe and cheap.
+ */
+public interface ProgressListener {
+
+	/**
+	 * @param transferred
+	 * 			the number of bytes transferred so far
+	 * @param total
+	 * 			the total number of bytes to transfer
+	 */
+	public void progressed(long transferred, long total);
+}
@@ -0,0 +1,69 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Opens and recycles the {@link HttpURLConnection}s used by a
+ * {@link org.apache.hadoop.fs.http.client.WebHDFSConnection}.
+ * <p>
+ * Every connection obtained from {@link #open(URL)} must be handed back
+ * exactly once, either through {@link #release(HttpURLConnection)} once the
+ * response has been fully read and its stream closed, or through
+ * {@link #abort(HttpURLConnection)} when the exchange failed half way.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Opens a connection to {@code url}
+	 *
+	 * @param url
+	 * 			the target URL
+	 * @return an unconnected {@link HttpURLConnection}
+	 * @throws IOException
+	 * 			if the connection could not be opened
+	 */
+	public HttpURLConnection open(URL url) throws IOException;
+
+	/**
+	 * Returns {@code conn} to the transport, keeping the underlying socket
+	 * available for reuse when the transport supports it
+	 *
+	 * @param conn
+	 * 			a connection obtained from {@link #open(URL)}
+	 */
+	public void release(HttpURLConnection conn);
+
+	/**
+	 * Returns {@code conn} to the transport, closing the underlying socket
+	 *
+	 * @param conn
+	 * 			a connection obtained from {@link #open(URL)}
+	 */
+	public void abort(HttpURLConnection conn);
+
+	/**
+	 * @return a snapshot of the transport's occupancy
+	 */
+	public PoolStats getStats();
+
+	/**
+	 * Releases the resources held by the transport
+	 */
+	public void shutdown();
+}
@@ -0,0 +1,85 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+/**
+ * Immutable snapshot of a {@link HttpTransport}'s occupancy
+ */
+public class PoolStats {
+
+	private final int routes;
+	private final int leased;
+	private final int pending;
+	private final int max;
+	private final long totalLeases;
+	private final long evictedRoutes;
+
+	public PoolStats(int routes, int leased, int pending, int max, long totalLeases, long evictedRoutes) {
+		this.routes = routes;
+		this.leased = leased;
+		this.pending = pending;
+		this.max = max;
+		this.totalLeases = totalLeases;
+		this.evictedRoutes = evictedRoutes;
+	}
+
+	/**
+	 * @return the number of routes (scheme, host and port) currently tracked
+	 */
+	public int getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * @return the number of connections currently handed out
+	 */
+	public int getLeased() {
+		return leased;
+	}
+
+	/**
+	 * @return the number of threads waiting for a connection
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	/**
+	 * @return the maximum number of connections per route, or -1 if unbounded
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the number of connections handed out since the transport was created
+	 */
+	public long getTotalLeases() {
+		return totalLeases;
+	}
+
+	/**
+	 * @return the number of idle routes evicted since the transport was created
+	 */
+	public long getEvictedRoutes() {
+		return evictedRoutes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[routes: %d; leased: %d; pending: %d; max: %d; total leases: %d; evicted routes: %d]",
+				routes, leased, pending, max, totalLeases, evictedRoutes);
+	}
+}
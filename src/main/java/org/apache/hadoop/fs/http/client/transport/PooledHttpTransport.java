@@ -0,0 +1,316 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link HttpTransport} keeping sockets alive between exchanges.
+ * <p>
+ * Released connections are not disconnected: once their response has been
+ * consumed the JDK parks the socket in its keep-alive cache and the next
+ * connection to the same route picks it up again. This transport bounds the
+ * number of connections leased per route (scheme, host and port), so the
+ * number of sockets opened against a single HttpFS gateway or datanode never
+ * exceeds {@link #getMaxConnectionsPerRoute()}, and forgets about routes that
+ * stayed idle longer than {@link #getMaxIdleTime()}.
+ * <p>
+ * The JDK retains at most {@code http.maxConnections} (default 5) idle sockets
+ * per destination, so the default limit per route follows that system
+ * property: a higher limit opens sockets the JDK closes again once released.
+ * Raise both together at JVM startup to keep more sockets alive.
+ */
+public class PooledHttpTransport implements HttpTransport {
+
+	private static final Logger logger = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+	/* the number of idle sockets the JDK keeps per destination */
+	private static final int KEEP_ALIVE_SOCKETS = Integer.getInteger("http.maxConnections", 5);
+
+	/** The default maximum number of connections leased per route, as many as the JDK keeps alive */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = KEEP_ALIVE_SOCKETS;
+
+	/** The default time, in milliseconds, after which an unused route is evicted */
+	public static final long DEFAULT_MAX_IDLE_TIME = 60000L;
+
+	/** The default time, in milliseconds, to wait for a connection when a route is exhausted */
+	public static final long DEFAULT_LEASE_TIMEOUT = 30000L;
+
+	private static PooledHttpTransport sharedInstance;
+
+	private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+	private final ConcurrentMap<HttpURLConnection, Route> leases = new ConcurrentHashMap<HttpURLConnection, Route>();
+	private final AtomicLong totalLeases = new AtomicLong();
+	private final AtomicLong evictedRoutes = new AtomicLong();
+	private volatile long lastEviction = System.currentTimeMillis();
+
+	private final int maxConnectionsPerRoute;
+	private final long maxIdleTime;
+	private long leaseTimeout = DEFAULT_LEASE_TIMEOUT;
+	private int connectTimeout = 0;
+	private int readTimeout = 0;
+
+	/**
+	 * Creates a new PooledHttpTransport instance with the default limits.
+	 */
+	public PooledHttpTransport() {
+		this(DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_IDLE_TIME);
+	}
+
+	/**
+	 * Creates a new PooledHttpTransport instance.
+	 *
+	 * @param maxConnectionsPerRoute
+	 * 			the maximum number of connections leased per route
+	 * @param maxIdleTime
+	 * 			the time, in milliseconds, after which an unused route is evicted
+	 */
+	public PooledHttpTransport(int maxConnectionsPerRoute, long maxIdleTime) {
+		if (maxConnectionsPerRoute < 1) {
+			throw new IllegalArgumentException("Property <maxConnectionsPerRoute> must be positive");
+		}
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+		this.maxIdleTime = maxIdleTime;
+		if (maxConnectionsPerRoute > KEEP_ALIVE_SOCKETS) {
+			logger.warn("Leasing up to " + maxConnectionsPerRoute + " connections per route but the JDK keeps only "
+					+ KEEP_ALIVE_SOCKETS + " sockets alive, set http.maxConnections to reuse them all");
+		}
+	}
+
+	/**
+	 * @return the transport shared by connections which were not given one explicitly
+	 */
+	public static synchronized PooledHttpTransport getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new PooledHttpTransport();
+		}
+		return sharedInstance;
+	}
+
+	@Override
+	public HttpURLConnection open(URL url) throws IOException {
+		evictIdleRoutes();
+
+		Route route;
+		do {
+			route = route(url);
+		}
+		// evicted since looked up
+		while (!route.acquire(leaseTimeout));
+
+		HttpURLConnection conn;
+		try {
+			conn = (HttpURLConnection) url.openConnection();
+		}
+		catch(IOException e) {
+			route.release();
+			throw e;
+		}
+		conn.setConnectTimeout(connectTimeout);
+		conn.setReadTimeout(readTimeout);
+
+		leases.put(conn, route);
+		totalLeases.incrementAndGet();
+		return conn;
+	}
+
+	@Override
+	public void release(HttpURLConnection conn) {
+		Route route = leases.remove(conn);
+		if (route != null) {
+			route.release();
+		}
+	}
+
+	@Override
+	public void abort(HttpURLConnection conn) {
+		conn.disconnect();
+		release(conn);
+	}
+
+	@Override
+	public PoolStats getStats() {
+		int leased = 0;
+		int pending = 0;
+		for (Route route : routes.values()) {
+			leased += route.leased.get();
+			pending += route.permits.getQueueLength();
+		}
+		return new PoolStats(routes.size(), leased, pending, maxConnectionsPerRoute, totalLeases.get(), evictedRoutes.get());
+	}
+
+	/**
+	 * @param url
+	 * 			any URL on the route
+	 * @return a snapshot of the occupancy of the route {@code url} belongs to
+	 */
+	public PoolStats getStats(URL url) {
+		Route route = routes.get(routeKey(url));
+		if (route == null) {
+			return new PoolStats(0, 0, 0, maxConnectionsPerRoute, 0L, 0L);
+		}
+		return new PoolStats(1, route.leased.get(), route.permits.getQueueLength(), maxConnectionsPerRoute,
+				route.totalLeases.get(), 0L);
+	}
+
+	/**
+	 * Evicts the routes without leased connections that have not been used
+	 * for longer than {@link #getMaxIdleTime()}
+	 */
+	public void closeIdleRoutes() {
+		long now = System.currentTimeMillis();
+		lastEviction = now;
+
+		for (Map.Entry<String, Route> entry : routes.entrySet()) {
+			Route route = entry.getValue();
+			if (route.evict(now, maxIdleTime) && routes.remove(entry.getKey(), route)) {
+				evictedRoutes.incrementAndGet();
+				logger.debug("Evicted idle route " + entry.getKey());
+			}
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		routes.clear();
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	public long getLeaseTimeout() {
+		return leaseTimeout;
+	}
+
+	public void setLeaseTimeout(long leaseTimeout) {
+		this.leaseTimeout = leaseTimeout;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	private void evictIdleRoutes() {
+		if (System.currentTimeMillis() - lastEviction > maxIdleTime) {
+			closeIdleRoutes();
+		}
+	}
+
+	private Route route(URL url) {
+		String key = routeKey(url);
+		Route route = routes.get(key);
+		if (route == null) {
+			Route created = new Route(maxConnectionsPerRoute);
+			route = routes.putIfAbsent(key, created);
+			if (route == null) {
+				route = created;
+			}
+		}
+		return route;
+	}
+
+	private static String routeKey(URL url) {
+		int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		return String.format("%s://%s:%d", url.getProtocol(), url.getHost().toLowerCase(), port);
+	}
+
+	/*
+	 * Bookkeeping for the connections leased to a single scheme, host and port.
+	 */
+	private static class Route {
+		final Semaphore permits;
+		final AtomicInteger leased = new AtomicInteger();
+		final AtomicLong totalLeases = new AtomicLong();
+		volatile long lastUsed = System.currentTimeMillis();
+		private boolean evicted;
+
+		Route(int max) {
+			this.permits = new Semaphore(max, true);
+		}
+
+		/*
+		 * Leases a connection, unless the route was evicted meanwhile, the
+		 * caller then looking up the route again.
+		 */
+		boolean acquire(long timeout) throws IOException {
+			try {
+				if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+					throw new IOException("Timeout waiting for connection from pool");
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for connection from pool");
+			}
+			synchronized (this) {
+				if (evicted) {
+					permits.release();
+					return false;
+				}
+				leased.incrementAndGet();
+			}
+			totalLeases.incrementAndGet();
+			lastUsed = System.currentTimeMillis();
+			return true;
+		}
+
+		/*
+		 * Marks the route evicted if it has no leased connection and has not
+		 * been used for longer than maxIdleTime.
+		 */
+		synchronized boolean evict(long now, long maxIdleTime) {
+			if (!evicted && leased.get() == 0 && now - lastUsed > maxIdleTime) {
+				evicted = true;
+			}
+			return evicted;
+		}
+
+		void release() {
+			lastUsed = System.currentTimeMillis();
+			leased.decrementAndGet();
+			permits.release();
+		}
+	}
+}
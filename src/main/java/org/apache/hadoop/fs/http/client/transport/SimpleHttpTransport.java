@@ -0,0 +1,58 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.hadoop.fs.http.client.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpTransport} which closes the socket after every exchange
+ */
+public class SimpleHttpTransport implements HttpTransport {
+
+	private final AtomicInteger leased = new AtomicInteger();
+	private final AtomicLong totalLeases = new AtomicLong();
+
+	@Override
+	public HttpURLConnection open(URL url) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		leased.incrementAndGet();
+		totalLeases.incrementAndGet();
+		return conn;
+	}
+
+	@Override
+	public void release(HttpURLConnection conn) {
+		abort(conn);
+	}
+
+	@Override
+	public void abort(HttpURLConnection conn) {
+		conn.disconnect();
+		leased.decrementAndGet();
+	}
+
+	@Override
+	public PoolStats getStats() {
+		return new PoolStats(0, leased.get(), 0, -1, totalLeases.get(), 0L);
+	}
+
+	@Override
+	public void shutdown() {
+	}
+}
@@ -17,7 +17,13 @@ package org.apache.hadoop.fs.http.client.util;
 import java.lang.reflect.Type;
 import java.util.Map;
 
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 
 public class ResponseUtil {
@@ -46,4 +52,63 @@ public class ResponseUtil {
 		Type type = new TypeToken<Map<String, Object>>() {}.getType();
 		return gson.fromJson(json, type);
 	}
+
+	/**
+	 * Reads the status code of the JSON response without parsing the rest
+	 *
+	 * @param json
+	 * 			the JSON representation of the response
+	 * @return the status code, or -1 if {@code json} is not such a response
+	 */
+	public static int getCode(String json) {
+		// the data is an escaped string, so its own members never match
+		String member = "\"" + CODE + "\":";
+		int i = json.indexOf(member);
+		if (i < 0) {
+			return -1;
+		}
+		i += member.length();
+		int code = 0;
+		int digits = 0;
+		while (i < json.length() && Character.isDigit(json.charAt(i))) {
+			code = code * 10 + (json.charAt(i++) - '0');
+			digits++;
+		}
+		return digits > 0 ? code : -1;
+	}
+
+	/**
+	 * Checks the status code of the JSON response
+	 * 
+	 * @param json
+	 * 			the JSON representation of the response
+	 * @return the JSON representation of the response
+	 * @throws WebHDFSException
+	 * 			if the status code is not 2xx, carrying the details of the
+	 * 			<code>RemoteException</code> found in the data, if any
+	 */
+	public static String checkResponse(String json) throws WebHDFSException {
+		Map<String, Object> response = toMap(json);
+		int code = ((Number) response.get(CODE)).intValue();
+		if (code / 100 == 2) {
+			return json;
+		}
+
+		String message = (String) response.get(MESSAGE);
+		String exception = null;
+		String javaClassName = null;
+		try {
+			JsonElement data = new JsonParser().parse((String) response.get(CONTENT));
+			if (data.isJsonObject() && data.getAsJsonObject().has("RemoteException")) {
+				JsonObject remote = data.getAsJsonObject().getAsJsonObject("RemoteException");
+				message = remote.has("message") ? remote.get("message").getAsString() : message;
+				exception = remote.has("exception") ? remote.get("exception").getAsString() : null;
+				javaClassName = remote.has("javaClassName") ? remote.get("javaClassName").getAsString() : null;
+			}
+		}
+		catch(JsonParseException e) {
+			// not a RemoteException, keep the status line
+		}
+		throw new WebHDFSException(code, message, exception, javaClassName);
+	}
 }
@@ -19,11 +19,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 public class Streams {
 	
 	public static final int EIGHT_K		= 8192;
 	public static final int	TWELVE_K	= 12288;
+	public static final int	SIXTY_FOUR_K	= 65536;
+	public static final int	TWO_FIFTY_SIX_K	= 262144;
 	
 	/**
 	 * Reads the contents of {@code is} fully
@@ -66,24 +71,24 @@ public class Streams {
 	}
 
 	/**
+	 * Copies {@code instream} to {@code outstream}, closing both
 	 * 
 	 * @param instream
 	 * 			the {@link InputStream} 
 	 * @param outstream
 	 * 			the {@link OutputStream}
-	 * @return
+	 * @return the number of bytes copied
 	 * @throws IOException
 	 */
 	public static long copy(InputStream instream, OutputStream outstream) throws IOException {
 		int n = 0;
 		long count = 0L;
-		byte[] buffer = new byte[TWELVE_K];
+		byte[] buffer = new byte[SIXTY_FOUR_K];
 		
 		try {
 			while(-1 != (n = instream.read(buffer))) {
 				outstream.write(buffer, 0, n);
 				count += n;
-				outstream.flush();
 			}
 	
 			outstream.flush();
@@ -95,4 +100,44 @@ public class Streams {
 		
 		return count;
 	}
+
+	/**
+	 * Copies {@code instream} to {@code channel}, closing {@code instream}
+	 * but leaving {@code channel} open.
+	 * <p>
+	 * The data moves in steps of up to 256 KB through a buffer allocated for
+	 * the call, so that idle pooled threads do not hold on to one. An
+	 * {@link InputStream} can only fill a byte array, so the JDK still copies
+	 * each step once into a native buffer when writing to a
+	 * {@link FileChannel} or socket; reading into a direct buffer would not
+	 * save that copy, it would only move it here.
+	 * 
+	 * @param instream
+	 * 			the {@link InputStream}
+	 * @param channel
+	 * 			the {@link WritableByteChannel}
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 */
+	public static long copy(InputStream instream, WritableByteChannel channel) throws IOException {
+		long count = 0L;
+		ByteBuffer buffer = ByteBuffer.allocate(TWO_FIFTY_SIX_K);
+
+		try {
+			int n;
+			while (-1 != (n = instream.read(buffer.array(), 0, buffer.capacity()))) {
+				buffer.limit(n);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				buffer.clear();
+				count += n;
+			}
+		}
+		finally {
+			Closeables.closeQuietly(instream);
+		}
+
+		return count;
+	}
 }
@@ -0,0 +1,23 @@
+package org.apache.hadoop.fs.http.client.walk;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+
+/**
+ * Notified of each file and directory a {@link TreeWalker} finds, one at a
+ * time on the walking thread.
+ */
+public interface FileVisitor {
+
+	/**
+	 * @param path
+	 * 			the path of the file or directory
+	 * @param status
+	 * 			its status
+	 * @return false to stop the walk
+	 * @throws IOException
+	 * 			stopping the walk
+	 */
+	public boolean visit(String path, FileStatus status) throws IOException;
+}
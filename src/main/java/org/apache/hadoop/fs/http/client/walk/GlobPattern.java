@@ -0,0 +1,154 @@
+package org.apache.hadoop.fs.http.client.walk;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A glob matching a single path component, as the shell and Hadoop's
+ * <code>globStatus</code> understand it: <code>*</code> matches any run of
+ * characters, <code>?</code> any single one, <code>[abc]</code>,
+ * <code>[a-z]</code> and <code>[^a]</code> (or <code>[!a]</code>) one of a
+ * set, <code>{ab,cd}</code> one of several alternatives, and
+ * <code>\</code> escapes the next character.
+ */
+final class GlobPattern {
+
+	private final String glob;
+	private final Pattern regex;
+	private final boolean wildcard;
+
+	private GlobPattern(String glob, Pattern regex, boolean wildcard) {
+		this.glob = glob;
+		this.regex = regex;
+		this.wildcard = wildcard;
+	}
+
+	/**
+	 * @param glob
+	 * 			the glob of a path component, without slash
+	 * @return the compiled glob
+	 * @throws IllegalArgumentException
+	 * 			if the glob is malformed
+	 */
+	static GlobPattern compile(String glob) {
+		StringBuilder regex = new StringBuilder(glob.length() * 2);
+		StringBuilder literal = new StringBuilder(glob.length());
+		boolean wildcard = false;
+		int braces = 0;
+		boolean inSet = false;
+
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '\\') {
+				if (++i == glob.length()) {
+					throw error("Trailing escape", glob, i);
+				}
+				c = glob.charAt(i);
+				literal.append(c);
+				if (inSet) {
+					regex.append(Character.isLetterOrDigit(c) ? String.valueOf(c) : "\\" + c);
+				} else {
+					regex.append(Pattern.quote(String.valueOf(c)));
+				}
+				continue;
+			}
+			if (inSet) {
+				if (c == ']') {
+					inSet = false;
+				} else if (c == '[' || c == '&') {
+					// not special in a glob set
+					regex.append('\\');
+				}
+				regex.append(c);
+				continue;
+			}
+			switch (c) {
+			case '*':
+				wildcard = true;
+				regex.append(".*");
+				break;
+			case '?':
+				wildcard = true;
+				regex.append('.');
+				break;
+			case '[':
+				wildcard = true;
+				inSet = true;
+				regex.append('[');
+				if (i + 1 < glob.length() && (glob.charAt(i + 1) == '!' || glob.charAt(i + 1) == '^')) {
+					regex.append('^');
+					i++;
+				}
+				break;
+			case '{':
+				wildcard = true;
+				braces++;
+				regex.append("(?:");
+				break;
+			case ',':
+				if (braces > 0) {
+					regex.append('|');
+				} else {
+					regex.append(',');
+					literal.append(c);
+				}
+				break;
+			case '}':
+				if (braces > 0) {
+					braces--;
+					regex.append(')');
+				} else {
+					regex.append("\\}");
+					literal.append(c);
+				}
+				break;
+			default:
+				literal.append(c);
+				regex.append(Pattern.quote(String.valueOf(c)));
+				break;
+			}
+		}
+		if (inSet) {
+			throw error("Unclosed character class", glob, glob.length());
+		}
+		if (braces > 0) {
+			throw error("Unclosed group", glob, glob.length());
+		}
+
+		try {
+			return new GlobPattern(wildcard ? glob : literal.toString(), Pattern.compile(regex.toString(), Pattern.DOTALL),
+					wildcard);
+		}
+		catch(PatternSyntaxException e) {
+			throw new IllegalArgumentException("Malformed glob <" + glob + ">", e);
+		}
+	}
+
+	private static IllegalArgumentException error(String message, String glob, int index) {
+		return new IllegalArgumentException(message + " in glob <" + glob + "> at " + index);
+	}
+
+	/**
+	 * @return whether the glob may match several names, rather than a
+	 * 			single one with the escapes removed
+	 */
+	boolean hasWildcard() {
+		return wildcard;
+	}
+
+	/**
+	 * @return the glob, or the only name it matches if it has no wildcard
+	 */
+	String getGlob() {
+		return glob;
+	}
+
+	boolean matches(String name) {
+		return regex.matcher(name).matches();
+	}
+
+	@Override
+	public String toString() {
+		return glob;
+	}
+}
@@ -0,0 +1,20 @@
+package org.apache.hadoop.fs.http.client.walk;
+
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+
+/**
+ * Tells which files and directories a {@link TreeWalker} returns and walks
+ * into. Called concurrently from the worker threads, so implementations
+ * must be thread-safe and cheap.
+ */
+public interface PathFilter {
+
+	/**
+	 * @param path
+	 * 			the path of the file or directory
+	 * @param status
+	 * 			its status
+	 * @return false to leave it out, along with everything below it
+	 */
+	public boolean accept(String path, FileStatus status);
+}
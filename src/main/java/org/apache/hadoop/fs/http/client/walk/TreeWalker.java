@@ -0,0 +1,704 @@
+package org.apache.hadoop.fs.http.client.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.fs.http.client.FileStatusIterator;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+import org.apache.hadoop.fs.http.client.util.Assert;
+import org.apache.hadoop.fs.http.client.util.Closeables;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Lists everything below a directory, listing its subdirectories
+ * concurrently.
+ * <p>
+ * Each directory found is listed by the next free worker, reading its
+ * children with {@link WebHDFSConnection#listStatusIterator(String)}, so
+ * that walking a wide tree takes about as many round trips in a row as it
+ * is deep rather than as it has directories. A worker reads the whole
+ * listing of a directory, so that no response stays open while it waits,
+ * then hands the children to the caller through a queue of
+ * {@link #getQueueCapacity()} entries, waiting while it is full. At most
+ * {@link #getMaxPendingDirectories()} directories wait for a worker; past
+ * that a worker lists the directories it finds itself, depth first. A slow
+ * caller thus never has the whole tree held in memory, only the queue, the
+ * pending directories and the listings the workers are handing over.
+ * Directories deleted while the walk runs are skipped.
+ * <p>
+ * {@link #globStatus(String)} expands a glob the same way, listing only the
+ * directories which can still match.
+ */
+public class TreeWalker {
+
+	/** The default number of entries read ahead of the caller */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/** The default number of directories found waiting for a worker */
+	public static final int DEFAULT_MAX_PENDING_DIRECTORIES = 1024;
+
+	/* how often threads waiting on the queue check whether the walk ended */
+	private static final long POLL_MILLIS = 100L;
+
+	private static final Object END = new Object();
+
+	private final WebHDFSConnection connection;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+
+	private int maxDepth = Integer.MAX_VALUE;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int maxPendingDirectories = DEFAULT_MAX_PENDING_DIRECTORIES;
+	private PathFilter filter;
+
+	/**
+	 * Creates a new TreeWalker instance with its own pool of {@code threads}
+	 * workers, released by {@link #shutdown()}.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param threads
+	 * 			the number of directories listed concurrently
+	 */
+	public TreeWalker(WebHDFSConnection connection, int threads) {
+		this(connection, Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("webhdfs-walk-%d").build()), true);
+	}
+
+	/**
+	 * Creates a new TreeWalker instance.
+	 *
+	 * @param connection
+	 * 			the connection sending the requests
+	 * @param executor
+	 * 			the executor listing the directories
+	 */
+	public TreeWalker(WebHDFSConnection connection, ExecutorService executor) {
+		this(connection, executor, false);
+	}
+
+	private TreeWalker(WebHDFSConnection connection, ExecutorService executor, boolean ownsExecutor) {
+		Assert.notNull(connection, "Property <connection> must not be null");
+		Assert.notNull(executor, "Property <executor> must not be null");
+		this.connection = connection;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+	}
+
+	/**
+	 * Hands everything below {@code path} to {@code visitor}, on the calling
+	 * thread, until it returns false
+	 *
+	 * @param path
+	 * 			the directory
+	 * @param visitor
+	 * 			the visitor
+	 * @return the number of files and directories visited
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 */
+	public long walk(String path, FileVisitor visitor) throws IOException, AuthenticationException {
+		Assert.notNull(visitor, "Property <visitor> must not be null");
+		Walk walk = listRecursive(path);
+		long visited = 0;
+		try {
+			while (walk.hasNext()) {
+				Entry entry = walk.next();
+				visited++;
+				if (!visitor.visit(entry.getPath(), entry.getStatus())) {
+					break;
+				}
+			}
+		}
+		catch(WalkException e) {
+			throw e.getCause();
+		}
+		finally {
+			walk.close();
+		}
+		return visited;
+	}
+
+	/**
+	 * Starts listing everything below {@code path}, parents always coming
+	 * before their children but otherwise in no particular order
+	 *
+	 * @param path
+	 * 			the directory
+	 * @return the entries, to {@link Walk#close()} when abandoning them
+	 * 			early
+	 */
+	public Walk listRecursive(String path) {
+		Assert.notNull(path, "Property <path> must not be null");
+		Walk walk = new Walk(queueCapacity, maxPendingDirectories, maxDepth, filter);
+		walk.schedule(path, 1);
+		return walk;
+	}
+
+	/**
+	 * Finds the files and directories matching {@code pattern}, each of its
+	 * components a glob, see {@link GlobPattern}, e.g.
+	 * <code>/data/events/dt=2026-10-*&#47;hour=*&#47;part-*</code>.
+	 * <p>
+	 * Only the directories which can still match are listed, all those of
+	 * the same depth concurrently, so that a glob costs as many round trips
+	 * in a row as it has components with wildcards. Components without are
+	 * appended to the paths without listing their parent. Braces may not
+	 * hold slashes. The maximum depth and the filter do not apply.
+	 *
+	 * @param pattern
+	 * 			the glob
+	 * @return the matching entries, sorted by path, their depth being the
+	 * 			number of components of the pattern
+	 * @throws IOException
+	 * @throws AuthenticationException
+	 * @throws IllegalArgumentException
+	 * 			if the glob is malformed
+	 */
+	public List<Entry> globStatus(String pattern) throws IOException, AuthenticationException {
+		Assert.notNull(pattern, "Property <pattern> must not be null");
+		List<GlobPattern> components = new ArrayList<GlobPattern>();
+		for (String component : pattern.split("/")) {
+			if (component.length() > 0) {
+				components.add(GlobPattern.compile(component));
+			}
+		}
+
+		String root = pattern.startsWith("/") ? "/" : "";
+		if (components.isEmpty()) {
+			return stat(Collections.singletonList(root), 0);
+		}
+
+		List<String> parents = Collections.singletonList(root);
+		for (int i = 0; i < components.size(); i++) {
+			GlobPattern component = components.get(i);
+			boolean last = i == components.size() - 1;
+			if (!component.hasWildcard()) {
+				List<String> paths = new ArrayList<String>(parents.size());
+				for (String parent : parents) {
+					paths.add(child(parent, component.getGlob()));
+				}
+				if (last) {
+					return sort(stat(paths, i + 1));
+				}
+				parents = paths;
+				continue;
+			}
+
+			List<Entry> matches = list(parents, component, i + 1, !last);
+			if (last) {
+				return sort(matches);
+			}
+			parents = new ArrayList<String>(matches.size());
+			for (Entry match : matches) {
+				parents.add(match.getPath());
+			}
+			if (parents.isEmpty()) {
+				break;
+			}
+		}
+		return new ArrayList<Entry>();
+	}
+
+	/**
+	 * Shuts down the worker pool if it was created by this walker
+	 */
+	public void shutdown() {
+		if (ownsExecutor) {
+			executor.shutdownNow();
+		}
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Sets how deep to walk, 1 listing the children of the directory only
+	 *
+	 * @param maxDepth
+	 */
+	public void setMaxDepth(int maxDepth) {
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("Property <maxDepth> must be positive");
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Property <queueCapacity> must be positive");
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	public int getMaxPendingDirectories() {
+		return maxPendingDirectories;
+	}
+
+	/**
+	 * Sets how many directories found may wait for a worker before the
+	 * workers list those they find themselves
+	 *
+	 * @param maxPendingDirectories
+	 */
+	public void setMaxPendingDirectories(int maxPendingDirectories) {
+		if (maxPendingDirectories < 1) {
+			throw new IllegalArgumentException("Property <maxPendingDirectories> must be positive");
+		}
+		this.maxPendingDirectories = maxPendingDirectories;
+	}
+
+	public PathFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Sets which files and directories to return and walk into, null for all
+	 *
+	 * @param filter
+	 */
+	public void setFilter(PathFilter filter) {
+		this.filter = filter;
+	}
+
+	/*
+	 * Lists the parents concurrently, keeping their children matching the
+	 * component, and only the directories unless the component is the last.
+	 * Parents which do not exist are skipped.
+	 */
+	private List<Entry> list(List<String> parents, final GlobPattern component, final int depth,
+			final boolean directoriesOnly) throws IOException, AuthenticationException {
+		List<Callable<List<Entry>>> listings = new ArrayList<Callable<List<Entry>>>(parents.size());
+		for (final String parent : parents) {
+			listings.add(new Callable<List<Entry>>() {
+				@Override
+				public List<Entry> call() throws Exception {
+					List<Entry> matches = new ArrayList<Entry>();
+					FileStatusIterator children;
+					try {
+						children = connection.listStatusIterator(parent);
+					}
+					catch(WebHDFSException e) {
+						if (e.getStatusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+							return matches;
+						}
+						throw e;
+					}
+					try {
+						while (children.hasNext()) {
+							FileStatus status = children.next();
+							String name = status.getPathSuffix();
+							// a file lists as itself, with no name
+							if (name == null || name.length() == 0 || !component.matches(name)
+									|| (directoriesOnly && status.getType() != FileStatus.Type.DIRECTORY)) {
+								continue;
+							}
+							matches.add(new Entry(child(parent, name), status, depth));
+						}
+					}
+					finally {
+						Closeables.closeQuietly(children);
+					}
+					return matches;
+				}
+			});
+		}
+
+		List<Entry> matches = new ArrayList<Entry>();
+		for (List<Entry> listing : invokeAll(listings)) {
+			matches.addAll(listing);
+		}
+		return matches;
+	}
+
+	/*
+	 * Reads the statuses of the paths concurrently, skipping the missing ones.
+	 */
+	private List<Entry> stat(List<String> paths, final int depth) throws IOException, AuthenticationException {
+		List<Callable<Entry>> statuses = new ArrayList<Callable<Entry>>(paths.size());
+		for (final String path : paths) {
+			statuses.add(new Callable<Entry>() {
+				@Override
+				public Entry call() throws Exception {
+					try {
+						return new Entry(path, connection.getStatus(path), depth);
+					}
+					catch(WebHDFSException e) {
+						if (e.getStatusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+							return null;
+						}
+						throw e;
+					}
+				}
+			});
+		}
+
+		List<Entry> entries = new ArrayList<Entry>(paths.size());
+		for (Entry entry : invokeAll(statuses)) {
+			if (entry != null) {
+				entries.add(entry);
+			}
+		}
+		return entries;
+	}
+
+	/*
+	 * Runs the tasks on the workers, the calling thread running the last
+	 * one, and waits for all of them, cancelling the others as soon as one
+	 * fails.
+	 */
+	private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException, AuthenticationException {
+		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		try {
+			for (int i = 0; i < tasks.size() - 1; i++) {
+				futures.add(executor.submit(tasks.get(i)));
+			}
+			List<T> results = new ArrayList<T>(tasks.size());
+			if (!tasks.isEmpty()) {
+				T own = tasks.get(tasks.size() - 1).call();
+				for (Future<T> future : futures) {
+					results.add(future.get());
+				}
+				results.add(own);
+			}
+			return results;
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while listing");
+		}
+		catch(ExecutionException e) {
+			throw rethrow(e.getCause());
+		}
+		catch(Exception e) {
+			throw rethrow(e);
+		}
+		finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private static IOException rethrow(Throwable t) throws AuthenticationException {
+		if (t instanceof IOException) {
+			return (IOException) t;
+		}
+		if (t instanceof AuthenticationException) {
+			throw (AuthenticationException) t;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new IOException(t);
+	}
+
+	private static List<Entry> sort(List<Entry> entries) {
+		Collections.sort(entries, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return e1.getPath().compareTo(e2.getPath());
+			}
+		});
+		return entries;
+	}
+
+	static String child(String parent, String suffix) {
+		if (suffix == null || suffix.length() == 0) {
+			// the path listed was a file
+			return parent;
+		}
+		return parent.length() == 0 || parent.endsWith("/") ? parent + suffix : parent + "/" + suffix;
+	}
+
+	/**
+	 * A file or directory found by a walk.
+	 */
+	public static final class Entry {
+		private final String path;
+		private final FileStatus status;
+		private final int depth;
+
+		Entry(String path, FileStatus status, int depth) {
+			this.path = path;
+			this.status = status;
+			this.depth = depth;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public FileStatus getStatus() {
+			return status;
+		}
+
+		/**
+		 * @return how far below the walked directory the entry is, 1 for its
+		 * 			children
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		@Override
+		public String toString() {
+			return path;
+		}
+	}
+
+	/**
+	 * The entries of a running walk, read as the workers find them.
+	 * <p>
+	 * The first listing failing fails the walk, {@link #hasNext()} throwing
+	 * its exception, wrapped if an {@link AuthenticationException}.
+	 */
+	public final class Walk implements Closeable {
+		private final BlockingQueue<Object> queue;
+		private final int maxPendingDirectories;
+		private final int maxDepth;
+		private final PathFilter filter;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final AtomicInteger waiting = new AtomicInteger();
+		private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		private volatile boolean closed;
+
+		private Entry next;
+		private boolean done;
+
+		Walk(int queueCapacity, int maxPendingDirectories, int maxDepth, PathFilter filter) {
+			this.queue = new ArrayBlockingQueue<Object>(queueCapacity);
+			this.maxPendingDirectories = maxPendingDirectories;
+			this.maxDepth = maxDepth;
+			this.filter = filter;
+		}
+
+		/**
+		 * @return true if another entry is available, waiting for the
+		 * 			workers to find it
+		 * @throws IOException
+		 * 			if a listing failed
+		 */
+		public boolean hasNext() throws IOException {
+			if (next != null) {
+				return true;
+			}
+			if (done) {
+				return false;
+			}
+			Object item;
+			try {
+				while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+					if (failure.get() != null) {
+						item = END;
+						break;
+					}
+				}
+			}
+			catch(InterruptedException e) {
+				close();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while walking");
+			}
+			if (item == END) {
+				done = true;
+				Exception e = failure.get();
+				if (e instanceof IOException) {
+					throw (IOException) e;
+				}
+				if (e instanceof AuthenticationException) {
+					throw new WalkException((AuthenticationException) e);
+				}
+				if (e != null) {
+					throw (RuntimeException) e;
+				}
+				return false;
+			}
+			next = (Entry) item;
+			return true;
+		}
+
+		/**
+		 * @return the next entry
+		 * @throws IOException
+		 * 			if a listing failed
+		 * @throws NoSuchElementException
+		 * 			if no entry is left
+		 */
+		public Entry next() throws IOException {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Entry entry = next;
+			next = null;
+			return entry;
+		}
+
+		/**
+		 * Stops the walk, the workers giving up the directories they list
+		 */
+		@Override
+		public void close() {
+			closed = true;
+			done = true;
+			next = null;
+			queue.clear();
+		}
+
+		void schedule(final String path, final int depth) {
+			pending.incrementAndGet();
+			waiting.incrementAndGet();
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						waiting.decrementAndGet();
+						try {
+							list(path, depth);
+						}
+						finally {
+							finish();
+						}
+					}
+				});
+			}
+			catch(RejectedExecutionException e) {
+				waiting.decrementAndGet();
+				fail(e, path, depth);
+				finish();
+			}
+		}
+
+		private void list(String path, int depth) {
+			try {
+				if (!closed) {
+					handOver(read(path, depth), depth);
+				}
+			}
+			catch(Exception e) {
+				fail(e, path, depth);
+			}
+		}
+
+		/*
+		 * Reads the whole listing, so that its response is closed before
+		 * waiting for room in the queue.
+		 */
+		private List<Entry> read(String path, int depth) throws IOException, AuthenticationException {
+			List<Entry> entries = new ArrayList<Entry>();
+			FileStatusIterator children = connection.listStatusIterator(path);
+			try {
+				while (!closed && children.hasNext()) {
+					FileStatus status = children.next();
+					String childPath = child(path, status.getPathSuffix());
+					if (filter == null || filter.accept(childPath, status)) {
+						entries.add(new Entry(childPath, status, depth));
+					}
+				}
+			}
+			finally {
+				Closeables.closeQuietly(children);
+			}
+			return entries;
+		}
+
+		private void handOver(List<Entry> entries, int depth) {
+			for (Entry entry : entries) {
+				if (!offer(entry)) {
+					return;
+				}
+				if (entry.getStatus().getType() == FileStatus.Type.DIRECTORY && depth < maxDepth) {
+					if (waiting.get() < maxPendingDirectories) {
+						schedule(entry.getPath(), depth + 1);
+					} else {
+						list(entry.getPath(), depth + 1);
+					}
+				}
+			}
+		}
+
+		private void fail(Exception e, String path, int depth) {
+			if (depth > 1 && e instanceof WebHDFSException
+					&& ((WebHDFSException) e).getStatusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+				// deleted since its parent was listed
+				return;
+			}
+			if (failure.compareAndSet(null, e)) {
+				// the caller finds out through END, or by polling
+				closed = true;
+				queue.clear();
+				queue.offer(END);
+			}
+		}
+
+		private void finish() {
+			if (pending.decrementAndGet() == 0 && failure.get() == null) {
+				offer(END);
+			}
+		}
+
+		/*
+		 * Waits for room in the queue, unless the walk is closed meanwhile.
+		 */
+		private boolean offer(Object item) {
+			try {
+				while (!closed) {
+					if (queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+	}
+
+	/*
+	 * Carries an AuthenticationException through the IOException-only
+	 * signature of Walk.hasNext().
+	 */
+	static final class WalkException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		WalkException(AuthenticationException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized AuthenticationException getCause() {
+			return (AuthenticationException) super.getCause();
+		}
+	}
+}
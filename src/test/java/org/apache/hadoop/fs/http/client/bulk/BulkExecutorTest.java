@@ -0,0 +1,185 @@
+package org.apache.hadoop.fs.http.client.bulk;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.apache.hadoop.fs.http.client.impl.HttpFSServerStub;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class BulkExecutorTest {
+
+	static final String NOT_FOUND = "{\"RemoteException\":{\"exception\":\"FileNotFoundException\"}}";
+
+	HttpFSServerStub server = null;
+	BulkExecutor executor = null;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new HttpFSServerStub();
+		server.on("DELETE", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				if (exchange.getRequestURI().getPath().contains("missing")) {
+					HttpFSServerStub.send(exchange, 404, NOT_FOUND);
+				} else {
+					HttpFSServerStub.send(exchange, 200, "{\"boolean\":true}");
+				}
+			}
+		});
+		executor = new BulkExecutor(AuthenticationType.PSEUDO.createConnection(server.getUrl(), "stub", "n/a"), 4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdown();
+		server.stop();
+	}
+
+	static List<String> paths(String... names) {
+		List<String> paths = new ArrayList<String>();
+		for (String name : names) {
+			paths.add("tmp/" + name);
+		}
+		return paths;
+	}
+
+	@Test
+	public void reportsEveryPathInOrder() throws Exception {
+		BulkReport report = executor.delete(paths("a", "missing1", "b", "c", "missing2", "d"));
+		assertThat(report.getResults().size(), is(equalTo(6)));
+		assertThat(report.getResults().get(2).getPath(), is(equalTo("tmp/b")));
+		assertThat(report.getResults().get(2).getStatus(), is(equalTo(BulkReport.Status.SUCCEEDED)));
+		assertThat(report.getResults().get(4).getStatus(), is(equalTo(BulkReport.Status.FAILED)));
+		assertThat(report.getResults().get(4).getCode(), is(equalTo(404)));
+		assertThat(report.getSucceededCount(), is(equalTo(4)));
+		assertThat(report.getFailedCount(), is(equalTo(2)));
+		assertThat(report.getFailures().toString(), is(equalTo("[tmp/missing1: FAILED 404, tmp/missing2: FAILED 404]")));
+		assertThat(report.isSuccessful(), is(false));
+		assertThat(server.getRequests().size(), is(equalTo(6)));
+	}
+
+	@Test
+	public void unreachableServerFailsEveryPath() throws Exception {
+		server.stop();
+		BulkReport report = executor.execute(paths("a", "b"), PathOperations.setTimes(0L, -1L));
+		assertThat(report.getFailedCount(), is(equalTo(2)));
+		assertTrue(report.getResults().get(0).getError() instanceof IOException);
+	}
+
+	@Test
+	public void runtimeExceptionFailsOnlyItsPath() throws Exception {
+		BulkReport report = executor.execute(paths("a", "bad", "b"), new PathOperation() {
+			@Override
+			public String getName() {
+				return "CUSTOM";
+			}
+
+			@Override
+			public String apply(WebHDFSConnection connection, String path) throws IOException, AuthenticationException {
+				if (path.endsWith("bad")) {
+					throw new IllegalStateException("broken");
+				}
+				return connection.delete(path);
+			}
+		});
+		assertThat(report.getSucceededCount(), is(equalTo(2)));
+		assertThat(report.getFailedCount(), is(equalTo(1)));
+		assertTrue(report.getResults().get(1).getError() instanceof IllegalStateException);
+	}
+
+	@Test
+	public void remainingPathsAreSkippedAfterTooManyFailures() throws Exception {
+		BulkExecutor serial = new BulkExecutor(AuthenticationType.PSEUDO.createConnection(server.getUrl(), "stub", "n/a"), 1);
+		try {
+			serial.setMaxFailures(1);
+			BulkReport report = serial.delete(paths("a", "missing1", "b", "missing2", "c", "d"));
+			assertThat(report.getSucceededCount(), is(equalTo(2)));
+			assertThat(report.getFailedCount(), is(equalTo(2)));
+			assertThat(report.getSkippedCount(), is(equalTo(2)));
+			assertThat(server.getRequests().size(), is(equalTo(4)));
+		}
+		finally {
+			serial.shutdown();
+		}
+	}
+
+	@Test
+	public void valuesAreSentForEveryPath() throws Exception {
+		final List<String> replications = new ArrayList<String>();
+		server.on("SETREPLICATION", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				synchronized (replications) {
+					replications.add(params.get("replication"));
+				}
+				HttpFSServerStub.send(exchange, 200, "{\"boolean\":true}");
+			}
+		});
+		BulkReport report = executor.execute(paths("a", "b", "c"), PathOperations.setReplication((short) 2));
+		assertThat(report.getOperation(), is(equalTo("SETREPLICATION")));
+		assertThat(report.isSuccessful(), is(true));
+		assertThat(replications.toString(), is(equalTo("[2, 2, 2]")));
+	}
+
+	@Test
+	public void parallelismIsBounded() throws Exception {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		server.on("SETPERMISSION", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				int current = inFlight.incrementAndGet();
+				synchronized (maxInFlight) {
+					maxInFlight.set(Math.max(maxInFlight.get(), current));
+				}
+				try {
+					Thread.sleep(20L);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				inFlight.decrementAndGet();
+				HttpFSServerStub.send(exchange, 200, "");
+			}
+		});
+		ExecutorService pool = Executors.newCachedThreadPool();
+		try {
+			BulkExecutor pair = new BulkExecutor(AuthenticationType.PSEUDO.createConnection(server.getUrl(), "stub", "n/a"),
+					pool, 2);
+			BulkReport report = pair.execute(paths("a", "b", "c", "d", "e", "f", "g", "h"),
+					PathOperations.setPermission(0644));
+			assertThat(report.isSuccessful(), is(true));
+			assertTrue(maxInFlight.get() <= 2);
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void rateIsCapped() throws Exception {
+		executor.setMaxPerSecond(50);
+		BulkReport report = executor.delete(paths("a", "b", "c", "d", "e", "f"));
+		assertThat(report.isSuccessful(), is(true));
+		// five intervals of 20 ms between the six requests
+		assertTrue(report.getElapsedMillis() >= 95L);
+	}
+}
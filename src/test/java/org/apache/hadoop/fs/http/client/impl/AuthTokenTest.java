@@ -0,0 +1,46 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.junit.Test;
+
+public class AuthTokenTest {
+
+	@Test
+	public void fieldsAreParsed() {
+		AuthToken token = new AuthToken(new Token("u=alice&p=alice@EXAMPLE.COM&t=kerberos&e=4102444800000&s=c2ln=="));
+		assertThat(token.getUser(), is(equalTo("alice")));
+		assertThat(token.getPrincipal(), is(equalTo("alice@EXAMPLE.COM")));
+		assertThat(token.getType(), is(equalTo("kerberos")));
+		assertThat(token.getExpires(), is(equalTo(4102444800000L)));
+		assertThat(token.getSignature(), is(equalTo("c2ln==")));
+	}
+
+	@Test
+	public void fieldsAreFoundInAnyOrder() {
+		AuthToken token = new AuthToken(new Token("\"s=c2ln&e=1000&t=simple&u=bob\""));
+		assertThat(token.getUser(), is(equalTo("bob")));
+		assertThat(token.getExpires(), is(equalTo(1000L)));
+		assertThat(token.getPrincipal(), is(nullValue()));
+	}
+
+	@Test
+	public void validityHonoursMargin() {
+		AuthToken token = new AuthToken(new Token("u=bob&e=10000&s=c2ln"));
+		assertTrue(token.isValid(5000L, 4000L));
+		assertFalse(token.isValid(5000L, 5000L));
+		assertFalse(token.isValid(10000L, 0L));
+	}
+
+	@Test
+	public void tokenWithoutExpiryNeverExpires() {
+		assertTrue(new AuthToken(new Token("u=bob&e=never&s=c2ln")).isValid(Long.MAX_VALUE - 1, 0L));
+		assertFalse(AuthToken.UNSET.isValid(0L, 0L));
+	}
+}
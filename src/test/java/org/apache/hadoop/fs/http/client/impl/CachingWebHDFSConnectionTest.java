@@ -0,0 +1,140 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingWebHDFSConnectionTest {
+
+	static final String STATUS = "{\"FileStatus\":{\"length\":0,\"type\":\"FILE\"}}";
+	static final String LISTING = "{\"FileStatuses\":{\"FileStatus\":[{\"pathSuffix\":\"file\",\"length\":0,\"type\":\"FILE\"}]}}";
+	static final String NOT_FOUND = "{\"RemoteException\":{\"exception\":\"FileNotFoundException\","
+			+ "\"javaClassName\":\"java.io.FileNotFoundException\",\"message\":\"File does not exist\"}}";
+
+	HttpFSServerStub server = null;
+	MetadataCache cache = null;
+	CachingWebHDFSConnection conn = null;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new HttpFSServerStub();
+		server.on("GETFILESTATUS", 200, STATUS);
+		server.on("LISTSTATUS", 200, LISTING);
+		server.on("DELETE", 200, "{\"boolean\":true}");
+		cache = new MetadataCache();
+		conn = new CachingWebHDFSConnection(new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a"), cache, "stub");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void statusIsCached() throws Exception {
+		conn.getStatus("user/stub/file");
+		assertThat(conn.getStatus("/user/stub/file/").getLength(), is(equalTo(0L)));
+		assertThat(server.getRequests().size(), is(equalTo(1)));
+
+		assertThat(ResponseUtil.getCode(conn.getFileStatus("user/stub/file")), is(equalTo(200)));
+		conn.getFileStatus("user/stub/file");
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+		assertThat(cache.getHitCount(), is(equalTo(2L)));
+		assertThat(cache.getMissCount(), is(equalTo(2L)));
+	}
+
+	@Test
+	public void missingPathIsCached() throws Exception {
+		server.on("GETFILESTATUS", 404, NOT_FOUND);
+		for (int i = 0; i < 2; i++) {
+			try {
+				conn.getStatus("user/stub/missing");
+				fail("Expected WebHDFSException");
+			}
+			catch(WebHDFSException e) {
+				assertThat(e.getStatusCode(), is(equalTo(404)));
+				assertThat(e.getException(), is(equalTo("FileNotFoundException")));
+			}
+		}
+		assertThat(server.getRequests().size(), is(equalTo(1)));
+
+		cache.setNegativeTtl(0L);
+		conn.getFileStatus("user/stub/missing");
+		conn.getFileStatus("user/stub/missing");
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+	}
+
+	@Test
+	public void otherErrorsAreNotCached() throws Exception {
+		server.on("GETFILESTATUS", 500, "");
+		conn.getFileStatus("user/stub/file");
+		conn.getFileStatus("user/stub/file");
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void changesInvalidateParentsAndChildren() throws Exception {
+		conn.getListing("user/stub");
+		conn.getStatus("user/stub/file");
+		conn.getStatus("user/other");
+		assertThat(cache.size(), is(equalTo(3)));
+
+		conn.delete("user/stub/file");
+		assertThat(cache.size(), is(equalTo(1)));
+		conn.getListing("user/stub");
+		assertThat(server.getRequests().size(), is(equalTo(5)));
+
+		conn.delete("user/stub");
+		assertThat(cache.get("stub", CachingWebHDFSConnection.LISTING, "user/stub", System.currentTimeMillis()),
+				is(nullValue()));
+		assertThat(cache.get("stub", CachingWebHDFSConnection.STATUS, "user/other", System.currentTimeMillis()),
+				is(notNullValue()));
+	}
+
+	@Test
+	public void entriesExpire() throws Exception {
+		cache.setTtl(1L);
+		conn.getStatus("user/stub/file");
+		Thread.sleep(5L);
+		conn.getStatus("user/stub/file");
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void usersDoNotShareEntries() throws Exception {
+		CachingWebHDFSConnection other = new CachingWebHDFSConnection(conn.getConnection(), cache, "other");
+		conn.getStatus("user/stub/file");
+		other.getStatus("user/stub/file");
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() {
+		cache.setMaxSize(2);
+		long now = System.currentTimeMillis();
+		long generation = cache.getGeneration();
+		cache.put("stub", "kind", "a", "a", false, generation, now);
+		cache.put("stub", "kind", "b", "b", false, generation, now);
+		cache.get("stub", "kind", "a", now);
+		cache.put("stub", "kind", "c", "c", false, generation, now);
+		assertThat(cache.get("stub", "kind", "b", now), is(nullValue()));
+		assertThat((String) cache.get("stub", "kind", "a", now), is(equalTo("a")));
+		assertThat(cache.getEvictionCount(), is(equalTo(1L)));
+
+		// a read started before a change of its path is not kept, unlike one of an unrelated path
+		cache.invalidate("d/e");
+		cache.put("stub", "kind", "d", "d", false, generation, now);
+		assertThat(cache.get("stub", "kind", "d", now), is(nullValue()));
+		cache.put("stub", "kind", "x/y", "y", false, generation, now);
+		assertThat((String) cache.get("stub", "kind", "x/y", now), is(equalTo("y")));
+	}
+}
@@ -0,0 +1,137 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.http.client.CircuitOpenException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakingWebHDFSConnectionTest {
+
+	static final String STATUS = "{\"FileStatus\":{\"length\":0,\"type\":\"FILE\"}}";
+
+	HttpFSServerStub server = null;
+	CircuitBreakerPolicy policy = null;
+	CircuitBreakingWebHDFSConnection conn = null;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new HttpFSServerStub();
+		policy = new CircuitBreakerPolicy();
+		policy.setFailureThreshold(3);
+		conn = createConnection(server);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	CircuitBreakingWebHDFSConnection createConnection(HttpFSServerStub stub) {
+		return new CircuitBreakingWebHDFSConnection(new PseudoWebHDFSConnection(stub.getUrl(), "stub", "n/a"),
+				policy.getBreaker(stub.getUrl()));
+	}
+
+	@Test
+	public void breakerOpensAfterConsecutiveFailures() throws Exception {
+		server.on("GETFILESTATUS", 503, "");
+		for (int i = 0; i < 3; i++) {
+			conn.getFileStatus("user/stub/file");
+		}
+		assertThat(conn.getBreaker().getState(), is(equalTo(CircuitBreaker.State.OPEN)));
+		assertThat(conn.getBreaker(), is(sameInstance(policy.getBreaker(server.getUrl()))));
+
+		try {
+			conn.getStatus("user/stub/file");
+			fail("Expected CircuitOpenException");
+		}
+		catch(CircuitOpenException e) {
+			// expected
+		}
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+		assertThat(conn.getBreaker().getTripCount(), is(equalTo(1L)));
+		assertThat(conn.getBreaker().getRejectedCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void answersResetFailureCount() throws Exception {
+		server.on("GETFILESTATUS", 503, "");
+		conn.getFileStatus("user/stub/file");
+		conn.getFileStatus("user/stub/file");
+		server.on("GETFILESTATUS", 404, "");
+		conn.getFileStatus("user/stub/file");
+		server.on("GETFILESTATUS", 503, "");
+		conn.getFileStatus("user/stub/file");
+		conn.getFileStatus("user/stub/file");
+		assertThat(conn.getBreaker().getState(), is(equalTo(CircuitBreaker.State.CLOSED)));
+	}
+
+	@Test
+	public void probesCloseBreaker() throws Exception {
+		policy.setOpenTimeout(0L);
+		policy.setProbeThreshold(2);
+		server.on("GETFILESTATUS", 503, "");
+		for (int i = 0; i < 3; i++) {
+			conn.getFileStatus("user/stub/file");
+		}
+		Thread.sleep(5L);
+
+		server.on("GETFILESTATUS", 200, STATUS);
+		conn.getStatus("user/stub/file");
+		assertThat(conn.getBreaker().getState(), is(equalTo(CircuitBreaker.State.HALF_OPEN)));
+		conn.getStatus("user/stub/file");
+		assertThat(conn.getBreaker().getState(), is(equalTo(CircuitBreaker.State.CLOSED)));
+	}
+
+	@Test
+	public void failedProbeReopensBreakerLonger() {
+		policy.setFailureThreshold(1);
+		policy.setOpenTimeout(100L);
+		CircuitBreaker breaker = policy.getBreaker("http://localhost:1");
+
+		breaker.release(breaker.acquire(0L), true, 0L);
+		assertThat(breaker.acquire(50L), is(nullValue()));
+		CircuitBreaker.State probe = breaker.acquire(100L);
+		assertThat(probe, is(equalTo(CircuitBreaker.State.HALF_OPEN)));
+		// one probe at a time
+		assertThat(breaker.acquire(100L), is(nullValue()));
+
+		breaker.release(probe, true, 100L);
+		assertThat(breaker.acquire(250L), is(nullValue()));
+		assertThat(breaker.acquire(300L), is(equalTo(CircuitBreaker.State.HALF_OPEN)));
+		assertThat(breaker.getTripCount(), is(equalTo(2L)));
+	}
+
+	@Test
+	public void failoverPassesOverOpenBreaker() throws Exception {
+		policy.setFailureThreshold(1);
+		server.on("GETFILESTATUS", 503, "");
+		HttpFSServerStub healthy = new HttpFSServerStub();
+		healthy.on("GETFILESTATUS", 200, STATUS);
+		try {
+			FailoverWebHDFSConnection failover = new FailoverWebHDFSConnection(Arrays.asList(
+					new Endpoint(server.getUrl(), conn),
+					new Endpoint(healthy.getUrl(), createConnection(healthy))),
+					LoadBalancingPolicy.ROUND_ROBIN);
+			// keep the failed endpoint in rotation
+			failover.setBackoff(0L);
+
+			for (int i = 0; i < 4; i++) {
+				assertThat(failover.getStatus("user/stub/file").getLength(), is(equalTo(0L)));
+			}
+			assertThat(server.getRequests().size(), is(equalTo(1)));
+			assertThat(healthy.getRequests().size(), is(equalTo(4)));
+		}
+		finally {
+			healthy.stop();
+		}
+	}
+}
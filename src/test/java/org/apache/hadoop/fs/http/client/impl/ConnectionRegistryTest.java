@@ -0,0 +1,151 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSConnectionFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionRegistryTest {
+
+	ConnectionRegistry registry = null;
+
+	@Before
+	public void setUp() {
+		registry = new ConnectionRegistry();
+	}
+
+	static ConnectionRegistry.Key key(String username) {
+		return new ConnectionRegistry.Key(Collections.singletonList("http://localhost:14000"), username, "",
+				AuthenticationType.PSEUDO, null, null);
+	}
+
+	static ConnectionRegistry.ConnectionSource source(final String username) {
+		return new ConnectionRegistry.ConnectionSource() {
+			@Override
+			public WebHDFSConnection createConnection() {
+				return new PseudoWebHDFSConnection("http://localhost:14000", username, "");
+			}
+		};
+	}
+
+	@Test
+	public void connectionIsCreatedOncePerKey() {
+		WebHDFSConnection alice = registry.getConnection(key("alice"), source("alice"));
+		assertThat(registry.getConnection(key("alice"), source("alice")), is(sameInstance(alice)));
+		assertThat(registry.getConnection(key("bob"), source("bob")), is(not(sameInstance(alice))));
+		assertThat(registry.getMissCount(), is(equalTo(2L)));
+		assertThat(registry.getHitCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() {
+		registry.setMaxSize(2);
+		WebHDFSConnection alice = registry.getConnection(key("alice"), source("alice"));
+		registry.getConnection(key("bob"), source("bob"));
+		registry.getConnection(key("alice"), source("alice"));
+		registry.getConnection(key("carol"), source("carol"));
+
+		assertThat(registry.size(), is(equalTo(2)));
+		assertThat(registry.getEvictionCount(), is(equalTo(1L)));
+		assertThat(registry.getConnection(key("alice"), source("alice")), is(sameInstance(alice)));
+		assertThat(registry.getMissCount(), is(equalTo(3L)));
+	}
+
+	@Test
+	public void idleConnectionsAreEvicted() throws Exception {
+		registry.setMaxIdle(20L);
+		registry.getConnection(key("alice"), source("alice"));
+		Thread.sleep(50L);
+		registry.getConnection(key("bob"), source("bob"));
+
+		assertThat(registry.size(), is(equalTo(1)));
+		assertThat(registry.getEvictionCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void concurrentCallersShareOneConnection() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<WebHDFSConnection>> connections = new ArrayList<Future<WebHDFSConnection>>();
+			for (int i = 0; i < 32; i++) {
+				connections.add(executor.submit(new Callable<WebHDFSConnection>() {
+					@Override
+					public WebHDFSConnection call() throws Exception {
+						return registry.getConnection(key("alice"), source("alice"));
+					}
+				}));
+			}
+			WebHDFSConnection first = connections.get(0).get();
+			for (Future<WebHDFSConnection> connection : connections) {
+				assertThat(connection.get(), is(sameInstance(first)));
+			}
+			assertThat(registry.getMissCount(), is(equalTo(1L)));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void idleConnectionsAreEvictedOnHits() throws Exception {
+		registry.setMaxIdle(20L);
+		registry.getConnection(key("alice"), source("alice"));
+		registry.getConnection(key("bob"), source("bob"));
+		Thread.sleep(50L);
+		registry.getConnection(key("bob"), source("bob"));
+
+		assertThat(registry.size(), is(equalTo(1)));
+		assertThat(registry.getEvictionCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void evictedConnectionsKeepTheirTokens() {
+		final DelegationWebHDFSConnection delegation = new DelegationWebHDFSConnection("http://localhost:14000", "alice",
+				null, new PseudoWebHDFSConnection("http://localhost:14000", "alice", ""));
+		delegation.setDelegation("token");
+
+		registry.setMaxSize(1);
+		registry.getConnection(key("alice"), new ConnectionRegistry.ConnectionSource() {
+			@Override
+			public WebHDFSConnection createConnection() {
+				return new FailoverWebHDFSConnection(Collections.singletonList(new Endpoint("http://localhost:14000",
+						delegation)), LoadBalancingPolicy.ROUND_ROBIN);
+			}
+		});
+		registry.getConnection(key("bob"), source("bob"));
+
+		// still used by the callers holding it
+		assertThat(registry.getEvictionCount(), is(equalTo(1L)));
+		assertThat(delegation.getDelegation(), is(equalTo("token")));
+	}
+
+	@Test
+	public void factoryFollowsUsernameChanges() {
+		WebHDFSConnectionFactory factory = new WebHDFSConnectionFactory("localhost", 14000, "alice", "",
+				AuthenticationType.PSEUDO);
+		factory.setRegistry(registry);
+
+		WebHDFSConnection alice = factory.getConnection();
+		assertThat(factory.getConnection(), is(sameInstance(alice)));
+
+		factory.setUsername("bob");
+		WebHDFSConnection bob = factory.getConnection();
+		assertThat(bob, is(not(sameInstance(alice))));
+		assertThat(((PseudoWebHDFSConnection) bob).getPrincipal(), is(equalTo("bob")));
+		assertThat(factory.getConnection("alice"), is(sameInstance(alice)));
+	}
+}
@@ -0,0 +1,164 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class DelegationWebHDFSConnectionTest {
+
+	HttpFSServerStub server = null;
+	DelegationWebHDFSConnection conn = null;
+
+	AtomicInteger issued = new AtomicInteger();
+	AtomicInteger renewed = new AtomicInteger();
+	List<String> delegations = Collections.synchronizedList(new ArrayList<String>());
+	volatile int renewStatus = 200;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new HttpFSServerStub();
+		server.on("GETDELEGATIONTOKEN", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				HttpFSServerStub.send(exchange, 200, "{\"Token\":{\"urlString\":\"token" + issued.incrementAndGet() + "\"}}");
+			}
+		});
+		server.on("RENEWDELEGATIONTOKEN", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				renewed.incrementAndGet();
+				if (renewStatus != 200) {
+					HttpFSServerStub.send(exchange, renewStatus, "{\"RemoteException\":{\"exception\":\"InvalidToken\","
+							+ "\"javaClassName\":\"org.apache.hadoop.security.token.SecretManager$InvalidToken\","
+							+ "\"message\":\"token " + params.get("token") + " is expired\"}}");
+					return;
+				}
+				HttpFSServerStub.send(exchange, 200, "{\"long\":4102444800000}");
+			}
+		});
+		server.on("CANCELDELEGATIONTOKEN", 200, "");
+		server.on("GETFILESTATUS", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				delegations.add(params.get("delegation"));
+				assertThat(params.get("user.name"), is(nullValue()));
+				HttpFSServerStub.send(exchange, 200, "{\"FileStatus\":{\"length\":0,\"type\":\"FILE\"}}");
+			}
+		});
+
+		PseudoWebHDFSConnection issuer = new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a");
+		conn = new DelegationWebHDFSConnection(server.getUrl(), "stub", null, issuer);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		conn.cancel();
+		server.stop();
+	}
+
+	@Test
+	public void tokenIsFetchedOnceAndSentAsDelegation() throws Exception {
+		conn.getStatus("user/stub/file");
+		conn.getStatus("user/stub/file");
+		assertThat(issued.get(), is(equalTo(1)));
+		assertThat(delegations, is(equalTo(java.util.Arrays.asList("token1", "token1"))));
+	}
+
+	@Test
+	public void tokenIsRenewedInBackground() throws Exception {
+		conn.setRenewInterval(50L);
+		conn.getStatus("user/stub/file");
+		for (int i = 0; i < 50 && conn.getExpires() == 0L; i++) {
+			Thread.sleep(20);
+		}
+		assertThat(conn.getExpires(), is(equalTo(4102444800000L)));
+		assertThat(issued.get(), is(equalTo(1)));
+	}
+
+	@Test
+	public void tokenRefusedRenewalIsReplaced() throws Exception {
+		renewStatus = 403;
+		conn.setRenewInterval(50L);
+		conn.getStatus("user/stub/file");
+		for (int i = 0; i < 50 && issued.get() < 2; i++) {
+			Thread.sleep(20);
+		}
+		conn.getStatus("user/stub/file");
+		assertThat(delegations.get(1).startsWith("token"), is(true));
+		assertTrue(issued.get() >= 2);
+		assertThat(delegations.get(1).equals("token1"), is(false));
+	}
+
+	@Test
+	public void workerUsesTokenHandedOut() throws Exception {
+		DelegationWebHDFSConnection worker = new DelegationWebHDFSConnection(server.getUrl(), "handed+out", null);
+		worker.getStatus("user/stub/file");
+		assertThat(delegations, is(equalTo(Collections.singletonList("handed+out"))));
+		assertThat(issued.get(), is(equalTo(0)));
+	}
+
+	@Test
+	public void cancelReleasesToken() throws Exception {
+		conn.getStatus("user/stub/file");
+		conn.cancel();
+		assertThat(conn.getDelegation(), is(nullValue()));
+		assertTrue(server.getRequests().contains("PUT CANCELDELEGATIONTOKEN /webhdfs/v1/"));
+	}
+
+	@Test
+	public void cancelledConnectionFetchesNoNewToken() throws Exception {
+		conn.getStatus("user/stub/file");
+		conn.cancel();
+		try {
+			conn.getStatus("user/stub/file");
+			fail("IllegalStateException expected");
+		}
+		catch(IllegalStateException e) {
+			// expected
+		}
+		assertThat(issued.get(), is(equalTo(1)));
+		assertThat(delegations.size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void collectedConnectionIsNoLongerRenewed() throws Exception {
+		DelegationWebHDFSConnection dropped = new DelegationWebHDFSConnection(server.getUrl(), "stub", null,
+				new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a"));
+		dropped.setRenewInterval(20L);
+		dropped.getStatus("user/stub/file");
+		for (int i = 0; i < 50 && renewed.get() == 0; i++) {
+			Thread.sleep(20);
+		}
+		assertTrue(renewed.get() > 0);
+
+		WeakReference<DelegationWebHDFSConnection> ref = new WeakReference<DelegationWebHDFSConnection>(dropped);
+		dropped = null;
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertThat(ref.get(), is(nullValue()));
+		Thread.sleep(50);
+		int count = renewed.get();
+		Thread.sleep(200);
+		assertThat(renewed.get(), is(equalTo(count)));
+	}
+}
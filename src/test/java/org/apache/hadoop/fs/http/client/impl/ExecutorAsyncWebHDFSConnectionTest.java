@@ -0,0 +1,130 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hadoop.fs.http.client.AsyncWebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class ExecutorAsyncWebHDFSConnectionTest {
+
+	ExecutorService executor = null;
+	CountDownLatch interrupted = null;
+
+	@Before
+	public void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(2);
+		interrupted = new CountDownLatch(1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void delegatesToBlockingConnection() throws Exception {
+		AsyncWebHDFSConnection async = new ExecutorAsyncWebHDFSConnection(connection(0L), executor);
+		assertThat(async.getFileStatus("user/foo").get(), is(equalTo("getFileStatus:user/foo")));
+	}
+
+	@Test
+	public void timeoutFailsAndInterruptsCall() throws Exception {
+		AsyncWebHDFSConnection async = new ExecutorAsyncWebHDFSConnection(connection(5000L), executor)
+				.withTimeout(50L, TimeUnit.MILLISECONDS);
+		try {
+			async.listStatus("user/foo").get();
+			fail("expected a timeout");
+		}
+		catch(ExecutionException e) {
+			assertThat(e.getCause(), is(instanceOf(TimeoutException.class)));
+		}
+		assertTrue(interrupted.await(1L, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void cancellationInterruptsCall() throws Exception {
+		AsyncWebHDFSConnection async = new ExecutorAsyncWebHDFSConnection(connection(5000L), executor);
+		ListenableFuture<String> future = async.listStatus("user/foo");
+		Thread.sleep(50L);
+		future.cancel(true);
+		assertTrue(interrupted.await(1L, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void timeoutAbortsRequestNeverAnswered() throws Exception {
+		final CountDownLatch answer = new CountDownLatch(1);
+		HttpFSServerStub server = new HttpFSServerStub();
+		server.on("LISTSTATUS", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				try {
+					answer.await();
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		server.on("GETFILESTATUS", 200, "{\"FileStatus\":{\"length\":0,\"type\":\"FILE\"}}");
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			AsyncWebHDFSConnection async = new ExecutorAsyncWebHDFSConnection(
+					AuthenticationType.PSEUDO.createConnection(server.getUrl(), "stub", "n/a"), single);
+			try {
+				async.withTimeout(100L, TimeUnit.MILLISECONDS).listStatus("user/foo").get();
+				fail("expected a timeout");
+			}
+			catch(ExecutionException e) {
+				assertThat(e.getCause(), is(instanceOf(TimeoutException.class)));
+			}
+			// the only worker thread is free again
+			assertTrue(async.getFileStatus("user/foo").get(2L, TimeUnit.SECONDS).contains("FILE"));
+		}
+		finally {
+			answer.countDown();
+			single.shutdownNow();
+			server.stop();
+		}
+	}
+
+	private WebHDFSConnection connection(final long delay) {
+		return (WebHDFSConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { WebHDFSConnection.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						try {
+							Thread.sleep(delay);
+						}
+						catch(InterruptedException e) {
+							interrupted.countDown();
+							throw e;
+						}
+						return method.getName() + ":" + args[0];
+					}
+				});
+	}
+}
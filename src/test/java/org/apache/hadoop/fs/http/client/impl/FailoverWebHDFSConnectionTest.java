@@ -0,0 +1,186 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSConnectionFactory;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class FailoverWebHDFSConnectionTest {
+
+	static final String STATUS = "{\"FileStatus\":{\"length\":0,\"type\":\"FILE\"}}";
+
+	static final String STANDBY = "{\"RemoteException\":{\"exception\":\"StandbyException\","
+			+ "\"javaClassName\":\"org.apache.hadoop.ipc.StandbyException\","
+			+ "\"message\":\"Operation category READ is not supported in state standby\"}}";
+
+	HttpFSServerStub active = null;
+	HttpFSServerStub standby = null;
+
+	@Before
+	public void setUp() throws Exception {
+		active = new HttpFSServerStub();
+		active.on("GETFILESTATUS", 200, STATUS);
+		standby = new HttpFSServerStub();
+		standby.on("GETFILESTATUS", 403, STANDBY);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		active.stop();
+		standby.stop();
+	}
+
+	static Endpoint endpoint(String url) {
+		return new Endpoint(url, new PseudoWebHDFSConnection(url, "stub", "n/a"));
+	}
+
+	@Test
+	public void standbyIsFailedOverAndLeftOut() throws Exception {
+		FailoverWebHDFSConnection conn = new FailoverWebHDFSConnection(
+				Arrays.asList(endpoint(standby.getUrl()), endpoint(active.getUrl())), LoadBalancingPolicy.ROUND_ROBIN);
+
+		for (int i = 0; i < 4; i++) {
+			assertThat(conn.getStatus("user/stub/file").getLength(), is(equalTo(0L)));
+		}
+		Endpoint first = conn.getEndpoints().get(0);
+		assertTrue(first.isStandby());
+		assertThat(first.getRequestCount(), is(equalTo(1L)));
+		assertThat(standby.getRequests().size(), is(equalTo(1)));
+		assertThat(active.getRequests().size(), is(equalTo(4)));
+	}
+
+	@Test
+	public void standbyResponseIsFailedOver() throws Exception {
+		FailoverWebHDFSConnection conn = new FailoverWebHDFSConnection(
+				Arrays.asList(endpoint(standby.getUrl()), endpoint(active.getUrl())), LoadBalancingPolicy.ROUND_ROBIN);
+
+		String json = conn.getFileStatus("user/stub/file");
+		assertThat(((Number) ResponseUtil.toMap(json).get(ResponseUtil.CODE)).intValue(), is(equalTo(200)));
+	}
+
+	@Test
+	public void unreachableEndpointIsFailedOver() throws Exception {
+		HttpFSServerStub down = new HttpFSServerStub();
+		down.stop();
+		FailoverWebHDFSConnection conn = new FailoverWebHDFSConnection(
+				Arrays.asList(endpoint(down.getUrl()), endpoint(active.getUrl())), LoadBalancingPolicy.ROUND_ROBIN);
+
+		conn.getStatus("user/stub/file");
+		conn.getStatus("user/stub/file");
+		Endpoint first = conn.getEndpoints().get(0);
+		assertThat(first.getFailureCount(), is(equalTo(1L)));
+		assertTrue(!first.isAvailable(System.currentTimeMillis()));
+		assertThat(active.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void errorsOfTheOperationAreNotFailedOver() throws Exception {
+		active.on("GETFILESTATUS", 404, "{\"RemoteException\":{\"exception\":\"FileNotFoundException\","
+				+ "\"javaClassName\":\"java.io.FileNotFoundException\",\"message\":\"File does not exist\"}}");
+		HttpFSServerStub other = new HttpFSServerStub();
+		other.on("GETFILESTATUS", 200, STATUS);
+		try {
+			FailoverWebHDFSConnection conn = new FailoverWebHDFSConnection(
+					Arrays.asList(endpoint(active.getUrl()), endpoint(other.getUrl())), LoadBalancingPolicy.ROUND_ROBIN);
+			try {
+				conn.getStatus("user/stub/missing");
+				fail("FileNotFoundException expected");
+			}
+			catch(WebHDFSException e) {
+				assertThat(e.getStatusCode(), is(equalTo(404)));
+			}
+			assertThat(other.getRequests().size(), is(equalTo(0)));
+		}
+		finally {
+			other.stop();
+		}
+	}
+
+	@Test
+	public void roundRobinSpreadsRequests() throws Exception {
+		standby.on("GETFILESTATUS", 200, STATUS);
+		FailoverWebHDFSConnection conn = new FailoverWebHDFSConnection(
+				Arrays.asList(endpoint(standby.getUrl()), endpoint(active.getUrl())), LoadBalancingPolicy.ROUND_ROBIN);
+
+		for (int i = 0; i < 10; i++) {
+			conn.getStatus("user/stub/file");
+		}
+		assertThat(standby.getRequests().size(), is(equalTo(5)));
+		assertThat(active.getRequests().size(), is(equalTo(5)));
+	}
+
+	@Test
+	public void uploadIsFailedOverBeforeSendingData() throws Exception {
+		final byte[] data = "some data".getBytes("UTF-8");
+		final byte[][] received = new byte[1][];
+		standby.on("CREATE", 403, STANDBY);
+		active.on("CREATE", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				if (!params.containsKey("datanode")) {
+					exchange.getResponseHeaders().set("Location",
+							active.getUrl() + exchange.getRequestURI().toString() + "&datanode=true");
+					HttpFSServerStub.send(exchange, 307, "");
+					return;
+				}
+				received[0] = HttpFSServerStub.readBody(exchange);
+				HttpFSServerStub.send(exchange, 201, "");
+			}
+		});
+		FailoverWebHDFSConnection conn = new FailoverWebHDFSConnection(
+				Arrays.asList(endpoint(standby.getUrl()), endpoint(active.getUrl())), LoadBalancingPolicy.ROUND_ROBIN);
+
+		conn.create("user/stub/file", new ByteArrayInputStream(data), data.length);
+		assertArrayEquals(data, received[0]);
+	}
+
+	@Test
+	public void leastOutstandingPrefersIdleEndpoint() {
+		Endpoint busy = endpoint("http://busy:14000");
+		Endpoint idle = endpoint("http://idle:14000");
+		busy.started();
+		for (int sequence = 0; sequence < 4; sequence++) {
+			assertThat(LoadBalancingPolicy.LEAST_OUTSTANDING.order(Arrays.asList(busy, idle), sequence).get(0), is(idle));
+		}
+	}
+
+	@Test
+	public void latencyWeightedPrefersFasterEndpoint() {
+		Endpoint slow = endpoint("http://slow:14000");
+		Endpoint fast = endpoint("http://fast:14000");
+		slow.answered(50000000L);
+		fast.answered(1000000L);
+		for (int sequence = 0; sequence < 4; sequence++) {
+			assertThat(LoadBalancingPolicy.LATENCY_WEIGHTED.order(Arrays.asList(slow, fast), sequence).get(0), is(fast));
+		}
+	}
+
+	@Test
+	public void factoryCreatesFailoverConnectionForEndpoints() throws Exception {
+		WebHDFSConnectionFactory factory = new WebHDFSConnectionFactory(
+				Arrays.asList(standby.getUrl(), active.getUrl().substring("http://".length())), "stub", "n/a",
+				AuthenticationType.PSEUDO);
+		WebHDFSConnection conn = factory.getConnection();
+		assertTrue(conn instanceof FailoverWebHDFSConnection);
+		assertThat(((FailoverWebHDFSConnection) conn).getEndpoints().get(1).getUrl(), is(equalTo(active.getUrl())));
+		conn.getStatus("user/stub/file");
+	}
+}
@@ -0,0 +1,104 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class HedgingWebHDFSConnectionTest {
+
+	static final String STATUS = "{\"FileStatus\":{\"length\":%d,\"type\":\"FILE\"}}";
+
+	HttpFSServerStub slow = null;
+	HttpFSServerStub fast = null;
+	HedgingPolicy policy = null;
+	HedgingWebHDFSConnection conn = null;
+
+	@Before
+	public void setUp() throws Exception {
+		slow = new HttpFSServerStub();
+		slow.on("GETFILESTATUS", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				try {
+					Thread.sleep(1000);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				HttpFSServerStub.send(exchange, 200, String.format(STATUS, 1));
+			}
+		});
+		fast = new HttpFSServerStub();
+		fast.on("GETFILESTATUS", 200, String.format(STATUS, 2));
+
+		policy = new HedgingPolicy();
+		policy.setMinSamples(1);
+		policy.record("GETFILESTATUS", TimeUnit.MILLISECONDS.toNanos(20));
+
+		// round robin sends the first request to the slow server, its hedge to the fast one
+		FailoverWebHDFSConnection failover = new FailoverWebHDFSConnection(Arrays.asList(
+				new Endpoint(slow.getUrl(), new PseudoWebHDFSConnection(slow.getUrl(), "stub", "n/a")),
+				new Endpoint(fast.getUrl(), new PseudoWebHDFSConnection(fast.getUrl(), "stub", "n/a"))),
+				LoadBalancingPolicy.ROUND_ROBIN);
+		conn = new HedgingWebHDFSConnection(failover, policy);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		slow.stop();
+		fast.stop();
+	}
+
+	@Test
+	public void slowRequestIsHedged() throws Exception {
+		long start = System.currentTimeMillis();
+		assertThat(conn.getStatus("user/stub/file").getLength(), is(equalTo(2L)));
+		assertTrue(System.currentTimeMillis() - start < 900);
+		assertThat(policy.getHedgeCount(), is(equalTo(1L)));
+		assertThat(policy.getWinCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void hedgesAreBoundedByBudget() throws Exception {
+		policy.setBudgetRatio(0.0);
+		policy.setBudgetCapacity(0);
+		assertThat(conn.getStatus("user/stub/file").getLength(), is(equalTo(1L)));
+		assertThat(policy.getHedgeCount(), is(equalTo(0L)));
+		assertThat(policy.getExhaustedCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void otherOperationsAreNotHedged() throws Exception {
+		policy.setOperations(Collections.singleton("OPEN"));
+		assertThat(conn.getStatus("user/stub/file").getLength(), is(equalTo(1L)));
+		assertThat(policy.getHedgeCount(), is(equalTo(0L)));
+	}
+
+	@Test
+	public void delayFollowsPercentile() {
+		HedgingPolicy latencies = new HedgingPolicy();
+		assertThat(latencies.getDelay("OPEN"), is(equalTo(-1L)));
+		for (int i = 100; i > 0; i--) {
+			latencies.record("OPEN", TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		assertThat(latencies.getDelay("OPEN"), is(equalTo(95L)));
+		latencies.setPercentile(50.0);
+		assertThat(latencies.getDelay("OPEN"), is(equalTo(50L)));
+		latencies.setMinDelay(60L);
+		assertThat(latencies.getDelay("OPEN"), is(equalTo(60L)));
+	}
+}
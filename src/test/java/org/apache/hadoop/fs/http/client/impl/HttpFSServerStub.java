@@ -0,0 +1,143 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal in-process stand-in for HttpFS, answering each operation with a
+ * canned response.
+ */
+@SuppressWarnings("restriction")
+public class HttpFSServerStub {
+
+	public static final String COOKIE = "hadoop.auth=\"u=stub&p=stub&t=simple&e=4102444800000&s=c2lnbmF0dXJl\"";
+
+	private static final String DROP = "drop";
+
+	public interface Responder {
+		public void respond(HttpExchange exchange, Map<String, String> params) throws IOException;
+	}
+
+	private final HttpServer server;
+	private final Map<String, Responder> responders = new HashMap<String, Responder>();
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+	public HttpFSServerStub() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					dispatch(exchange);
+				}
+				finally {
+					if (exchange.getAttribute(DROP) == null) {
+						// the server closes connections whose request was not read
+						exchange.getRequestBody().close();
+					}
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+	}
+
+	public String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	public void on(String op, Responder responder) {
+		responders.put(op, responder);
+	}
+
+	public void on(String op, final int code, final String json) {
+		on(op, new Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				send(exchange, code, json);
+			}
+		});
+	}
+
+	public List<String> getRequests() {
+		return requests;
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	public static void send(HttpExchange exchange, int code, String json) throws IOException {
+		byte[] body = json.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+		if (body.length > 0) {
+			OutputStream os = exchange.getResponseBody();
+			os.write(body);
+			os.close();
+		}
+	}
+
+	/**
+	 * Closes the connection once the response is sent, without telling the
+	 * client, as a server does with a kept-alive socket it found idle for too
+	 * long. The request body must not be read.
+	 */
+	public static void drop(HttpExchange exchange) {
+		exchange.setAttribute(DROP, Boolean.TRUE);
+	}
+
+	public static byte[] readBody(HttpExchange exchange) throws IOException {
+		InputStream is = exchange.getRequestBody();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = is.read(buffer)) != -1) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+
+	private void dispatch(HttpExchange exchange) throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					params.put(pair.substring(0, eq), java.net.URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+				}
+			}
+		}
+
+		exchange.getResponseHeaders().add("Set-Cookie", COOKIE);
+		if ("OPTIONS".equals(exchange.getRequestMethod())) {
+			send(exchange, 200, "");
+			return;
+		}
+
+		String op = params.get("op");
+		requests.add(exchange.getRequestMethod() + " " + op + " " + exchange.getRequestURI().getPath());
+		Responder responder = responders.get(op);
+		if (responder == null) {
+			send(exchange, 400, "{\"RemoteException\":{\"exception\":\"IllegalArgumentException\","
+					+ "\"javaClassName\":\"java.lang.IllegalArgumentException\",\"message\":\"Invalid value for webhdfs parameter \\\"op\\\"\"}}");
+		} else {
+			responder.respond(exchange, params);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KerberosLoginCacheTest {
+
+	/* how long before the end of its 70s lifetime the next TGT is due for renewal */
+	static volatile long renewIn;
+	static final AtomicInteger logouts = new AtomicInteger();
+	static final List<String> passwords = Collections.synchronizedList(new ArrayList<String>());
+
+	KerberosLoginCache cache = null;
+
+	/**
+	 * Logs in without a KDC, handing out a TGT valid for another 70 seconds.
+	 */
+	public static class StubLoginModule implements LoginModule {
+		private Subject subject;
+
+		@Override
+		public void initialize(Subject subject, CallbackHandler callbackHandler, Map<String, ?> sharedState, Map<String, ?> options) {
+			this.subject = subject;
+		}
+
+		@Override
+		public boolean login() throws LoginException {
+			return true;
+		}
+
+		@Override
+		public boolean commit() throws LoginException {
+			long now = System.currentTimeMillis();
+			long end = now + 70000L;
+			// renewal is due once 80% of the lifetime elapsed
+			long start = end - (long) ((end - now - renewIn) / (1 - KerberosLoginCache.RENEW_AT));
+			subject.getPrivateCredentials().add(new KerberosTicket(new byte[1],
+					new KerberosPrincipal("stub@EXAMPLE.COM"), new KerberosPrincipal("krbtgt/EXAMPLE.COM@EXAMPLE.COM"),
+					new byte[16], 17, new boolean[32], new Date(start), new Date(start), new Date(end), null, null));
+			return true;
+		}
+
+		@Override
+		public boolean abort() throws LoginException {
+			return true;
+		}
+
+		@Override
+		public boolean logout() throws LoginException {
+			logouts.incrementAndGet();
+			subject.getPrivateCredentials().clear();
+			return true;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		renewIn = 3600000L;
+		logouts.set(0);
+		passwords.clear();
+		cache = new KerberosLoginCache() {
+			@Override
+			protected LoginContext createLoginContext(String principal, String password, boolean debug) throws LoginException {
+				passwords.add(password);
+				return new LoginContext("", new Subject(), null, new Configuration() {
+					@Override
+					public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+						return new AppConfigurationEntry[] { new AppConfigurationEntry(StubLoginModule.class.getName(),
+								AppConfigurationEntry.LoginModuleControlFlag.REQUIRED, new HashMap<String, Object>()) };
+					}
+				});
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		cache.shutdown();
+	}
+
+	@Test
+	public void subjectIsLoggedInOnce() throws Exception {
+		Subject first = cache.getSubject("stub", "n/a", false);
+		assertThat(cache.getSubject("stub", "n/a", false), is(sameInstance(first)));
+		assertThat(cache.getLoginCount(), is(equalTo(1L)));
+		assertThat(cache.getHitCount(), is(equalTo(1L)));
+
+		cache.getSubject("other", "n/a", false);
+		assertThat(cache.getLoginCount(), is(equalTo(2L)));
+	}
+
+	@Test
+	public void usedPrincipalIsRenewedInBackground() throws Exception {
+		renewIn = 300L;
+		Subject first = cache.getSubject("stub", "n/a", false);
+		cache.getSubject("stub", "n/a", false);
+
+		waitFor(cache, 1L);
+		assertThat(cache.getRenewalCount(), is(equalTo(1L)));
+		assertThat(cache.getSubject("stub", "n/a", false) == first, is(false));
+	}
+
+	@Test
+	public void otherPasswordDoesNotGetSubject() throws Exception {
+		renewIn = 300L;
+		Subject first = cache.getSubject("stub", "secret", false);
+		cache.getSubject("stub", "secret", false);
+		assertThat(cache.getSubject("stub", "wrong", false) == first, is(false));
+		assertThat(cache.getLoginCount(), is(equalTo(2L)));
+
+		// the renewal still uses the password which logged in
+		waitFor(cache, 1L);
+		assertThat(passwords.subList(0, 3).toString(), is(equalTo("[secret, wrong, secret]")));
+	}
+
+	@Test
+	public void unusedPrincipalIsLoggedOut() throws Exception {
+		renewIn = 0L;
+		cache.getSubject("stub", "n/a", false);
+
+		for (int i = 0; i < 50 && logouts.get() == 0; i++) {
+			Thread.sleep(100);
+		}
+		assertThat(logouts.get(), is(equalTo(1)));
+		assertThat(cache.getRenewalCount(), is(equalTo(0L)));
+
+		cache.getSubject("stub", "n/a", false);
+		assertThat(cache.getLoginCount(), is(equalTo(2L)));
+	}
+
+	private static void waitFor(KerberosLoginCache cache, long renewals) throws InterruptedException {
+		for (int i = 0; i < 50 && cache.getRenewalCount() < renewals; i++) {
+			Thread.sleep(100);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.http.client.LimitExceededException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LimitingWebHDFSConnectionTest {
+
+	static final String STATUS = "{\"FileStatus\":{\"length\":0,\"type\":\"FILE\"}}";
+
+	HttpFSServerStub server = null;
+	ConcurrencyLimiter limiter = null;
+	LimitingWebHDFSConnection conn = null;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new HttpFSServerStub();
+		limiter = new ConcurrencyLimiter();
+		conn = new LimitingWebHDFSConnection(new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a"), limiter);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void limitGrowsWhileLatencyIsSteady() throws Exception {
+		limiter.setLimit(4);
+		for (int round = 0; round < 3; round++) {
+			int limit = limiter.getLimit();
+			int[] started = new int[limit];
+			for (int i = 0; i < limit; i++) {
+				started[i] = limiter.acquire();
+			}
+			for (int i = 0; i < limit; i++) {
+				limiter.release("GETFILESTATUS", TimeUnit.MILLISECONDS.toNanos(10), false, started[i]);
+			}
+		}
+		assertTrue(limiter.getLimit() > 4);
+		assertThat(limiter.getInFlight(), is(equalTo(0)));
+	}
+
+	@Test
+	public void limitShrinksAsLatencyGrows() throws Exception {
+		limiter.setLimit(20);
+		limiter.release("GETFILESTATUS", TimeUnit.MILLISECONDS.toNanos(10), false, limiter.acquire());
+		limiter.release("GETFILESTATUS", TimeUnit.MILLISECONDS.toNanos(100), false, limiter.acquire());
+		assertThat(limiter.getLimit(), is(equalTo(19)));
+	}
+
+	@Test
+	public void slowerOperationsDoNotShrinkTheLimit() throws Exception {
+		limiter.setLimit(20);
+		limiter.release("GETFILESTATUS", TimeUnit.MILLISECONDS.toNanos(10), false, limiter.acquire());
+		limiter.release("GETACLSTATUS", TimeUnit.MILLISECONDS.toNanos(100), false, limiter.acquire());
+		limiter.release("GETACLSTATUS", TimeUnit.MILLISECONDS.toNanos(100), false, limiter.acquire());
+		assertThat(limiter.getLimit(), is(equalTo(20)));
+	}
+
+	@Test
+	public void limitShrinksWhenServerIsOverloaded() throws Exception {
+		limiter.setLimit(10);
+		server.on("GETFILESTATUS", 503, "");
+		conn.getFileStatus("user/stub/file");
+		assertThat(limiter.getLimit(), is(equalTo(9)));
+
+		server.on("GETFILESTATUS", 200, STATUS);
+		conn.getFileStatus("user/stub/file");
+		assertThat(limiter.getLimit(), is(equalTo(9)));
+		assertThat(limiter.getInFlight(), is(equalTo(0)));
+	}
+
+	@Test
+	public void excessRequestsAreRejected() throws Exception {
+		server.on("GETFILESTATUS", 200, STATUS);
+		limiter.setLimit(1);
+		limiter.setMaxQueued(0);
+		int inFlight = limiter.acquire();
+		try {
+			conn.getStatus("user/stub/file");
+			fail("Expected LimitExceededException");
+		}
+		catch(LimitExceededException e) {
+			// expected
+		}
+		assertThat(limiter.getRejectedCount(), is(equalTo(1L)));
+		assertThat(server.getRequests().size(), is(equalTo(0)));
+
+		limiter.setMaxQueued(1);
+		limiter.setMaxWait(50L);
+		try {
+			conn.getStatus("user/stub/file");
+			fail("Expected LimitExceededException");
+		}
+		catch(LimitExceededException e) {
+			// expected
+		}
+		assertThat(limiter.getRejectedCount(), is(equalTo(2L)));
+		assertThat(limiter.getQueued(), is(equalTo(0)));
+
+		limiter.release("GETFILESTATUS", -1L, false, inFlight);
+		assertThat(conn.getStatus("user/stub/file").getLength(), is(equalTo(0L)));
+	}
+
+	@Test
+	public void rejectedRequestsAreNotRetried() throws Exception {
+		limiter.setLimit(1);
+		limiter.setMaxQueued(0);
+		RetryPolicy policy = new RetryPolicy();
+		policy.setBaseDelay(1L);
+		RetryingWebHDFSConnection retrying = new RetryingWebHDFSConnection(conn, policy);
+		int inFlight = limiter.acquire();
+		try {
+			retrying.getStatus("user/stub/file");
+			fail("Expected LimitExceededException");
+		}
+		catch(LimitExceededException e) {
+			// expected
+		}
+		finally {
+			limiter.release("GETFILESTATUS", -1L, false, inFlight);
+		}
+		assertThat(policy.getRetryCount(), is(equalTo(0L)));
+	}
+}
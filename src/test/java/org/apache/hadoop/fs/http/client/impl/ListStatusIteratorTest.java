@@ -0,0 +1,144 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.FileStatusIterator;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class ListStatusIteratorTest {
+
+	HttpFSServerStub server = null;
+	PseudoWebHDFSConnection conn = null;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new HttpFSServerStub();
+		conn = new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void pagesThroughListStatusBatch() throws Exception {
+		server.on("LISTSTATUS_BATCH", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				String startAfter = params.get("startAfter");
+				String entry = startAfter == null ? "a" : startAfter.equals("a") ? "b" : null;
+				String statuses = entry == null ? "" : "{\"pathSuffix\":\"" + entry + "\",\"type\":\"FILE\"}";
+				HttpFSServerStub.send(exchange, 200, "{\"DirectoryListing\":{\"partialListing\":{\"FileStatuses\":{\"FileStatus\":["
+						+ statuses + "]}},\"remainingEntries\":" + ("a".equals(entry) ? 1 : 0) + "}}");
+			}
+		});
+
+		assertThat(names(conn.listStatusIterator("user/stub")), is(equalTo("[a, b]")));
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void fallsBackToStreamedListStatus() throws Exception {
+		server.on("LISTSTATUS", 200, "{\"FileStatuses\":{\"FileStatus\":[{\"pathSuffix\":\"a\",\"type\":\"FILE\"},"
+				+ "{\"pathSuffix\":\"b\",\"type\":\"DIRECTORY\"}]}}");
+
+		assertThat(names(conn.listStatusIterator("user/stub")), is(equalTo("[a, b]")));
+		assertThat(names(conn.listStatusIterator("user/stub")), is(equalTo("[a, b]")));
+		// the unsupported LISTSTATUS_BATCH is only tried once
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+	}
+
+	@Test
+	public void otherBadRequestsKeepListStatusBatch() throws Exception {
+		server.on("LISTSTATUS_BATCH", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				if (exchange.getRequestURI().getPath().endsWith(":bad")) {
+					HttpFSServerStub.send(exchange, 400, "{\"RemoteException\":{\"exception\":\"IllegalArgumentException\","
+							+ "\"javaClassName\":\"java.lang.IllegalArgumentException\",\"message\":\"Invalid path name\"}}");
+					return;
+				}
+				HttpFSServerStub.send(exchange, 200, "{\"DirectoryListing\":{\"partialListing\":{\"FileStatuses\":{\"FileStatus\":["
+						+ "{\"pathSuffix\":\"a\",\"type\":\"FILE\"}]}},\"remainingEntries\":0}}");
+			}
+		});
+
+		try {
+			conn.listStatusIterator("user/stub:bad");
+			fail("WebHDFSException expected");
+		}
+		catch(WebHDFSException e) {
+			assertThat(e.getStatusCode(), is(equalTo(400)));
+		}
+		assertThat(names(conn.listStatusIterator("user/stub")), is(equalTo("[a]")));
+		assertThat(server.getRequests().toString(), is(equalTo(
+				"[GET LISTSTATUS_BATCH /webhdfs/v1/user/stub:bad, GET LISTSTATUS_BATCH /webhdfs/v1/user/stub]")));
+	}
+
+	@Test
+	public void closingEarlyReleasesConnection() throws Exception {
+		server.on("LISTSTATUS", 200, "{\"FileStatuses\":{\"FileStatus\":[{\"pathSuffix\":\"a\"},{\"pathSuffix\":\"b\"}]}}");
+
+		FileStatusIterator it = conn.listStatusIterator("user/stub");
+		it.next();
+		it.close();
+		assertFalse(it.hasNext());
+		assertThat(conn.getTransport().getStats().getLeased(), is(equalTo(0)));
+	}
+
+	@Test
+	public void malformedResponseReleasesConnection() throws Exception {
+		server.on("LISTSTATUS", 200, "{\"FileStatuses\":{\"FileStatus\":[{\"pathSuffix\":\"a\",\"type\":\"SOCKET\"}]}}");
+		FileStatusIterator it = conn.listStatusIterator("user/stub");
+		try {
+			it.next();
+			fail("Expected IOException");
+		}
+		catch(IOException e) {
+			// expected
+		}
+		assertFalse(it.hasNext());
+		assertThat(conn.getTransport().getStats().getLeased(), is(equalTo(0)));
+
+		server.on("LISTSTATUS", 200, "[]");
+		try {
+			conn.listStatusIterator("user/stub");
+			fail("Expected IOException");
+		}
+		catch(IOException e) {
+			// expected
+		}
+		assertThat(conn.getTransport().getStats().getLeased(), is(equalTo(0)));
+	}
+
+	@Test(expected = WebHDFSException.class)
+	public void missingDirectory() throws Exception {
+		server.on("LISTSTATUS_BATCH", 404, "{\"RemoteException\":{\"exception\":\"FileNotFoundException\","
+				+ "\"javaClassName\":\"java.io.FileNotFoundException\",\"message\":\"File /user/none does not exist.\"}}");
+		conn.listStatusIterator("user/none");
+	}
+
+	private static String names(FileStatusIterator it) throws IOException {
+		List<String> names = new ArrayList<String>();
+		while (it.hasNext()) {
+			names.add(it.next().getPathSuffix());
+		}
+		return names.toString();
+	}
+}
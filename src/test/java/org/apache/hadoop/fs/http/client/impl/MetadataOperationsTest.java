@@ -0,0 +1,90 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class MetadataOperationsTest {
+
+	HttpFSServerStub server = null;
+	PseudoWebHDFSConnection conn = null;
+	Map<String, String> sent;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new HttpFSServerStub();
+		HttpFSServerStub.Responder responder = new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				sent = params;
+				HttpFSServerStub.send(exchange, 200, "{\"boolean\":true}");
+			}
+		};
+		for (String op : new String[] { "MKDIRS", "SETPERMISSION", "SETOWNER", "SETREPLICATION", "SETTIMES", "DELETE" }) {
+			server.on(op, responder);
+		}
+		conn = new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void permissionsAreSentInOctal() throws Exception {
+		conn.mkdirs("user/stub/dir", 0750);
+		assertThat(sent.get("permission"), is(equalTo("750")));
+		conn.setPermission("user/stub/dir", 01777);
+		assertThat(sent.get("permission"), is(equalTo("1777")));
+		try {
+			conn.setPermission("user/stub/dir", 02000);
+			fail("Expected IllegalArgumentException");
+		}
+		catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void ownerAndGroupAreOptional() throws Exception {
+		conn.setOwner("user/stub/file", "etl", "analysts");
+		assertThat(sent.get("owner"), is(equalTo("etl")));
+		assertThat(sent.get("group"), is(equalTo("analysts")));
+		conn.setOwner("user/stub/file", null, "data eng");
+		assertThat(sent.get("owner"), is(nullValue()));
+		assertThat(sent.get("group"), is(equalTo("data eng")));
+	}
+
+	@Test
+	public void valuesAreSent() throws Exception {
+		conn.setReplication("user/stub/file", (short) 5);
+		assertThat(sent.get("replication"), is(equalTo("5")));
+		conn.setTimes("user/stub/file", 1700000000000L, -1L);
+		assertThat(sent.get("modificationtime"), is(equalTo("1700000000000")));
+		assertThat(sent.get("accesstime"), is(nullValue()));
+		conn.delete("user/stub/dir", true);
+		assertThat(sent.get("recursive"), is(equalTo("true")));
+	}
+
+	@Test
+	public void forwardingConnectionsPassValuesOn() throws Exception {
+		CachingWebHDFSConnection caching = new CachingWebHDFSConnection(conn, new MetadataCache(), "stub");
+		caching.setReplication("user/stub/file", (short) 3);
+		assertThat(sent.get("replication"), is(equalTo("3")));
+		caching.delete("user/stub/dir", false);
+		assertThat(sent.get("recursive"), is(equalTo("false")));
+	}
+}
@@ -0,0 +1,86 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.hadoop.fs.http.client.model.ContentSummary;
+import org.apache.hadoop.fs.http.client.model.DirectoryListing;
+import org.apache.hadoop.fs.http.client.model.FileChecksum;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+import org.junit.Test;
+
+import com.google.gson.stream.JsonReader;
+
+public class ResponseHandlerTest {
+
+	@Test
+	public void fileStatus() throws IOException {
+		FileStatus status = ResponseHandler.FILE_STATUS.handle(reader("{\"FileStatus\":{\"accessTime\":1320171722771,"
+				+ "\"blockSize\":33554432,\"group\":\"supergroup\",\"length\":24930,\"modificationTime\":1320171722771,"
+				+ "\"owner\":\"webuser\",\"pathSuffix\":\"\",\"permission\":\"644\",\"replication\":1,\"type\":\"FILE\","
+				+ "\"fileId\":16386}}"));
+
+		assertTrue(status.isFile());
+		assertThat(status.getLength(), is(equalTo(24930L)));
+		assertThat(status.getPermission(), is(equalTo("644")));
+		assertThat(status.getReplication(), is(equalTo((short) 1)));
+	}
+
+	@Test
+	public void fileStatuses() throws IOException {
+		DirectoryListing listing = ResponseHandler.FILE_STATUSES.handle(reader("{\"FileStatuses\":{\"FileStatus\":["
+				+ "{\"pathSuffix\":\"a.patch\",\"type\":\"FILE\",\"length\":24930},"
+				+ "{\"pathSuffix\":\"bar\",\"type\":\"DIRECTORY\",\"length\":0}]}}"));
+
+		assertThat(listing.size(), is(equalTo(2)));
+		assertThat(listing.getFileStatuses().get(0).getPathSuffix(), is(equalTo("a.patch")));
+		assertTrue(listing.getFileStatuses().get(1).isDirectory());
+	}
+
+	@Test
+	public void contentSummaryAndChecksum() throws IOException {
+		ContentSummary summary = ResponseHandler.CONTENT_SUMMARY.handle(reader("{\"ContentSummary\":{\"directoryCount\":2,"
+				+ "\"fileCount\":1,\"length\":24930,\"quota\":-1,\"spaceConsumed\":24930,\"spaceQuota\":-1}}"));
+		assertThat(summary.getFileCount(), is(equalTo(1L)));
+		assertThat(summary.getQuota(), is(equalTo(-1L)));
+
+		FileChecksum checksum = ResponseHandler.FILE_CHECKSUM.handle(reader("{\"FileChecksum\":{\"algorithm\":"
+				+ "\"MD5-of-1MD5-of-512CRC32\",\"bytes\":\"eadb10de24aa315748930df6e185c0d\",\"length\":28}}"));
+		assertThat(checksum.getLength(), is(equalTo(28)));
+	}
+
+	@Test(expected = IOException.class)
+	public void missingMember() throws IOException {
+		ResponseHandler.FILE_STATUS.handle(reader("{\"boolean\":true}"));
+	}
+
+	@Test
+	public void malformedResponseReleasesConnection() throws Exception {
+		HttpFSServerStub server = new HttpFSServerStub();
+		try {
+			server.on("GETFILESTATUS", 200, "{\"FileStatus\":{\"length\":0,\"type\":\"SOCKET\"}}");
+			PseudoWebHDFSConnection conn = new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a");
+			try {
+				conn.getStatus("user/stub/file");
+				fail("Expected IOException");
+			}
+			catch(IOException e) {
+				assertTrue(e.getCause() instanceof IllegalArgumentException);
+			}
+			assertThat(conn.getTransport().getStats().getLeased(), is(equalTo(0)));
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	private static JsonReader reader(String json) {
+		return new JsonReader(new StringReader(json));
+	}
+}
@@ -0,0 +1,151 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.util.ResponseUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class RetryingWebHDFSConnectionTest {
+
+	static final String STATUS = "{\"FileStatus\":{\"length\":0,\"type\":\"FILE\"}}";
+
+	HttpFSServerStub server = null;
+	RetryPolicy policy = null;
+	RetryingWebHDFSConnection conn = null;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new HttpFSServerStub();
+		policy = new RetryPolicy();
+		policy.setBaseDelay(1L);
+		conn = new RetryingWebHDFSConnection(new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a"), policy);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	/*
+	 * Answers with the given status for the first failures, then succeeds.
+	 */
+	static HttpFSServerStub.Responder failing(final int failures, final int code, final String json) {
+		final AtomicInteger calls = new AtomicInteger();
+		return new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				if (calls.incrementAndGet() <= failures) {
+					HttpFSServerStub.send(exchange, code, "");
+				} else {
+					HttpFSServerStub.send(exchange, 200, json);
+				}
+			}
+		};
+	}
+
+	@Test
+	public void unavailableServerIsRetried() throws Exception {
+		server.on("GETFILESTATUS", failing(2, 503, STATUS));
+		assertThat(conn.getStatus("user/stub/file").getLength(), is(equalTo(0L)));
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+		assertThat(policy.getRetryCount(), is(equalTo(2L)));
+	}
+
+	@Test
+	public void jsonResponsesAreRetried() throws Exception {
+		server.on("GETFILESTATUS", failing(1, 503, STATUS));
+		String json = conn.getFileStatus("user/stub/file");
+		assertThat(ResponseUtil.getCode(json), is(equalTo(200)));
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void attemptsAreBounded() throws Exception {
+		policy.setMaxAttempts(3);
+		server.on("GETFILESTATUS", 503, "");
+		try {
+			conn.getStatus("user/stub/file");
+			fail("WebHDFSException expected");
+		}
+		catch(WebHDFSException e) {
+			assertThat(e.getStatusCode(), is(equalTo(503)));
+		}
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+	}
+
+	@Test
+	public void lostNonIdempotentOperationIsNotRetried() throws Exception {
+		server.on("RENAME", failing(1, 504, "{\"boolean\":true}"));
+		String json = conn.rename("user/stub/file", "/user/stub/renamed");
+		assertThat(ResponseUtil.getCode(json), is(equalTo(504)));
+		assertThat(server.getRequests().size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void unsentNonIdempotentOperationIsRetried() throws Exception {
+		server.on("RENAME", failing(1, 503, "{\"boolean\":true}"));
+		String json = conn.rename("user/stub/file", "/user/stub/renamed");
+		assertThat(ResponseUtil.getCode(json), is(equalTo(200)));
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void rejectedTokenAuthenticatesAgainOnce() throws Exception {
+		server.on("GETFILESTATUS", failing(1, 401, STATUS));
+		conn.getStatus("user/stub/file");
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+		assertThat(policy.getRetryCount(), is(equalTo(0L)));
+
+		server.getRequests().clear();
+		server.on("GETFILESTATUS", 401, "");
+		try {
+			conn.getStatus("user/stub/file");
+			fail("WebHDFSException expected");
+		}
+		catch(WebHDFSException e) {
+			assertThat(e.getStatusCode(), is(equalTo(401)));
+		}
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void retriesStopOnceBudgetIsSpent() throws Exception {
+		policy.setBudgetRatio(0.0);
+		policy.setBudgetCapacity(1);
+		server.on("GETFILESTATUS", 503, "");
+		for (int i = 0; i < 2; i++) {
+			try {
+				conn.getStatus("user/stub/file");
+				fail("WebHDFSException expected");
+			}
+			catch(WebHDFSException e) {
+				assertThat(e.getStatusCode(), is(equalTo(503)));
+			}
+		}
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+		assertThat(policy.getExhaustedCount(), is(equalTo(2L)));
+	}
+
+	@Test
+	public void delaysGrowWithinBounds() {
+		policy.setBaseDelay(100L);
+		policy.setMaxDelay(1000L);
+		for (int retry = 1; retry < 40; retry++) {
+			long delay = policy.getDelay(retry);
+			assertThat(delay >= 0 && delay < Math.min(1000L, 100L << Math.min(retry - 1, 30)), is(true));
+		}
+	}
+}
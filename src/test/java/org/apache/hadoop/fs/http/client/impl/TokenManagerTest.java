@@ -0,0 +1,166 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL.Token;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TokenManagerTest {
+
+	TokenManager manager = null;
+
+	@Before
+	public void setUp() {
+		manager = new TokenManager();
+	}
+
+	@After
+	public void tearDown() {
+		manager.shutdown();
+	}
+
+	static Token token(long expires) {
+		return new Token("u=stub&p=stub&t=simple&e=" + expires + "&s=c2lnbmF0dXJl");
+	}
+
+	@Test
+	public void concurrentCallersShareOneRefresh() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final TokenManager.TokenSource source = new TokenManager.TokenSource() {
+			@Override
+			public Token generateToken() {
+				calls.incrementAndGet();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return token(System.currentTimeMillis() + 3600000L);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Token>> tokens = new ArrayList<Future<Token>>();
+			for (int i = 0; i < 8; i++) {
+				tokens.add(executor.submit(new Callable<Token>() {
+					@Override
+					public Token call() throws Exception {
+						return manager.getToken("key", source);
+					}
+				}));
+			}
+			Thread.sleep(200);
+			release.countDown();
+
+			Token first = tokens.get(0).get();
+			for (Future<Token> token : tokens) {
+				assertThat(token.get(), is(sameInstance(first)));
+			}
+			assertThat(calls.get(), is(equalTo(1)));
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void validTokenIsReusedAndExpiredOneRegenerated() {
+		final AtomicInteger calls = new AtomicInteger();
+		TokenManager.TokenSource source = new TokenManager.TokenSource() {
+			@Override
+			public Token generateToken() {
+				calls.incrementAndGet();
+				return token(System.currentTimeMillis() + 3600000L);
+			}
+		};
+
+		Token first = manager.getToken("key", source);
+		assertThat(manager.getToken("key", source), is(sameInstance(first)));
+		assertThat(calls.get(), is(equalTo(1)));
+
+		manager.invalidate("key", first);
+		Token second = manager.getToken("key", source);
+		assertThat(second, is(not(sameInstance(first))));
+		assertThat(calls.get(), is(equalTo(2)));
+	}
+
+	@Test
+	public void tokenAboutToExpireIsRefreshedInBackground() throws Exception {
+		final CountDownLatch refreshed = new CountDownLatch(2);
+		TokenManager.TokenSource source = new TokenManager.TokenSource() {
+			@Override
+			public Token generateToken() {
+				refreshed.countDown();
+				return token(System.currentTimeMillis() + 2000L);
+			}
+		};
+		manager.setExpiryMargin(0L);
+
+		Token first = manager.getToken("key", source);
+		// still valid, handed out while the refresh happens elsewhere
+		assertThat(manager.getToken("key", source), is(sameInstance(first)));
+		assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void keysAreIndependent() {
+		TokenManager.TokenSource source = new TokenManager.TokenSource() {
+			@Override
+			public Token generateToken() {
+				return token(System.currentTimeMillis() + 3600000L);
+			}
+		};
+		Token alice = manager.getToken("alice@server", source);
+		Token bob = manager.getToken("bob@server", source);
+		assertThat(alice, is(not(sameInstance(bob))));
+		assertThat(manager.getGeneratedCount(), is(equalTo(2L)));
+	}
+
+	static TokenManager.TokenSource source() {
+		return new TokenManager.TokenSource() {
+			@Override
+			public Token generateToken() {
+				return token(System.currentTimeMillis() + 3600000L);
+			}
+		};
+	}
+
+	@Test
+	public void keysOfCollectedConnectionsAreDropped() throws Exception {
+		TokenManager.TokenSource kept = source();
+		manager.getToken("kept@server", kept);
+		manager.getToken("gone@server", source());
+		assertThat(manager.size(), is(equalTo(2)));
+
+		// a new key drops those without connections left
+		manager.getToken("probe@server", source());
+		for (int i = 0; i < 50 && manager.size() > 2; i++) {
+			System.gc();
+			Thread.sleep(20);
+			manager.getToken("probe" + i + "@server", source());
+		}
+		assertThat(manager.size(), is(equalTo(2)));
+		assertThat(manager.getToken("kept@server", kept), is(notNullValue()));
+	}
+}
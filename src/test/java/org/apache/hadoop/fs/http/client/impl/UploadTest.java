@@ -0,0 +1,179 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.CreateOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class UploadTest {
+
+	static final byte[] DATA = new byte[100000];
+
+	HttpFSServerStub server = null;
+	PseudoWebHDFSConnection conn = null;
+
+	byte[] received;
+	String contentLength;
+	String transferEncoding;
+	Map<String, String> written;
+
+	@Before
+	public void setUp() throws Exception {
+		for (int i = 0; i < DATA.length; i++) {
+			DATA[i] = (byte) i;
+		}
+		server = new HttpFSServerStub();
+		HttpFSServerStub.Responder responder = new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				if (!params.containsKey("datanode")) {
+					exchange.getResponseHeaders().set("Location",
+							server.getUrl() + exchange.getRequestURI().toString() + "&datanode=true");
+					HttpFSServerStub.send(exchange, 307, "");
+					return;
+				}
+				contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+				transferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+				written = params;
+				received = HttpFSServerStub.readBody(exchange);
+				HttpFSServerStub.send(exchange, "CREATE".equals(params.get("op")) ? 201 : 200, "");
+			}
+		};
+		server.on("CREATE", responder);
+		server.on("APPEND", responder);
+		conn = new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void createOfUnknownLengthIsChunked() throws Exception {
+		conn.create("user/stub/file", new ByteArrayInputStream(DATA));
+		assertThat(transferEncoding, is(equalTo("chunked")));
+		assertThat(contentLength, is(nullValue()));
+		assertArrayEquals(DATA, received);
+	}
+
+	@Test
+	public void createOfKnownLengthSendsContentLength() throws Exception {
+		conn.create("user/stub/file", new ByteArrayInputStream(DATA), DATA.length);
+		assertThat(transferEncoding, is(nullValue()));
+		assertThat(contentLength, is(equalTo(String.valueOf(DATA.length))));
+		assertArrayEquals(DATA, received);
+	}
+
+	@Test
+	public void createSendsLayout() throws Exception {
+		CreateOptions options = new CreateOptions();
+		options.setOverwrite(false);
+		options.setBlockSize(256L * 1024 * 1024);
+		options.setReplication((short) 2);
+		options.setPermission(0640);
+		conn.create("user/stub/file", new ByteArrayInputStream(DATA), DATA.length, options);
+		assertThat(written.get("overwrite"), is(equalTo("false")));
+		assertThat(written.get("blocksize"), is(equalTo("268435456")));
+		assertThat(written.get("replication"), is(equalTo("2")));
+		assertThat(written.get("permission"), is(equalTo("640")));
+		assertThat(written.get("buffersize"), is(nullValue()));
+		assertArrayEquals(DATA, received);
+	}
+
+	@Test
+	public void appendOfUnknownLengthIsChunked() throws Exception {
+		conn.append("user/stub/file", new ByteArrayInputStream(DATA));
+		assertThat(transferEncoding, is(equalTo("chunked")));
+		assertArrayEquals(DATA, received);
+	}
+
+	@Test
+	public void httpFSTakesDataInSingleRequestOnceDetected() throws Exception {
+		server.on("CREATE", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				if (!"true".equals(params.get("data"))) {
+					exchange.getResponseHeaders().set("Location",
+							server.getUrl() + exchange.getRequestURI().toString() + "&data=true");
+					HttpFSServerStub.send(exchange, 307, "");
+					return;
+				}
+				received = HttpFSServerStub.readBody(exchange);
+				HttpFSServerStub.send(exchange, 201, "");
+			}
+		});
+
+		conn.create("user/stub/file", new ByteArrayInputStream(DATA), DATA.length);
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+		received = null;
+
+		conn.create("user/stub/other", new ByteArrayInputStream(DATA), DATA.length);
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+		assertArrayEquals(DATA, received);
+	}
+
+	@Test
+	public void noRedirectLocationIsFollowed() throws Exception {
+		server.on("CREATE", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				if (!params.containsKey("datanode")) {
+					assertThat(params.get("noredirect"), is(equalTo("true")));
+					HttpFSServerStub.send(exchange, 200, "{\"Location\":\"" + server.getUrl()
+							+ exchange.getRequestURI().getPath() + "?op=CREATE&datanode=true\"}");
+					return;
+				}
+				received = HttpFSServerStub.readBody(exchange);
+				HttpFSServerStub.send(exchange, 201, "");
+			}
+		});
+
+		for (int i = 0; i < 2; i++) {
+			received = null;
+			conn.create("user/stub/file", new ByteArrayInputStream(DATA), DATA.length);
+			assertArrayEquals(DATA, received);
+		}
+		assertThat(server.getRequests().size(), is(equalTo(4)));
+	}
+
+	@Test
+	public void socketDroppedByServerIsNotUsedForData() throws Exception {
+		server.on("CREATE", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				if (!params.containsKey("datanode")) {
+					// the data request gets the socket back from the keep-alive cache
+					HttpFSServerStub.drop(exchange);
+					exchange.getResponseHeaders().set("Location",
+							server.getUrl() + exchange.getRequestURI().toString() + "&datanode=true");
+					HttpFSServerStub.send(exchange, 307, "");
+					return;
+				}
+				received = HttpFSServerStub.readBody(exchange);
+				HttpFSServerStub.send(exchange, 201, "");
+			}
+		});
+		// no authentication request in between
+		conn.authenticator = null;
+
+		for (int i = 0; i < 3; i++) {
+			received = null;
+			conn.create("user/stub/file", new ByteArrayInputStream(DATA), DATA.length);
+			assertArrayEquals(DATA, received);
+		}
+	}
+}
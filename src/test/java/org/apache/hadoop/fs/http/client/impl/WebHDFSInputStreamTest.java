@@ -0,0 +1,140 @@
+package org.apache.hadoop.fs.http.client.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.http.client.WebHDFSInputStream;
+import org.apache.hadoop.fs.http.client.transport.HttpTransport;
+import org.apache.hadoop.fs.http.client.transport.PoolStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class WebHDFSInputStreamTest {
+
+	static final byte[] DATA = new byte[1000];
+
+	HttpFSServerStub server = null;
+	PseudoWebHDFSConnection conn = null;
+
+	@Before
+	public void setUp() throws Exception {
+		for (int i = 0; i < DATA.length; i++) {
+			DATA[i] = (byte) i;
+		}
+		server = new HttpFSServerStub();
+		server.on("GETFILESTATUS", 200, "{\"FileStatus\":{\"length\":" + DATA.length + ",\"type\":\"FILE\"}}");
+		server.on("OPEN", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				int offset = params.containsKey("offset") ? Integer.parseInt(params.get("offset")) : 0;
+				int length = params.containsKey("length") ? Integer.parseInt(params.get("length")) : DATA.length - offset;
+				length = Math.min(length, DATA.length - offset);
+				exchange.sendResponseHeaders(200, length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(DATA, offset, length);
+				os.close();
+			}
+		});
+		conn = new PseudoWebHDFSConnection(server.getUrl(), "stub", "n/a");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	public void shortForwardSeekReusesResponse() throws IOException {
+		WebHDFSInputStream is = new WebHDFSInputStream(conn, "user/stub/file", DATA.length);
+		assertThat(is.read(), is(equalTo(0)));
+		is.seek(100);
+		assertThat(is.read(), is(equalTo(100)));
+		assertThat(is.skip(10), is(equalTo(10L)));
+		assertThat(is.read(), is(equalTo(111)));
+		is.close();
+
+		assertThat(server.getRequests().size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void backwardSeekReopens() throws IOException {
+		WebHDFSInputStream is = new WebHDFSInputStream(conn, "user/stub/file", DATA.length);
+		is.seek(500);
+		assertThat(is.read(), is(equalTo(500 & 0xff)));
+		is.seek(10);
+		assertThat(is.read(), is(equalTo(10)));
+		assertThat(is.getPos(), is(equalTo(11L)));
+		is.close();
+
+		assertThat(server.getRequests().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void preadLeavesPositionAlone() throws IOException {
+		WebHDFSInputStream is = new WebHDFSInputStream(conn, "user/stub/file");
+		byte[] footer = new byte[8];
+		is.readFully(992, footer, 0, 8);
+		assertThat(footer[7], is(equalTo(DATA[999])));
+		assertThat(is.getPos(), is(equalTo(0L)));
+		assertThat(is.pread(1000, footer, 0, 8), is(equalTo(-1)));
+		is.close();
+	}
+
+	@Test
+	public void readsToEnd() throws IOException {
+		WebHDFSInputStream is = new WebHDFSInputStream(conn, "user/stub/file");
+		is.seek(990);
+		byte[] buffer = new byte[64];
+		assertThat(is.read(buffer, 0, buffer.length), is(equalTo(10)));
+		assertThat(is.read(buffer, 0, buffer.length), is(equalTo(-1)));
+		is.close();
+		assertThat(conn.getTransport().getStats().getLeased(), is(equalTo(0)));
+	}
+
+	@Test
+	public void rangedReadsKeepTheirConnections() throws IOException {
+		final AtomicInteger aborted = new AtomicInteger();
+		final HttpTransport pooled = conn.getTransport();
+		conn.setTransport(new HttpTransport() {
+			public HttpURLConnection open(URL url) throws IOException {
+				return pooled.open(url);
+			}
+			public void release(HttpURLConnection c) {
+				pooled.release(c);
+			}
+			public void abort(HttpURLConnection c) {
+				aborted.incrementAndGet();
+				pooled.abort(c);
+			}
+			public PoolStats getStats() {
+				return pooled.getStats();
+			}
+			public void shutdown() {
+				pooled.shutdown();
+			}
+		});
+
+		WebHDFSInputStream is = new WebHDFSInputStream(conn, "user/stub/file");
+		byte[] footer = new byte[8];
+		is.readFully(992, footer, 0, 8);
+		// closed with a short rest left over
+		is.seek(100);
+		assertThat(is.read(), is(equalTo(100)));
+		is.close();
+
+		assertThat(aborted.get(), is(equalTo(0)));
+		assertThat(pooled.getStats().getLeased(), is(equalTo(0)));
+	}
+}
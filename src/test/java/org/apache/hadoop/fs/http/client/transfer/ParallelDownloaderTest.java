@@ -0,0 +1,149 @@
+package org.apache.hadoop.fs.http.client.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.apache.hadoop.fs.http.client.impl.HttpFSServerStub;
+import org.apache.hadoop.fs.http.client.util.Streams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class ParallelDownloaderTest {
+
+	static final byte[] DATA = new byte[100000];
+
+	HttpFSServerStub server = null;
+	WebHDFSConnection conn = null;
+	File localFile = null;
+	AtomicBoolean failOnce = new AtomicBoolean(false);
+	volatile int missing = -1;
+	volatile long delay = 0L;
+
+	@Before
+	public void setUp() throws Exception {
+		for (int i = 0; i < DATA.length; i++) {
+			DATA[i] = (byte) (i * 31);
+		}
+		server = new HttpFSServerStub();
+		server.on("GETFILESTATUS", 200, "{\"FileStatus\":{\"length\":" + DATA.length + ",\"type\":\"FILE\"}}");
+		server.on("OPEN", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				int offset = Integer.parseInt(params.get("offset"));
+				int length = Integer.parseInt(params.get("length"));
+				if (offset == missing) {
+					HttpFSServerStub.send(exchange, 404, "{\"RemoteException\":{\"exception\":\"FileNotFoundException\"}}");
+					return;
+				}
+				if (offset != 0 && delay > 0) {
+					try {
+						Thread.sleep(delay);
+					}
+					catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				exchange.sendResponseHeaders(200, length);
+				OutputStream os = exchange.getResponseBody();
+				if (offset == 40000 && failOnce.getAndSet(false)) {
+					// cut the response short half way through the chunk
+					os.write(DATA, offset, length / 2);
+					os.flush();
+					return;
+				}
+				os.write(DATA, offset, length);
+				os.close();
+			}
+		});
+		conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "stub", "n/a");
+		localFile = File.createTempFile("download", ".bin");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+		localFile.delete();
+	}
+
+	@Test
+	public void downloadsChunksConcurrently() throws Exception {
+		final AtomicLong progress = new AtomicLong();
+		ParallelDownloader downloader = new ParallelDownloader(conn, 4);
+		downloader.setChunkSize(10000);
+		downloader.setProgressListener(new ProgressListener() {
+			@Override
+			public void progressed(long transferred, long total) {
+				progress.set(Math.max(progress.get(), transferred));
+			}
+		});
+
+		assertThat(downloader.download("user/stub/file", localFile), is(equalTo((long) DATA.length)));
+		downloader.shutdown();
+
+		assertTrue(Arrays.equals(DATA, read(localFile)));
+		assertThat(progress.get(), is(equalTo((long) DATA.length)));
+		// GETFILESTATUS and one OPEN per chunk
+		assertThat(server.getRequests().size(), is(equalTo(11)));
+	}
+
+	@Test
+	public void resumesInterruptedChunk() throws Exception {
+		failOnce.set(true);
+		ParallelDownloader downloader = new ParallelDownloader(conn, 2);
+		downloader.setChunkSize(20000);
+
+		downloader.download("user/stub/file", localFile);
+		downloader.shutdown();
+
+		assertTrue(Arrays.equals(DATA, read(localFile)));
+		assertThat(server.getRequests().size(), is(equalTo(7)));
+	}
+
+	@Test
+	public void failedDownloadWaitsForChunksInFlight() throws Exception {
+		missing = 0;
+		delay = 300L;
+		ParallelDownloader downloader = new ParallelDownloader(conn, 2);
+		downloader.setChunkSize(50000);
+		long started = System.currentTimeMillis();
+		try {
+			downloader.download("user/stub/file", localFile);
+			fail("Expected the download to fail");
+		}
+		catch(WebHDFSException e) {
+			assertThat(e.getStatusCode(), is(equalTo(404)));
+		}
+		finally {
+			downloader.shutdown();
+		}
+
+		// the file stayed open until the delayed chunk was done with it
+		assertTrue(System.currentTimeMillis() - started >= delay);
+	}
+
+	private static byte[] read(File file) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Streams.copy(new FileInputStream(file), bytes);
+		return bytes.toByteArray();
+	}
+}
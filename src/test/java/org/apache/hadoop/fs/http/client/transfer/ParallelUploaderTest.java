@@ -0,0 +1,250 @@
+package org.apache.hadoop.fs.http.client.transfer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.fs.http.client.WebHDFSConnection;
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.apache.hadoop.fs.http.client.impl.HttpFSServerStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class ParallelUploaderTest {
+
+	static final int PART_SIZE = (int) ParallelUploader.MIN_PART_SIZE;
+	static final byte[] DATA = new byte[3 * PART_SIZE + 1000];
+
+	HttpFSServerStub server = null;
+	WebHDFSConnection conn = null;
+	File localFile = null;
+
+	Map<String, byte[]> files = new ConcurrentHashMap<String, byte[]>();
+	List<String> concatenated = Collections.synchronizedList(new ArrayList<String>());
+	List<String> deleted = Collections.synchronizedList(new ArrayList<String>());
+	volatile String failing;
+	volatile long delay;
+	Map<String, String> overwrites = new ConcurrentHashMap<String, String>();
+	Map<String, String> blockSizes = new ConcurrentHashMap<String, String>();
+
+	@Before
+	public void setUp() throws Exception {
+		for (int i = 0; i < DATA.length; i++) {
+			DATA[i] = (byte) (i * 31);
+		}
+		server = new HttpFSServerStub();
+		server.on("CREATE", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				String path = exchange.getRequestURI().getPath();
+				if (!params.containsKey("datanode")) {
+					overwrites.put(path, String.valueOf(params.get("overwrite")));
+					blockSizes.put(path, String.valueOf(params.get("blocksize")));
+					if (files.containsKey(path) && "false".equals(params.get("overwrite"))) {
+						HttpFSServerStub.send(exchange, 403, "{\"RemoteException\":{\"exception\":\"FileAlreadyExistsException\","
+								+ "\"javaClassName\":\"org.apache.hadoop.fs.FileAlreadyExistsException\",\"message\":\"exists\"}}");
+						return;
+					}
+					// the namenode creates the file before the data is sent
+					files.put(path, new byte[0]);
+					exchange.getResponseHeaders().set("Location",
+							server.getUrl() + exchange.getRequestURI().toString() + "&datanode=true");
+					HttpFSServerStub.send(exchange, 307, "");
+				} else if (path.equals(failing)) {
+					HttpFSServerStub.readBody(exchange);
+					HttpFSServerStub.send(exchange, 500, "{\"RemoteException\":{\"exception\":\"IOException\","
+							+ "\"javaClassName\":\"java.io.IOException\",\"message\":\"disk full\"}}");
+				} else {
+					if (delay > 0) {
+						try {
+							Thread.sleep(delay);
+						}
+						catch(InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					files.put(path, HttpFSServerStub.readBody(exchange));
+					HttpFSServerStub.send(exchange, 201, "");
+				}
+			}
+		});
+		server.on("CONCAT", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				String path = exchange.getRequestURI().getPath();
+				ByteArrayOutputStream target = new ByteArrayOutputStream();
+				target.write(files.remove(path));
+				for (String source : params.get("sources").split(",")) {
+					concatenated.add(source);
+					target.write(files.remove("/webhdfs/v1" + source));
+				}
+				files.put(path, target.toByteArray());
+				HttpFSServerStub.send(exchange, 200, "");
+			}
+		});
+		server.on("DELETE", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				deleted.add(exchange.getRequestURI().getPath());
+				HttpFSServerStub.send(exchange, 200, "{\"boolean\":true}");
+			}
+		});
+		conn = AuthenticationType.PSEUDO.createConnection(server.getUrl(), "stub", "n/a");
+
+		localFile = File.createTempFile("upload", ".bin");
+		FileOutputStream os = new FileOutputStream(localFile);
+		os.write(DATA);
+		os.close();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop();
+		localFile.delete();
+	}
+
+	@Test
+	public void uploadsPartsConcurrentlyAndConcatenatesThem() throws Exception {
+		ParallelUploader uploader = new ParallelUploader(conn, 4);
+		uploader.setPartSize(PART_SIZE);
+		try {
+			assertThat(uploader.upload(localFile, "user/stub/file"), is(equalTo((long) DATA.length)));
+		}
+		finally {
+			uploader.shutdown();
+		}
+
+		assertThat(concatenated, is(equalTo(java.util.Arrays.asList(
+				"/user/stub/file._PART_00001", "/user/stub/file._PART_00002", "/user/stub/file._PART_00003"))));
+		assertThat(files.size(), is(equalTo(1)));
+		assertArrayEquals(DATA, files.get("/webhdfs/v1/user/stub/file"));
+		// parts end on a block boundary and never replace a file
+		assertThat(blockSizes.get("/webhdfs/v1/user/stub/file._PART_00002"), is(equalTo(String.valueOf(PART_SIZE))));
+		assertThat(overwrites.get("/webhdfs/v1/user/stub/file"), is(equalTo("false")));
+	}
+
+	@Test
+	public void existingFileIsNeitherReplacedNorDeleted() throws Exception {
+		byte[] existing = new byte[] { 1, 2, 3 };
+		files.put("/webhdfs/v1/user/stub/file", existing);
+		ParallelUploader uploader = new ParallelUploader(conn, 4);
+		uploader.setPartSize(PART_SIZE);
+		try {
+			uploader.upload(localFile, "user/stub/file");
+			fail("Expected the upload to fail");
+		}
+		catch(WebHDFSException e) {
+			assertThat(e.getStatusCode(), is(equalTo(403)));
+		}
+		finally {
+			uploader.shutdown();
+		}
+
+		assertTrue(!deleted.contains("/webhdfs/v1/user/stub/file"));
+		assertArrayEquals(existing, files.get("/webhdfs/v1/user/stub/file"));
+		// the parts created meanwhile are not left behind
+		for (String path : files.keySet()) {
+			assertTrue(path, path.equals("/webhdfs/v1/user/stub/file") || deleted.contains(path));
+		}
+	}
+
+	@Test
+	public void failedUploadWaitsForPartsInFlight() throws Exception {
+		failing = "/webhdfs/v1/user/stub/file._PART_00001";
+		delay = 300L;
+		ParallelUploader uploader = new ParallelUploader(conn, 4);
+		uploader.setPartSize(PART_SIZE);
+		try {
+			uploader.upload(localFile, "user/stub/file");
+			fail("Expected the upload to fail");
+		}
+		catch(IOException e) {
+			// expected
+		}
+		finally {
+			uploader.shutdown();
+		}
+
+		// no part is left behind
+		for (String path : files.keySet()) {
+			assertTrue(path, deleted.contains(path));
+		}
+	}
+
+	@Test
+	public void smallFileIsSentInOnePart() throws Exception {
+		ParallelUploader uploader = new ParallelUploader(conn, 4);
+		try {
+			uploader.upload(localFile, "user/stub/file");
+		}
+		finally {
+			uploader.shutdown();
+		}
+
+		assertTrue(concatenated.isEmpty());
+		assertArrayEquals(DATA, files.get("/webhdfs/v1/user/stub/file"));
+	}
+
+	@Test
+	public void failedPartDeletesTheOthers() throws Exception {
+		failing = "/webhdfs/v1/user/stub/file._PART_00002";
+		ParallelUploader uploader = new ParallelUploader(conn, 1);
+		uploader.setPartSize(PART_SIZE);
+		try {
+			uploader.upload(localFile, "user/stub/file");
+			fail("Expected the upload to fail");
+		}
+		catch(WebHDFSException e) {
+			assertThat(e.getStatusCode(), is(equalTo(500)));
+		}
+		finally {
+			uploader.shutdown();
+		}
+
+		assertTrue(concatenated.isEmpty());
+		assertTrue(deleted.contains("/webhdfs/v1/user/stub/file"));
+		assertTrue(deleted.contains("/webhdfs/v1/user/stub/file._PART_00001"));
+		assertTrue(deleted.contains(failing));
+	}
+
+	@Test
+	public void failedSinglePartIsDeleted() throws Exception {
+		failing = "/webhdfs/v1/user/stub/file";
+		ParallelUploader uploader = new ParallelUploader(conn, 1);
+		try {
+			uploader.upload(localFile, "user/stub/file");
+			fail("Expected the upload to fail");
+		}
+		catch(WebHDFSException e) {
+			assertThat(e.getStatusCode(), is(equalTo(500)));
+		}
+		finally {
+			uploader.shutdown();
+		}
+
+		assertTrue(deleted.contains(failing));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void partSizeIsAValidBlockSize() {
+		new ParallelUploader(conn, 1).setPartSize(ParallelUploader.MIN_PART_SIZE + 1000);
+	}
+}
@@ -0,0 +1,82 @@
+package org.apache.hadoop.fs.http.client.transport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PooledHttpTransportTest {
+
+	PooledHttpTransport transport = null;
+
+	@Before
+	public void setUp() throws Exception {
+		transport = new PooledHttpTransport(2, 0L);
+		transport.setLeaseTimeout(10L);
+	}
+
+	@Test
+	public void leasesAreTrackedPerRoute() throws IOException {
+		HttpURLConnection a = transport.open(new URL("http://hdfs-01:14000/webhdfs/v1/?op=LISTSTATUS"));
+		HttpURLConnection b = transport.open(new URL("http://hdfs-02:14000/webhdfs/v1/?op=LISTSTATUS"));
+
+		assertThat(transport.getStats().getRoutes(), is(equalTo(2)));
+		assertThat(transport.getStats().getLeased(), is(equalTo(2)));
+		assertThat(transport.getStats(new URL("http://HDFS-01:14000/")).getLeased(), is(equalTo(1)));
+
+		transport.release(a);
+		transport.release(b);
+		assertThat(transport.getStats().getLeased(), is(equalTo(0)));
+		assertThat(transport.getStats().getTotalLeases(), is(equalTo(2L)));
+	}
+
+	@Test(expected = IOException.class)
+	public void exhaustedRouteTimesOut() throws IOException {
+		URL url = new URL("http://hdfs-01:14000/webhdfs/v1/?op=GETFILESTATUS");
+		transport.open(url);
+		transport.open(url);
+		transport.open(url);
+	}
+
+	@Test
+	public void releasedConnectionFreesSlot() throws IOException {
+		URL url = new URL("http://hdfs-01:14000/webhdfs/v1/?op=GETFILESTATUS");
+		transport.open(url);
+		HttpURLConnection conn = transport.open(url);
+		transport.release(conn);
+		transport.release(conn);
+
+		transport.open(url);
+		assertThat(transport.getStats(url).getLeased(), is(equalTo(2)));
+	}
+
+	@Test
+	public void idleRoutesAreEvicted() throws Exception {
+		HttpURLConnection conn = transport.open(new URL("http://hdfs-01:14000/"));
+		transport.release(conn);
+		Thread.sleep(5L);
+
+		transport.closeIdleRoutes();
+		assertThat(transport.getStats().getRoutes(), is(equalTo(0)));
+		assertThat(transport.getStats().getEvictedRoutes(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void evictedRouteIsReplacedOnOpen() throws Exception {
+		URL url = new URL("http://hdfs-01:14000/");
+		transport.release(transport.open(url));
+		Thread.sleep(5L);
+		transport.closeIdleRoutes();
+
+		transport.open(url);
+		transport.open(url);
+		assertThat(transport.getStats().getRoutes(), is(equalTo(1)));
+		assertThat(transport.getStats(url).getLeased(), is(equalTo(2)));
+	}
+}
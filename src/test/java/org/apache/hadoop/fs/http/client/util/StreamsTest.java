@@ -0,0 +1,58 @@
+package org.apache.hadoop.fs.http.client.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class StreamsTest {
+
+	static final byte[] DATA = new byte[Streams.TWO_FIFTY_SIX_K * 2 + 17];
+
+	static {
+		for (int i = 0; i < DATA.length; i++) {
+			DATA[i] = (byte) (i * 7);
+		}
+	}
+
+	@Test
+	public void copyToFileChannelAppendsAtPosition() throws Exception {
+		File file = File.createTempFile("streams", ".bin");
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+			assertThat(Streams.copy(new ByteArrayInputStream(DATA), channel), is(equalTo((long) DATA.length)));
+			assertThat(channel.position(), is(equalTo(DATA.length + 3L)));
+		}
+		finally {
+			raf.close();
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Streams.copy(new FileInputStream(file), bytes);
+		byte[] copied = bytes.toByteArray();
+		assertTrue(Arrays.equals(DATA, Arrays.copyOfRange(copied, 3, copied.length)));
+		file.delete();
+	}
+
+	@Test
+	public void copyToChannel() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		assertThat(Streams.copy(new ByteArrayInputStream(DATA), Channels.newChannel(bytes)), is(equalTo((long) DATA.length)));
+		assertTrue(Arrays.equals(DATA, bytes.toByteArray()));
+	}
+}
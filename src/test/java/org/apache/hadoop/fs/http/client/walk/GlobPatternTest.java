@@ -0,0 +1,50 @@
+package org.apache.hadoop.fs.http.client.walk;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class GlobPatternTest {
+
+	@Test
+	public void wildcards() {
+		GlobPattern glob = GlobPattern.compile("part-*.gz");
+		assertThat(glob.hasWildcard(), is(true));
+		assertThat(glob.matches("part-00000.gz"), is(true));
+		assertThat(glob.matches("part-.gz"), is(true));
+		assertThat(glob.matches("part-00000.gzip"), is(false));
+
+		glob = GlobPattern.compile("hour=0?");
+		assertThat(glob.matches("hour=01"), is(true));
+		assertThat(glob.matches("hour=1"), is(false));
+	}
+
+	@Test
+	public void setsAndAlternatives() {
+		GlobPattern glob = GlobPattern.compile("dt=2026-1[0-1]-{01,15}");
+		assertThat(glob.matches("dt=2026-10-01"), is(true));
+		assertThat(glob.matches("dt=2026-11-15"), is(true));
+		assertThat(glob.matches("dt=2026-12-01"), is(false));
+		assertThat(glob.matches("dt=2026-10-02"), is(false));
+
+		glob = GlobPattern.compile("[!_]*");
+		assertThat(glob.matches("part-0"), is(true));
+		assertThat(glob.matches("_SUCCESS"), is(false));
+	}
+
+	@Test
+	public void literalsAndEscapes() {
+		GlobPattern glob = GlobPattern.compile("a.b\\*c");
+		assertThat(glob.hasWildcard(), is(false));
+		assertThat(glob.getGlob(), is(equalTo("a.b*c")));
+		assertThat(glob.matches("a.b*c"), is(true));
+		assertThat(glob.matches("axb*c"), is(false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unclosedSetIsRejected() {
+		GlobPattern.compile("part-[0-9");
+	}
+}
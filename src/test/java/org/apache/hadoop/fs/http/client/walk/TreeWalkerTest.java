@@ -0,0 +1,206 @@
+package org.apache.hadoop.fs.http.client.walk;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.http.client.WebHDFSException;
+import org.apache.hadoop.fs.http.client.impl.AuthenticationType;
+import org.apache.hadoop.fs.http.client.impl.HttpFSServerStub;
+import org.apache.hadoop.fs.http.client.model.FileStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+@SuppressWarnings("restriction")
+public class TreeWalkerTest {
+
+	static final String PREFIX = "/webhdfs/v1/";
+
+	HttpFSServerStub server = null;
+	TreeWalker walker = null;
+	Map<String, String[]> tree = new HashMap<String, String[]>();
+
+	@Before
+	public void setUp() throws Exception {
+		// directories end with a slash
+		tree.put("data", new String[] { "a/", "b/", "f1" });
+		tree.put("data/a", new String[] { "a1", "a2/" });
+		tree.put("data/a/a2", new String[] { "deep" });
+		tree.put("data/b", new String[] { "b1", "gone/" });
+		tree.put("events", new String[] { "dt=2026-10-01/", "dt=2026-10-02/", "dt=2026-11-01/", "readme" });
+		tree.put("events/dt=2026-10-01", new String[] { "hour=00/", "hour=01/" });
+		tree.put("events/dt=2026-10-02", new String[] { "hour=00/" });
+		tree.put("events/dt=2026-11-01", new String[] { "hour=00/" });
+		tree.put("events/dt=2026-10-01/hour=00", new String[] { "part-0", "part-1", "_SUCCESS" });
+		tree.put("events/dt=2026-10-01/hour=01", new String[] { "part-0" });
+		tree.put("events/dt=2026-10-02/hour=00", new String[] { "part-0" });
+
+		server = new HttpFSServerStub();
+		server.on("LISTSTATUS_BATCH", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				String path = exchange.getRequestURI().getPath().substring(PREFIX.length());
+				String[] children = tree.get(path);
+				if (children == null) {
+					HttpFSServerStub.send(exchange, 404, "{\"RemoteException\":{\"exception\":\"FileNotFoundException\"}}");
+					return;
+				}
+				StringBuilder statuses = new StringBuilder();
+				for (String child : children) {
+					boolean dir = child.endsWith("/");
+					statuses.append(statuses.length() == 0 ? "" : ",").append("{\"pathSuffix\":\"")
+							.append(dir ? child.substring(0, child.length() - 1) : child).append("\",\"type\":\"")
+							.append(dir ? "DIRECTORY" : "FILE").append("\"}");
+				}
+				HttpFSServerStub.send(exchange, 200, "{\"DirectoryListing\":{\"partialListing\":{\"FileStatuses\":{\"FileStatus\":["
+						+ statuses + "]}},\"remainingEntries\":0}}");
+			}
+		});
+		server.on("GETFILESTATUS", new HttpFSServerStub.Responder() {
+			@Override
+			public void respond(HttpExchange exchange, Map<String, String> params) throws IOException {
+				String path = exchange.getRequestURI().getPath().substring(PREFIX.length());
+				int slash = path.lastIndexOf('/');
+				String[] siblings = tree.get(path.substring(0, Math.max(slash, 0)));
+				if (siblings != null && Arrays.asList(siblings).contains(path.substring(slash + 1))) {
+					HttpFSServerStub.send(exchange, 200, "{\"FileStatus\":{\"length\":0,\"type\":\"FILE\"}}");
+				} else {
+					HttpFSServerStub.send(exchange, 404, "{\"RemoteException\":{\"exception\":\"FileNotFoundException\"}}");
+				}
+			}
+		});
+		walker = new TreeWalker(AuthenticationType.PSEUDO.createConnection(server.getUrl(), "stub", "n/a"), 4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		walker.shutdown();
+		server.stop();
+	}
+
+	List<String> paths(TreeWalker.Walk walk) throws IOException {
+		List<String> paths = new ArrayList<String>();
+		try {
+			while (walk.hasNext()) {
+				paths.add(walk.next().getPath());
+			}
+		}
+		finally {
+			walk.close();
+		}
+		Collections.sort(paths);
+		return paths;
+	}
+
+	@Test
+	public void listsWholeTree() throws Exception {
+		assertThat(paths(walker.listRecursive("data")).toString(), is(equalTo(
+				"[data/a, data/a/a1, data/a/a2, data/a/a2/deep, data/b, data/b/b1, data/b/gone, data/f1]")));
+	}
+
+	@Test
+	public void workersListDirectoriesBeyondPendingLimit() throws Exception {
+		tree.put("wide", new String[] { "d1/", "d2/", "d3/", "d4/" });
+		tree.put("wide/d1", new String[] { "x/" });
+		tree.put("wide/d1/x", new String[] { "y" });
+		tree.put("wide/d2", new String[] { "z" });
+		TreeWalker single = new TreeWalker(AuthenticationType.PSEUDO.createConnection(server.getUrl(), "stub", "n/a"), 1);
+		try {
+			single.setMaxPendingDirectories(1);
+			single.setQueueCapacity(1);
+			assertThat(paths(single.listRecursive("wide")).toString(), is(equalTo(
+					"[wide/d1, wide/d1/x, wide/d1/x/y, wide/d2, wide/d2/z, wide/d3, wide/d4]")));
+		}
+		finally {
+			single.shutdown();
+		}
+	}
+
+	@Test
+	public void depthIsLimited() throws Exception {
+		walker.setMaxDepth(2);
+		assertThat(paths(walker.listRecursive("data")).toString(), is(equalTo(
+				"[data/a, data/a/a1, data/a/a2, data/b, data/b/b1, data/b/gone, data/f1]")));
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+	}
+
+	@Test
+	public void filterPrunesSubtrees() throws Exception {
+		walker.setFilter(new PathFilter() {
+			@Override
+			public boolean accept(String path, FileStatus status) {
+				return !path.equals("data/a");
+			}
+		});
+		assertThat(paths(walker.listRecursive("data")).toString(), is(equalTo(
+				"[data/b, data/b/b1, data/b/gone, data/f1]")));
+	}
+
+	@Test
+	public void visitorStopsWalk() throws Exception {
+		walker.setQueueCapacity(1);
+		final List<String> visited = new ArrayList<String>();
+		long count = walker.walk("data", new FileVisitor() {
+			@Override
+			public boolean visit(String path, FileStatus status) {
+				visited.add(path);
+				return visited.size() < 2;
+			}
+		});
+		assertThat(count, is(equalTo(2L)));
+		assertThat(visited.size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void missingRootFailsWalk() throws Exception {
+		try {
+			paths(walker.listRecursive("missing"));
+			fail("Expected WebHDFSException");
+		}
+		catch(WebHDFSException e) {
+			assertThat(e.getStatusCode(), is(equalTo(404)));
+		}
+	}
+
+	static String paths(List<TreeWalker.Entry> entries) {
+		List<String> paths = new ArrayList<String>();
+		for (TreeWalker.Entry entry : entries) {
+			paths.add(entry.getPath());
+		}
+		return paths.toString();
+	}
+
+	@Test
+	public void globListsMatchingDirectoriesOnly() throws Exception {
+		assertThat(paths(walker.globStatus("events/dt=2026-10-*/hour=*/part-*")), is(equalTo(
+				"[events/dt=2026-10-01/hour=00/part-0, events/dt=2026-10-01/hour=00/part-1,"
+				+ " events/dt=2026-10-01/hour=01/part-0, events/dt=2026-10-02/hour=00/part-0]")));
+		assertThat(server.getRequests().size(), is(equalTo(6)));
+		for (String request : server.getRequests()) {
+			assertThat(request.contains("2026-11"), is(false));
+		}
+	}
+
+	@Test
+	public void globAppendsLiteralComponents() throws Exception {
+		assertThat(paths(walker.globStatus("events/dt=2026-10-0{1,2}/hour=00/_SUCCESS")), is(equalTo(
+				"[events/dt=2026-10-01/hour=00/_SUCCESS]")));
+		// one listing of events, then one status per candidate
+		assertThat(server.getRequests().size(), is(equalTo(3)));
+
+		assertThat(paths(walker.globStatus("events/readme")), is(equalTo("[events/readme]")));
+		assertThat(paths(walker.globStatus("events/missing/*")), is(equalTo("[]")));
+	}
+}